@@ -0,0 +1,74 @@
+package com.frank.api.core.api.event;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.frank.api.core.api.core.review.Review;
+
+/**
+ * Measures the {@link EventCodec} against Jackson, the JSON baseline, on a typical review CREATE event.
+ *
+ * Kept out of the unit tests, run it with the benchmark profile:
+ * {@code mvn -P benchmark test-compile exec:exec}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventCodecBenchmark {
+
+	private static final TypeReference<Event<Integer, Review>> REVIEW_EVENT =
+			new TypeReference<Event<Integer, Review>>() {};
+
+	private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+	private Event<Integer, Review> event;
+	private byte[] binary;
+	private byte[] json;
+
+	@Setup
+	public void setUp() throws IOException {
+		Review review = new Review(123, 4, "Author 4", "Subject 4", "Content of review number 4 for product 123",
+				"review-7d9f6c-x2kqp/172.18.0.7:8080");
+		event = new Event<>(Event.Type.CREATE, 123, review);
+		binary = EventCodec.encode(event);
+		json = mapper.writeValueAsBytes(event);
+	}
+
+	@Benchmark
+	public byte[] binaryEncode() {
+		return EventCodec.encode(event);
+	}
+
+	@Benchmark
+	public Event<Integer, Review> binaryDecode() {
+		return EventCodec.decode(binary);
+	}
+
+	@Benchmark
+	public byte[] jsonEncode() throws IOException {
+		return mapper.writeValueAsBytes(event);
+	}
+
+	@Benchmark
+	public Event<Integer, Review> jsonDecode() throws IOException {
+		return mapper.readValue(json, REVIEW_EVENT);
+	}
+}
@@ -1,10 +1,14 @@
 package com.frank.api.core.api.composite.product;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -37,11 +41,93 @@ public interface ProductCompositeService {
         value    = "/product-composite",
         consumes = "application/json")
     void createCompositeProduct(@RequestBody ProductAggregate body);
+    
+    /**
+     * Sample usage:
+     *
+     * curl -X PATCH "$HOST:$PORT/product-composite/123?fields=name" \
+     *   -H "Content-Type: application/json" --data \
+     *   '{"productId":123,"name":"new name"}'
+     *
+     * @param productId
+     * @param fields the product fields to change, name and/or weight
+     * @param body the new values, other fields are ignored
+     */
+    @ApiOperation(
+        value = "${api.product-composite.update-composite-product.description}",
+        notes = "${api.product-composite.update-composite-product.notes}")
+    @ApiResponses(value = {
+        @ApiResponse(code = 400, message = "Bad Request, invalid format of the request. See response message for more information."),
+        @ApiResponse(code = 422, message = "Unprocessable entity, input parameters caused the processing to fail. See response message for more information.")
+    })
+    @PatchMapping(
+        value    = "/product-composite/{productId}",
+        consumes = "application/json")
+    void updateCompositeProduct(
+    	@PathVariable int productId,
+    	@RequestParam(value = "fields", required = true) List<String> fields,
+    	@RequestBody ProductAggregate body);
+    
+    /**
+     * Sample usage:
+     *
+     * curl -X PATCH "$HOST:$PORT/product-composite/123/recommendations/456?fields=rate" \
+     *   -H "Content-Type: application/json" --data '{"rate":4}'
+     *
+     * @param productId
+     * @param recommendationId
+     * @param fields the recommendation fields to change, some of author, rate and content
+     * @param body the new values, other fields are ignored
+     */
+    @ApiOperation(
+        value = "${api.product-composite.update-composite-recommendation.description}",
+        notes = "${api.product-composite.update-composite-recommendation.notes}")
+    @ApiResponses(value = {
+        @ApiResponse(code = 400, message = "Bad Request, invalid format of the request. See response message for more information."),
+        @ApiResponse(code = 422, message = "Unprocessable entity, input parameters caused the processing to fail. See response message for more information.")
+    })
+    @PatchMapping(
+        value    = "/product-composite/{productId}/recommendations/{recommendationId}",
+        consumes = "application/json")
+    void updateCompositeRecommendation(
+    	@PathVariable int productId,
+    	@PathVariable int recommendationId,
+    	@RequestParam(value = "fields", required = true) List<String> fields,
+    	@RequestBody RecommendationSummary body);
+    
+    /**
+     * Sample usage:
+     *
+     * curl -X PATCH "$HOST:$PORT/product-composite/123/reviews/456?fields=subject,content" \
+     *   -H "Content-Type: application/json" --data '{"subject":"new subject","content":"new content"}'
+     *
+     * @param productId
+     * @param reviewId
+     * @param fields the review fields to change, some of author, subject and content
+     * @param body the new values, other fields are ignored
+     */
+    @ApiOperation(
+        value = "${api.product-composite.update-composite-review.description}",
+        notes = "${api.product-composite.update-composite-review.notes}")
+    @ApiResponses(value = {
+        @ApiResponse(code = 400, message = "Bad Request, invalid format of the request. See response message for more information."),
+        @ApiResponse(code = 422, message = "Unprocessable entity, input parameters caused the processing to fail. See response message for more information.")
+    })
+    @PatchMapping(
+        value    = "/product-composite/{productId}/reviews/{reviewId}",
+        consumes = "application/json")
+    void updateCompositeReview(
+    	@PathVariable int productId,
+    	@PathVariable int reviewId,
+    	@RequestParam(value = "fields", required = true) List<String> fields,
+    	@RequestBody ReviewSummary body);
 	
 	/**
-     * Sample usage: curl $HOST:$PORT/product-composite/1
+     * Sample usage: curl "$HOST:$PORT/product-composite/1?recommendationsTop=3&recommendationsSort=rating"
      *
      * @param productId
+     * @param recommendationsTop max number of recommendations to include, 0 for all of them
+     * @param recommendationsSort "rating" for the highest rated recommendations first
      * @return the composite product info, if found, else null
      */
     @ApiOperation(
@@ -55,7 +141,10 @@ public interface ProductCompositeService {
     @GetMapping(
         value    = "/product-composite/{productId}",
         produces = "application/json")
-    Mono<ProductAggregate> getCompositeProduct(@PathVariable int productId);
+    Mono<ProductAggregate> getCompositeProduct(
+    	@PathVariable int productId,
+    	@RequestParam(value = "recommendationsTop", required = false, defaultValue = "0") int recommendationsTop,
+    	@RequestParam(value = "recommendationsSort", required = false) String recommendationsSort);
 	
 	/**
      * Sample usage:
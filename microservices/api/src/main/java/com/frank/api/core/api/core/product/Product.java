@@ -1,6 +1,15 @@
 package com.frank.api.core.api.core.product;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class Product {
+
+	/** The fields an update can change, the ids can not change */
+	public static final List<String> UPDATABLE_FIELDS =
+			Collections.unmodifiableList(Arrays.asList("name", "weight"));
+
 	private int productId;
 	private String name;
 	private int weight;
@@ -1,11 +1,16 @@
 package com.frank.api.core.api.core.product;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ProductService {
@@ -26,6 +31,25 @@ public interface ProductService {
 		produces = "application/json")
 	Product createProduct(@RequestBody Product body);
 	
+	/**
+     * Sample usage:
+     *
+     * curl -X PATCH "$HOST:$PORT/product?fields=name" \
+     *   -H "Content-Type: application/json" --data \
+     *   '{"productId":123,"name":"new name"}'
+     *
+     * @param fields the fields to change, some of {@link Product#UPDATABLE_FIELDS}
+     * @param body the productId and the new values, other fields are ignored
+     * @return the updated product
+     */
+	@PatchMapping(
+		value = "/product",
+		consumes = "application/json",
+		produces = "application/json")
+	Product updateProduct(
+		@RequestParam(value = "fields", required = true) List<String> fields,
+		@RequestBody Product body);
+	
 	/**
 	 * Sample usage: curl $HOST:$PORT/product/1
 	 * 
@@ -37,6 +61,43 @@ public interface ProductService {
 		produces 	= "application/json")
 	Mono<Product> getProduct(@PathVariable int productId);
 	
+	/**
+	 * Sample usage: curl "$HOST:$PORT/product?afterProductId=100&limit=50&minWeight=1&maxWeight=10"
+	 * 
+	 * Lists products ordered by productId, starting after afterProductId. To get the next page pass 
+	 * the productId of the last product returned. Without a limit all remaining products are 
+	 * streamed, ask for application/stream+json to receive them as they are read.
+	 * 
+	 * @param afterProductId
+	 * @param limit max number of products to return, 0 for no limit
+	 * @param minWeight
+	 * @param maxWeight
+	 * @return
+	 */
+	@GetMapping(
+		value		= "/product",
+		produces 	= {"application/json", "application/stream+json"})
+	Flux<Product> getProducts(
+		@RequestParam(value = "afterProductId", required = false, defaultValue = "0") int afterProductId,
+		@RequestParam(value = "limit", required = false, defaultValue = "0") int limit,
+		@RequestParam(value = "minWeight", required = false) Integer minWeight,
+		@RequestParam(value = "maxWeight", required = false) Integer maxWeight);
+	
+	/**
+	 * Sample usage: curl "$HOST:$PORT/product/suggestions?prefix=lap&limit=10"
+	 * 
+	 * @param prefix
+	 * @param limit
+	 * @return up to limit products whose name starts with the prefix, ignoring case, the shortest 
+	 *         names first
+	 */
+	@GetMapping(
+		value		= "/product/suggestions",
+		produces 	= "application/json")
+	Flux<ProductSuggestion> getProductSuggestions(
+		@RequestParam(value = "prefix", required = true) String prefix,
+		@RequestParam(value = "limit", required = false, defaultValue = "10") int limit);
+	
 	/**
      * Sample usage:
      *
@@ -0,0 +1,32 @@
+package com.frank.api.core.api.core.product;
+
+public class ProductSuggestion {
+	private int productId;
+	private String name;
+
+	public ProductSuggestion() {
+		productId = 0;
+		name = null;
+	}
+
+	public ProductSuggestion(int productId, String name) {
+		this.productId = productId;
+		this.name = name;
+	}
+
+	public int getProductId() {
+		return productId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setProductId(int productId) {
+		this.productId = productId;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+}
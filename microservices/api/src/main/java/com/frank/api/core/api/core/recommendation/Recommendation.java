@@ -1,6 +1,15 @@
 package com.frank.api.core.api.core.recommendation;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class Recommendation {
+
+	/** The fields an update can change, the ids can not change */
+	public static final List<String> UPDATABLE_FIELDS =
+			Collections.unmodifiableList(Arrays.asList("author", "rate", "content"));
+
 	
 	private int productId;
 	private int recommendationId;
@@ -1,7 +1,10 @@
 package com.frank.api.core.api.core.recommendation;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -25,17 +28,41 @@ public interface RecommendationService {
         consumes = "application/json",
         produces = "application/json")
     Recommendation createRecommendation(@RequestBody Recommendation body);
+    
+    /**
+     * Sample usage:
+     *
+     * curl -X PATCH "$HOST:$PORT/recommendation?fields=rate,content" \
+     *   -H "Content-Type: application/json" --data \
+     *   '{"productId":123,"recommendationId":456,"rate":4,"content":"still good"}'
+     *
+     * @param fields the fields to change, some of {@link Recommendation#UPDATABLE_FIELDS}
+     * @param body the ids and the new values, other fields are ignored
+     * @return the updated recommendation
+     */
+    @PatchMapping(
+        value    = "/recommendation",
+        consumes = "application/json",
+        produces = "application/json")
+    Recommendation updateRecommendation(
+    	@RequestParam(value = "fields", required = true) List<String> fields,
+    	@RequestBody Recommendation body);
 	
     /**
-     * Sample usage: curl $HOST:$PORT/recommendation?productId=1
+     * Sample usage: curl "$HOST:$PORT/recommendation?productId=1&top=3&sort=rating"
      *
      * @param productId
+     * @param top max number of recommendations to return, 0 for all of them
+     * @param sort "rating" for the highest rated first, else in the order they were created
      * @return
      */
     @GetMapping(
         value    = "/recommendation",
         produces = "application/json")
-    Flux<Recommendation> getRecommendations(@RequestParam(value = "productId", required = true) int productId);
+    Flux<Recommendation> getRecommendations(
+    	@RequestParam(value = "productId", required = true) int productId,
+    	@RequestParam(value = "top", required = false, defaultValue = "0") int top,
+    	@RequestParam(value = "sort", required = false) String sort);
     
     /**
      * Sample usage:
@@ -1,6 +1,15 @@
 package com.frank.api.core.api.core.review;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class Review {
+
+	/** The fields an update can change, the ids can not change */
+	public static final List<String> UPDATABLE_FIELDS =
+			Collections.unmodifiableList(Arrays.asList("author", "subject", "content"));
+
 	private int productId;
 	private int reviewId;
 	private String author;
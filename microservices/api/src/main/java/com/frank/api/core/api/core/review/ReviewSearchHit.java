@@ -0,0 +1,65 @@
+package com.frank.api.core.api.core.review;
+
+public class ReviewSearchHit {
+	private int productId;
+	private int reviewId;
+	private String author;
+	private String subject;
+	private double score;
+
+	public ReviewSearchHit() {
+		productId = 0;
+		reviewId = 0;
+		author = null;
+		subject = null;
+		score = 0;
+	}
+
+	public ReviewSearchHit(int productId, int reviewId, String author, String subject, double score) {
+		this.productId = productId;
+		this.reviewId = reviewId;
+		this.author = author;
+		this.subject = subject;
+		this.score = score;
+	}
+
+	public int getProductId() {
+		return productId;
+	}
+
+	public int getReviewId() {
+		return reviewId;
+	}
+
+	public String getAuthor() {
+		return author;
+	}
+
+	public String getSubject() {
+		return subject;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	public void setProductId(int productId) {
+		this.productId = productId;
+	}
+
+	public void setReviewId(int reviewId) {
+		this.reviewId = reviewId;
+	}
+
+	public void setAuthor(String author) {
+		this.author = author;
+	}
+
+	public void setSubject(String subject) {
+		this.subject = subject;
+	}
+
+	public void setScore(double score) {
+		this.score = score;
+	}
+}
@@ -1,12 +1,16 @@
 package com.frank.api.core.api.core.review;
 
+import java.util.List;
+
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface ReviewService {
 	
@@ -25,6 +29,42 @@ public interface ReviewService {
         consumes = "application/json",
         produces = "application/json")
     Review createReview(@RequestBody Review body);
+    
+    /**
+     * Sample usage:
+     *
+     * curl -X POST $HOST:$PORT/review/batch \
+     *   -H "Content-Type: application/json" --data \
+     *   '[{"productId":123,"reviewId":1,"author":"me","subject":"s1","content":"c1"},
+     *     {"productId":123,"reviewId":2,"author":"me","subject":"s2","content":"c2"}]'
+     *
+     * @param body
+     * @return
+     */
+    @PostMapping(
+        value    = "/review/batch",
+        consumes = "application/json",
+        produces = "application/json")
+    List<Review> createReviews(@RequestBody List<Review> body);
+    
+    /**
+     * Sample usage:
+     *
+     * curl -X PATCH "$HOST:$PORT/review?fields=subject" \
+     *   -H "Content-Type: application/json" --data \
+     *   '{"productId":123,"reviewId":456,"subject":"new subject"}'
+     *
+     * @param fields the fields to change, some of {@link Review#UPDATABLE_FIELDS}
+     * @param body the ids and the new values, other fields are ignored
+     * @return the updated review
+     */
+    @PatchMapping(
+        value    = "/review",
+        consumes = "application/json",
+        produces = "application/json")
+    Review updateReview(
+    	@RequestParam(value = "fields", required = true) List<String> fields,
+    	@RequestBody Review body);
 	
 	/**
      * Sample usage: curl $HOST:$PORT/review?productId=1
@@ -37,6 +77,36 @@ public interface ReviewService {
 		produces 	= "application/json")
 	Flux<Review> getReviews(@RequestParam(value = "productId", required = true)int productId);
 	
+	/**
+	 * Sample usage: curl "$HOST:$PORT/review/search?query=battery&page=0&size=10"
+	 * 
+	 * @param query
+	 * @param page
+	 * @param size
+	 * @return the page of reviews mentioning any of the words in the query in their subject or 
+	 *         content, the best matches first
+	 */
+	@GetMapping(
+		value 		= "/review/search",
+		produces 	= "application/json")
+	Flux<ReviewSearchHit> searchReviews(
+		@RequestParam(value = "query", required = true) String query,
+		@RequestParam(value = "page", required = false, defaultValue = "0") int page,
+		@RequestParam(value = "size", required = false, defaultValue = "10") int size);
+	
+	/**
+	 * Sample usage: curl -X POST $HOST:$PORT/review/search/rebuild
+	 * 
+	 * Rebuilds the search index from the database, e.g. after the reviews table was changed without
+	 * going through this service. Searches are served from the current index until the new one is done.
+	 *
+	 * @return the number of indexed reviews
+	 */
+	@PostMapping(
+		value 		= "/review/search/rebuild",
+		produces 	= "application/json")
+	Mono<Integer> rebuildTextIndex();
+	
 	/**
      * Sample usage:
      *
@@ -0,0 +1,38 @@
+package com.frank.api.core.api.event;
+
+public class CacheInvalidation {
+
+	private String entity;
+	private int productId;
+	private Integer version;
+
+	public CacheInvalidation() {
+		this.entity = null;
+		this.productId = 0;
+		this.version = null;
+	}
+
+	/**
+	 * @param entity the kind of document that changed, e.g. "product" or "recommendation"
+	 * @param productId the product the changed document belongs to, 0 if it is not known and all
+	 *        cached entries of the entity should be dropped
+	 * @param version the version of the document after the change, null if it was deleted
+	 */
+	public CacheInvalidation(String entity, int productId, Integer version) {
+		this.entity = entity;
+		this.productId = productId;
+		this.version = version;
+	}
+
+	public String getEntity() {
+		return entity;
+	}
+
+	public int getProductId() {
+		return productId;
+	}
+
+	public Integer getVersion() {
+		return version;
+	}
+}
@@ -1,31 +1,74 @@
 package com.frank.api.core.api.event;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
 
 public class Event<K, T> {
 	
 	public enum Type {
 		CREATE,
+		UPDATE,
 		DELETE
 	}
 
+	private String eventId;
 	private Event.Type eventType;
 	private K key;
 	private T data;
+	private List<String> updatedFields;
 	private LocalDateTime eventCreatedAt;
+	private Long eventTimestampNanos;
 	
 	public Event() {
+        this.eventId = null;
         this.eventType = null;
         this.key = null;
         this.data = null;
+        this.updatedFields = null;
         this.eventCreatedAt = null;
+        this.eventTimestampNanos = null;
     }
 
     public Event(Type eventType, K key, T data) {
+        this(eventType, key, data, null);
+    }
+
+    /**
+     * @param updatedFields for UPDATE events the fields of data that changed, the other fields of data
+     *        are to be ignored
+     */
+    public Event(Type eventType, K key, T data, List<String> updatedFields) {
+        this.eventId = UUID.randomUUID().toString();
         this.eventType = eventType;
         this.key = key;
         this.data = data;
+        this.updatedFields = updatedFields;
         this.eventCreatedAt = LocalDateTime.now();
+        this.eventTimestampNanos = nowEpochNanos();
+    }
+
+    /**
+     * Recreates a received event, e.g. when it is decoded by {@link EventCodec}.
+     */
+    public Event(String eventId, Type eventType, K key, T data, List<String> updatedFields,
+    		LocalDateTime eventCreatedAt, Long eventTimestampNanos) {
+        this.eventId = eventId;
+        this.eventType = eventType;
+        this.key = key;
+        this.data = data;
+        this.updatedFields = updatedFields;
+        this.eventCreatedAt = eventCreatedAt;
+        this.eventTimestampNanos = eventTimestampNanos;
+    }
+
+    /**
+     * @return a unique id, the same for every delivery of the event, null for events sent before it
+     *         was introduced
+     */
+    public String getEventId() {
+        return eventId;
     }
 
     public Type getEventType() {
@@ -40,7 +83,28 @@ public class Event<K, T> {
         return data;
     }
 
+    /**
+     * @return the fields of data an UPDATE event changes, null for other events
+     */
+    public List<String> getUpdatedFields() {
+        return updatedFields;
+    }
+
     public LocalDateTime getEventCreatedAt() {
         return eventCreatedAt;
     }
+
+    /**
+     * @return when the event was created, just before it is published, in nanoseconds since the epoch
+     *         in UTC. The resolution is that of the system clock, microseconds on Java 9 and later.
+     *         Null for events sent before it was introduced.
+     */
+    public Long getEventTimestampNanos() {
+        return eventTimestampNanos;
+    }
+
+    private static long nowEpochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
 }
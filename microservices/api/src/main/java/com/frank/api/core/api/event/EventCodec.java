@@ -0,0 +1,346 @@
+package com.frank.api.core.api.event;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.frank.api.core.api.core.product.Product;
+import com.frank.api.core.api.core.recommendation.Recommendation;
+import com.frank.api.core.api.core.review.Review;
+
+/**
+ * Compact binary encoding of {@link Event}, an alternative to JSON for the event destinations.
+ *
+ * Layout, all integers are varints, signed ones zigzag encoded:
+ * <pre>
+ * magic (1) | version (1) | event type (1) | flags (1) | [event id] | [created at] | key | data | [updated fields]
+ *     | [timestamp (8)]
+ * </pre>
+ * The event id is written as two longs when it is a UUID, as a string otherwise. The creation time
+ * is the second of the epoch in UTC followed by the nanos. The key and data start with a tag naming
+ * their type, the fields of the data follow in declaration order. Strings are their UTF-8 length
+ * plus one followed by the bytes, a length of 0 is null.
+ *
+ * The updated fields of UPDATE events are a count followed by the field names, they were added in
+ * version 2. Events without them are still written as version 1, so consumers that only read
+ * version 1 keep working until UPDATE events are sent.
+ *
+ * The nanosecond timestamp, a fixed size long, is an optional trailing field marked by its flag. It
+ * does not change the version: decoders ignore the flags they do not know and the bytes after the
+ * fields they read, so consumers that predate it keep reading the events, only without the timestamp.
+ *
+ * A new optional field is added the same way, at the end behind a new flag. A field that older
+ * decoders can not skip needs a new version, the decoder keeps reading all older versions.
+ */
+public final class EventCodec {
+
+	/** First byte of every encoded event, never the first byte of a JSON document */
+	public static final byte MAGIC = (byte) 0xE7;
+	public static final byte VERSION = 2;
+
+	private static final int FLAG_UUID_ID = 1;
+	private static final int FLAG_STRING_ID = 1 << 1;
+	private static final int FLAG_CREATED_AT = 1 << 2;
+	private static final int FLAG_UPDATED_FIELDS = 1 << 3;
+	private static final int FLAG_TIMESTAMP = 1 << 4;
+
+	private static final int TYPE_CREATE = 1;
+	private static final int TYPE_DELETE = 2;
+	private static final int TYPE_UPDATE = 3;
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_INTEGER = 1;
+	private static final int TAG_STRING = 2;
+	private static final int TAG_PRODUCT = 3;
+	private static final int TAG_RECOMMENDATION = 4;
+	private static final int TAG_REVIEW = 5;
+
+	private EventCodec() {
+	}
+
+	/**
+	 * @return true if the bytes start like an encoded event, JSON and other payloads do not
+	 */
+	public static boolean isEncoded(byte[] bytes) {
+		return bytes != null && bytes.length > 1 && bytes[0] == MAGIC;
+	}
+
+	public static byte[] encode(Event<?, ?> event) {
+		Writer out = new Writer();
+		out.write(MAGIC);
+		out.write(version(event));
+		out.write(typeCode(event.getEventType()));
+
+		UUID uuid = parseUuid(event.getEventId());
+		int flags = 0;
+		if (uuid != null) flags |= FLAG_UUID_ID;
+		else if (event.getEventId() != null) flags |= FLAG_STRING_ID;
+		if (event.getEventCreatedAt() != null) flags |= FLAG_CREATED_AT;
+		if (event.getUpdatedFields() != null) flags |= FLAG_UPDATED_FIELDS;
+		if (event.getEventTimestampNanos() != null) flags |= FLAG_TIMESTAMP;
+		out.write(flags);
+
+		if (uuid != null) {
+			out.writeFixedLong(uuid.getMostSignificantBits());
+			out.writeFixedLong(uuid.getLeastSignificantBits());
+		} else if (event.getEventId() != null) {
+			out.writeString(event.getEventId());
+		}
+
+		if (event.getEventCreatedAt() != null) {
+			out.writeSignedLong(event.getEventCreatedAt().toEpochSecond(ZoneOffset.UTC));
+			out.writeUnsignedInt(event.getEventCreatedAt().getNano());
+		}
+
+		writeValue(out, event.getKey());
+		writeValue(out, event.getData());
+
+		if (event.getUpdatedFields() != null) {
+			out.writeUnsignedInt(event.getUpdatedFields().size());
+			event.getUpdatedFields().forEach(out::writeString);
+		}
+
+		if (event.getEventTimestampNanos() != null) out.writeFixedLong(event.getEventTimestampNanos());
+		return out.toByteArray();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the bytes are not an encoded event of a known version
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, T> Event<K, T> decode(byte[] bytes) {
+		if (!isEncoded(bytes)) throw new IllegalArgumentException("Not an encoded event");
+		Reader in = new Reader(bytes);
+		in.read();
+
+		int version = in.read();
+		if (version < 1 || version > VERSION) {
+			throw new IllegalArgumentException("Unsupported event encoding version " + version);
+		}
+
+		Event.Type type = type(in.read());
+		int flags = in.read();
+
+		String eventId = null;
+		if ((flags & FLAG_UUID_ID) != 0) {
+			eventId = new UUID(in.readFixedLong(), in.readFixedLong()).toString();
+		} else if ((flags & FLAG_STRING_ID) != 0) {
+			eventId = in.readString();
+		}
+
+		LocalDateTime createdAt = null;
+		if ((flags & FLAG_CREATED_AT) != 0) {
+			long epochSecond = in.readSignedLong();
+			createdAt = LocalDateTime.ofEpochSecond(epochSecond, in.readUnsignedInt(), ZoneOffset.UTC);
+		}
+
+		K key = (K) readValue(in);
+		T data = (T) readValue(in);
+
+		List<String> updatedFields = null;
+		if ((flags & FLAG_UPDATED_FIELDS) != 0) {
+			int count = in.readUnsignedInt();
+			updatedFields = new ArrayList<>(Math.min(count, 16));
+			for (int i = 0; i < count; i++) updatedFields.add(in.readString());
+		}
+
+		// Unknown flags and the optional fields of later producers after the timestamp are ignored
+		Long timestampNanos = (flags & FLAG_TIMESTAMP) != 0 ? in.readFixedLong() : null;
+		return new Event<>(eventId, type, key, data, updatedFields, createdAt, timestampNanos);
+	}
+
+	// The oldest version that holds all fields of the event, the optional trailing ones aside
+	private static int version(Event<?, ?> event) {
+		if (event.getEventType() == Event.Type.UPDATE || event.getUpdatedFields() != null) return 2;
+		return 1;
+	}
+
+	private static int typeCode(Event.Type type) {
+		if (type == null) return 0;
+		switch (type) {
+			case CREATE: return TYPE_CREATE;
+			case UPDATE: return TYPE_UPDATE;
+			case DELETE: return TYPE_DELETE;
+			default: throw new IllegalArgumentException("Unsupported event type " + type);
+		}
+	}
+
+	private static Event.Type type(int code) {
+		switch (code) {
+			case 0: return null;
+			case TYPE_CREATE: return Event.Type.CREATE;
+			case TYPE_UPDATE: return Event.Type.UPDATE;
+			case TYPE_DELETE: return Event.Type.DELETE;
+			default: throw new IllegalArgumentException("Unknown event type code " + code);
+		}
+	}
+
+	private static void writeValue(Writer out, Object value) {
+		if (value == null) {
+			out.writeUnsignedInt(TAG_NULL);
+
+		} else if (value instanceof Integer) {
+			out.writeUnsignedInt(TAG_INTEGER);
+			out.writeSignedLong((Integer) value);
+
+		} else if (value instanceof String) {
+			out.writeUnsignedInt(TAG_STRING);
+			out.writeString((String) value);
+
+		} else if (value instanceof Product) {
+			Product product = (Product) value;
+			out.writeUnsignedInt(TAG_PRODUCT);
+			out.writeSignedLong(product.getProductId());
+			out.writeString(product.getName());
+			out.writeSignedLong(product.getWeight());
+			out.writeString(product.getServiceAddress());
+
+		} else if (value instanceof Recommendation) {
+			Recommendation recommendation = (Recommendation) value;
+			out.writeUnsignedInt(TAG_RECOMMENDATION);
+			out.writeSignedLong(recommendation.getProductId());
+			out.writeSignedLong(recommendation.getRecommendationId());
+			out.writeString(recommendation.getAuthor());
+			out.writeSignedLong(recommendation.getRate());
+			out.writeString(recommendation.getContent());
+			out.writeString(recommendation.getServiceAddress());
+
+		} else if (value instanceof Review) {
+			Review review = (Review) value;
+			out.writeUnsignedInt(TAG_REVIEW);
+			out.writeSignedLong(review.getProductId());
+			out.writeSignedLong(review.getReviewId());
+			out.writeString(review.getAuthor());
+			out.writeString(review.getSubject());
+			out.writeString(review.getContent());
+			out.writeString(review.getServiceAddress());
+
+		} else {
+			throw new IllegalArgumentException("Unsupported event value " + value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(Reader in) {
+		int tag = in.readUnsignedInt();
+		switch (tag) {
+			case TAG_NULL:
+				return null;
+			case TAG_INTEGER:
+				return (int) in.readSignedLong();
+			case TAG_STRING:
+				return in.readString();
+			case TAG_PRODUCT:
+				return new Product((int) in.readSignedLong(), in.readString(), (int) in.readSignedLong(),
+						in.readString());
+			case TAG_RECOMMENDATION:
+				return new Recommendation((int) in.readSignedLong(), (int) in.readSignedLong(), in.readString(),
+						(int) in.readSignedLong(), in.readString(), in.readString());
+			case TAG_REVIEW:
+				return new Review((int) in.readSignedLong(), (int) in.readSignedLong(), in.readString(),
+						in.readString(), in.readString(), in.readString());
+			default:
+				throw new IllegalArgumentException("Unknown event value tag " + tag);
+		}
+	}
+
+	private static UUID parseUuid(String id) {
+		if (id == null || id.length() != 36) return null;
+		try {
+			UUID uuid = UUID.fromString(id);
+			// Only ids that survive the round trip unchanged, e.g. not upper case ones
+			return uuid.toString().equals(id) ? uuid : null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static final class Writer extends ByteArrayOutputStream {
+
+		private Writer() {
+			super(128);
+		}
+
+		private void writeUnsignedInt(int value) {
+			writeUnsignedLong(value & 0xffffffffL);
+		}
+
+		private void writeSignedLong(long value) {
+			writeUnsignedLong((value << 1) ^ (value >> 63));
+		}
+
+		private void writeUnsignedLong(long value) {
+			while ((value & ~0x7fL) != 0) {
+				write((int) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		private void writeFixedLong(long value) {
+			for (int shift = 56; shift >= 0; shift -= 8) write((int) (value >>> shift));
+		}
+
+		private void writeString(String value) {
+			if (value == null) {
+				writeUnsignedInt(0);
+				return;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeUnsignedInt(bytes.length + 1);
+			write(bytes, 0, bytes.length);
+		}
+	}
+
+	private static final class Reader {
+
+		private final byte[] bytes;
+		private int position = 0;
+
+		private Reader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		private int read() {
+			if (position >= bytes.length) throw new IllegalArgumentException("Truncated event");
+			return bytes[position++] & 0xff;
+		}
+
+		private int readUnsignedInt() {
+			return (int) readUnsignedLong();
+		}
+
+		private long readSignedLong() {
+			long value = readUnsignedLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		private long readUnsignedLong() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = read();
+				value |= (long) (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) return value;
+			}
+			throw new IllegalArgumentException("Malformed varint");
+		}
+
+		private long readFixedLong() {
+			long value = 0;
+			for (int i = 0; i < 8; i++) value = (value << 8) | read();
+			return value;
+		}
+
+		private String readString() {
+			int length = readUnsignedInt() - 1;
+			if (length < 0) return null;
+			if (length > bytes.length - position) throw new IllegalArgumentException("Truncated event");
+			String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.frank.api.core.api.event;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeType;
+
+/**
+ * Reads and writes {@link Event} payloads with the {@link EventCodec} for bindings using the
+ * {@link #EVENT_BINARY} content type.
+ *
+ * Payloads that were not written by the codec are left to the next converter, so a consumer with
+ * this converter registered reads both binary and JSON events.
+ */
+public class EventMessageConverter extends AbstractMessageConverter {
+
+	public static final MimeType EVENT_BINARY = MimeType.valueOf("application/x-event-binary");
+
+	public EventMessageConverter() {
+		super(EVENT_BINARY);
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return Event.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+		Object payload = message.getPayload();
+		return payload instanceof byte[] && EventCodec.isEncoded((byte[]) payload)
+				? EventCodec.decode((byte[]) payload)
+				: null;
+	}
+
+	@Override
+	protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+		return EventCodec.encode((Event<?, ?>) payload);
+	}
+}
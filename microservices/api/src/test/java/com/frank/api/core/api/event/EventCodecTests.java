@@ -0,0 +1,136 @@
+package com.frank.api.core.api.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.frank.api.core.api.core.product.Product;
+import com.frank.api.core.api.core.recommendation.Recommendation;
+import com.frank.api.core.api.core.review.Review;
+
+public class EventCodecTests {
+
+	private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+	@Test
+	public void roundTripProduct() {
+		Event<Integer, Product> event = new Event<>(Event.Type.CREATE, 1, new Product(1, "name", -5, null));
+		Event<Integer, Product> decoded = EventCodec.decode(EventCodec.encode(event));
+
+		assertEquals(event.getEventId(), decoded.getEventId());
+		assertEquals(Event.Type.CREATE, decoded.getEventType());
+		assertEquals(1, decoded.getKey());
+		assertEquals(event.getEventCreatedAt(), decoded.getEventCreatedAt());
+		assertEquals(event.getEventTimestampNanos(), decoded.getEventTimestampNanos());
+		assertEquals("name", decoded.getData().getName());
+		assertEquals(-5, decoded.getData().getWeight());
+		assertNull(decoded.getData().getServiceAddress());
+	}
+
+	@Test
+	public void roundTripRecommendationAndReview() {
+		Recommendation recommendation = new Recommendation(1, 2, "a", 5, "Ünïcode ✓", "");
+		Event<Integer, Recommendation> decodedRecommendation = EventCodec.decode(
+				EventCodec.encode(new Event<>(Event.Type.CREATE, 1, recommendation)));
+		assertEquals(2, decodedRecommendation.getData().getRecommendationId());
+		assertEquals("Ünïcode ✓", decodedRecommendation.getData().getContent());
+		assertEquals("", decodedRecommendation.getData().getServiceAddress());
+
+		Review review = new Review(Integer.MAX_VALUE, Integer.MIN_VALUE, "a", "s", "c", "sa");
+		Event<Integer, Review> decodedReview = EventCodec.decode(
+				EventCodec.encode(new Event<>(Event.Type.CREATE, Integer.MAX_VALUE, review)));
+		assertEquals(Integer.MAX_VALUE, decodedReview.getData().getProductId());
+		assertEquals(Integer.MIN_VALUE, decodedReview.getData().getReviewId());
+		assertEquals("s", decodedReview.getData().getSubject());
+	}
+
+	@Test
+	public void roundTripUpdate() {
+		Event<Integer, Product> event = new Event<>(Event.Type.UPDATE, 1, new Product(1, "new name", 0, null),
+				Arrays.asList("name"));
+		byte[] encoded = EventCodec.encode(event);
+		Event<Integer, Product> decoded = EventCodec.decode(encoded);
+
+		assertEquals(EventCodec.VERSION, encoded[1]);
+		assertEquals(Event.Type.UPDATE, decoded.getEventType());
+		assertEquals(Arrays.asList("name"), decoded.getUpdatedFields());
+		assertEquals("new name", decoded.getData().getName());
+
+		// Events without updated fields are still written in the first version, with or without a timestamp
+		assertEquals(1, EventCodec.encode(new Event<>(Event.Type.DELETE, 1, null))[1]);
+		assertEquals(1, EventCodec.encode(new Event<>(null, Event.Type.DELETE, 1, null, null, null, null))[1]);
+	}
+
+	@Test
+	public void ignoresUnknownFlagsAndTrailingFields() {
+		Event<Integer, Product> event = new Event<>(Event.Type.CREATE, 1, new Product(1, "name", 2, null));
+		byte[] encoded = EventCodec.encode(event);
+
+		// As written by a later producer, with an optional field behind a flag this decoder does not know
+		byte[] later = Arrays.copyOf(encoded, encoded.length + 3);
+		later[3] |= 1 << 7;
+		later[encoded.length] = 42;
+
+		Event<Integer, Product> decoded = EventCodec.decode(later);
+		assertEquals(event.getEventId(), decoded.getEventId());
+		assertEquals(event.getEventTimestampNanos(), decoded.getEventTimestampNanos());
+		assertEquals("name", decoded.getData().getName());
+	}
+
+	@Test
+	public void roundTripDeleteWithoutIdAndTimestamp() {
+		Event<Integer, Object> event = new Event<>("not-a-uuid", Event.Type.DELETE, 7, null, null, null, null);
+		Event<Integer, Object> decoded = EventCodec.decode(EventCodec.encode(event));
+
+		assertEquals("not-a-uuid", decoded.getEventId());
+		assertEquals(Event.Type.DELETE, decoded.getEventType());
+		assertEquals(7, decoded.getKey());
+		assertNull(decoded.getData());
+		assertNull(decoded.getUpdatedFields());
+		assertNull(decoded.getEventCreatedAt());
+		assertNull(decoded.getEventTimestampNanos());
+
+		Event<Integer, Object> anonymous = EventCodec.decode(EventCodec.encode(
+				new Event<>(null, Event.Type.DELETE, 7, null, null, LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1),
+						-1L)));
+		assertNull(anonymous.getEventId());
+		assertEquals(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1), anonymous.getEventCreatedAt());
+		assertEquals(-1L, anonymous.getEventTimestampNanos());
+	}
+
+	@Test
+	public void rejectsForeignPayloads() throws Exception {
+		byte[] json = mapper.writeValueAsBytes(new Event<>(Event.Type.DELETE, 1, null));
+		assertFalse(EventCodec.isEncoded(json));
+		assertThrows(IllegalArgumentException.class, () -> EventCodec.decode(json));
+
+		byte[] encoded = EventCodec.encode(new Event<>(Event.Type.DELETE, 1, null));
+		encoded[1] = (byte) (EventCodec.VERSION + 1);
+		assertThrows(IllegalArgumentException.class, () -> EventCodec.decode(encoded));
+
+		byte[] truncated = new byte[] {EventCodec.MAGIC, EventCodec.VERSION, 1};
+		assertThrows(IllegalArgumentException.class, () -> EventCodec.decode(truncated));
+	}
+
+	// The encode and decode time against Jackson is measured by EventCodecBenchmark, in the benchmark profile
+	@Test
+	public void smallerThanJson() throws Exception {
+		Review review = new Review(123, 4, "Author 4", "Subject 4", "Content of review number 4 for product 123",
+				"review-7d9f6c-x2kqp/172.18.0.7:8080");
+		Event<Integer, Review> event = new Event<>(Event.Type.CREATE, 123, review);
+
+		byte[] binary = EventCodec.encode(event);
+		byte[] json = mapper.writeValueAsBytes(event);
+		assertTrue(binary.length * 2 < json.length, binary.length + " bytes binary, " + json.length + " bytes JSON");
+	}
+}
@@ -9,10 +9,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.stream.annotation.StreamMessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.messaging.converter.MessageConverter;
 
 import com.frank.api.core.api.composite.product.ProductCompositeService;
+import com.frank.api.core.api.event.EventMessageConverter;
 
 import org.springframework.web.reactive.function.client.WebClient;
 import springfox.documentation.builders.PathSelectors;
@@ -72,6 +75,12 @@ public class ProductCompositeServiceApplication {
 		return builder;
 	}
 
+	@Bean
+	@StreamMessageConverter
+	public MessageConverter eventMessageConverter() {
+		return new EventMessageConverter();
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(ProductCompositeServiceApplication.class, args);
 	}
@@ -0,0 +1,108 @@
+package com.frank.microservices.composite.product.services;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.integration.support.context.NamedComponent;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import com.frank.util.compression.PayloadCompression;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Compresses the outgoing events of the bindings listed in {@code app.messaging.compression.bindings}
+ * once they are converted to bytes, the binder's content type conversion runs before this
+ * interceptor. Payloads below the threshold, or that would not get smaller, are sent as they are.
+ * Compressed ones carry the {@link PayloadCompression#CONTENT_ENCODING_HEADER} header.
+ */
+@Component
+@GlobalChannelInterceptor(patterns = "output-*")
+public class CompressingChannelInterceptor implements ChannelInterceptor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CompressingChannelInterceptor.class);
+
+	private final Set<String> bindings;
+	private final int thresholdBytes;
+	private final MeterRegistry registry;
+	private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+	private static class Meters {
+		private final DistributionSummary ratio;
+		private final Timer time;
+		private final Counter skipped;
+
+		private Meters(String binding, MeterRegistry registry) {
+			this.ratio = DistributionSummary.builder("messaging.compression.ratio")
+					.description("Compressed size of message payloads relative to their original size")
+					.tag("binding", binding)
+					.register(registry);
+			this.time = Timer.builder("messaging.compression.time")
+					.description("Time spent compressing and decompressing message payloads")
+					.tag("binding", binding)
+					.tag("operation", "compress")
+					.register(registry);
+			this.skipped = Counter.builder("messaging.compression.skipped")
+					.description("Messages sent uncompressed since they were below the threshold or did not shrink")
+					.tag("binding", binding)
+					.register(registry);
+		}
+	}
+
+	@Autowired
+	public CompressingChannelInterceptor(
+			@Value("${app.messaging.compression.bindings:}") String[] bindings,
+			@Value("${app.messaging.compression.threshold-bytes:1024}") int thresholdBytes,
+			MeterRegistry registry) {
+		this.bindings = new HashSet<>(Arrays.asList(bindings));
+		this.thresholdBytes = thresholdBytes;
+		this.registry = registry;
+		if (!this.bindings.isEmpty()) {
+			LOG.info("Compresses payloads of at least {} bytes on the bindings {}", thresholdBytes, this.bindings);
+		}
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		if (!(channel instanceof NamedComponent)) return message;
+		String binding = ((NamedComponent) channel).getComponentName();
+		if (!bindings.contains(binding) || !(message.getPayload() instanceof byte[])) return message;
+
+		Meters bindingMeters = meters.computeIfAbsent(binding, b -> new Meters(b, registry));
+		byte[] payload = (byte[]) message.getPayload();
+		if (payload.length < thresholdBytes) {
+			bindingMeters.skipped.increment();
+			return message;
+		}
+
+		long start = System.nanoTime();
+		byte[] compressed = PayloadCompression.compress(payload);
+		bindingMeters.time.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		bindingMeters.ratio.record((double) compressed.length / payload.length);
+
+		if (compressed.length >= payload.length) {
+			bindingMeters.skipped.increment();
+			return message;
+		}
+		return MessageBuilder.withPayload(compressed)
+				.copyHeaders(message.getHeaders())
+				.setHeader(PayloadCompression.CONTENT_ENCODING_HEADER, PayloadCompression.CONTENT_ENCODING)
+				.build();
+	}
+}
@@ -1,6 +1,7 @@
 package com.frank.microservices.composite.product.services;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,18 +10,22 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.Output;
+import org.springframework.http.MediaType;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.frank.api.core.api.core.product.Product;
 import com.frank.api.core.api.core.product.ProductService;
+import com.frank.api.core.api.core.product.ProductSuggestion;
 import com.frank.api.core.api.core.recommendation.Recommendation;
 import com.frank.api.core.api.core.recommendation.RecommendationService;
 import com.frank.api.core.api.core.review.Review;
+import com.frank.api.core.api.core.review.ReviewSearchHit;
 import com.frank.api.core.api.core.review.ReviewService;
 import com.frank.api.core.api.event.Event;
 import com.frank.util.exceptions.InvalidInputException;
@@ -81,6 +86,15 @@ public class ProductCompositeIntegration implements ProductService, ReviewServic
         return body;
     }
 
+	@Override
+	public Product updateProduct(List<String> fields, Product body) {
+		messageSources.outputProducts().send(
+				MessageBuilder.withPayload(
+						new Event<Integer, Product>(Event.Type.UPDATE, body.getProductId(), body, fields))
+				.build());
+		return body;
+	}
+
 	@Override
     public Mono<Product> getProduct(int productId) {
 		String url= productServiceUrl + "/product/" + productId;
@@ -95,6 +109,41 @@ public class ProductCompositeIntegration implements ProductService, ReviewServic
 						ex -> handleException(ex));
     }
 
+    @Override
+    public Flux<Product> getProducts(int afterProductId, int limit, Integer minWeight, Integer maxWeight) {
+    	UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(productServiceUrl + "/product")
+    			.queryParam("afterProductId", afterProductId)
+    			.queryParam("limit", limit);
+    	if (minWeight != null) uri.queryParam("minWeight", minWeight);
+    	if (maxWeight != null) uri.queryParam("maxWeight", maxWeight);
+
+    	String url = uri.toUriString();
+    	LOG.debug("Will call the getProducts API on URL: {}", url);
+
+    	return getWebClient().get()
+    			.uri(url)
+    			.accept(MediaType.APPLICATION_STREAM_JSON)
+    			.retrieve()
+    			.bodyToFlux(Product.class)
+    			.log()
+    			.onErrorMap(WebClientResponseException.class,
+    					ex -> handleException(ex));
+    }
+
+    @Override
+    public Flux<ProductSuggestion> getProductSuggestions(String prefix, int limit) {
+    	String url = productServiceUrl + "/product/suggestions?prefix={prefix}&limit={limit}";
+    	LOG.debug("Will call the getProductSuggestions API on URL: {}", url);
+
+    	return getWebClient().get()
+    			.uri(url, prefix, limit)
+    			.retrieve()
+    			.bodyToFlux(ProductSuggestion.class)
+    			.log()
+    			.onErrorMap(WebClientResponseException.class,
+    					ex -> handleException(ex));
+    }
+
     @Override
     public void deleteProduct(int productId) {
         messageSources.outputProducts().send(
@@ -114,9 +163,23 @@ public class ProductCompositeIntegration implements ProductService, ReviewServic
     }
 
     @Override
-    public Flux<Recommendation> getRecommendations(int productId) {
+    public Recommendation updateRecommendation(List<String> fields, Recommendation body) {
+        messageSources.outputRecommendations().send(
+        		MessageBuilder.withPayload(
+        				new Event<Integer, Recommendation>(Event.Type.UPDATE, body.getProductId(), body, fields))
+        		.build());
+        return body;
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendations(int productId, int top, String sort) {
+
+    	 UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(recommendationServiceUrl + "/recommendation")
+    			 .queryParam("productId", productId);
+    	 if (top > 0) uri.queryParam("top", top);
+    	 if (sort != null) uri.queryParam("sort", sort);
 
-    	 String url = recommendationServiceUrl + "/recommendation?productId=" + productId;
+    	 String url = uri.toUriString();
 
          LOG.debug("Will call the getRecommendations API on URL: {}", url);
 
@@ -146,6 +209,21 @@ public class ProductCompositeIntegration implements ProductService, ReviewServic
     			.build());
         return body;
     }
+    
+    @Override
+    public List<Review> createReviews(List<Review> body) {
+    	body.forEach(this::createReview);
+        return body;
+    }
+
+    @Override
+    public Review updateReview(List<String> fields, Review body) {
+    	messageSources.outputReviews().send(
+    			MessageBuilder.withPayload(
+    					new Event<Integer, Review>(Event.Type.UPDATE, body.getProductId(), body, fields))
+    			.build());
+        return body;
+    }
 
     @Override
     public Flux<Review> getReviews(int productId) {
@@ -164,6 +242,20 @@ public class ProductCompositeIntegration implements ProductService, ReviewServic
         		.onErrorResume(error -> Flux.empty());
     }
 
+    @Override
+    public Flux<ReviewSearchHit> searchReviews(String query, int page, int size) {
+    	String url = reviewServiceUrl + "/review/search?query={query}&page={page}&size={size}";
+    	LOG.debug("Will call the searchReviews API on URL: {}", url);
+
+    	return getWebClient().get()
+    			.uri(url, query, page, size)
+    			.retrieve()
+    			.bodyToFlux(ReviewSearchHit.class)
+    			.log()
+    			.onErrorMap(WebClientResponseException.class,
+    					ex -> handleException(ex));
+    }
+
     @Override
     public void deleteReviews(int productId) {
     	messageSources.outputReviews().send(
@@ -16,6 +16,7 @@ import com.frank.api.core.api.composite.product.ServiceAddresses;
 import com.frank.api.core.api.core.product.Product;
 import com.frank.api.core.api.core.recommendation.Recommendation;
 import com.frank.api.core.api.core.review.Review;
+import com.frank.util.exceptions.InvalidInputException;
 import com.frank.util.http.ServiceUtil;
 
 import reactor.core.publisher.Mono;
@@ -69,9 +70,67 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         }
     }
 
+	@Override
+	public void updateCompositeProduct(int productId, List<String> fields, ProductAggregate body) {
+		try {
+			
+			LOG.debug("updateCompositeProduct: updates {} of the product with productId: {}", fields, productId);
+			
+			checkUpdate(productId, fields, Product.UPDATABLE_FIELDS);
+			integration.updateProduct(fields, new Product(productId, body.getName(), body.getWeight(), null));
+			
+		} catch (RuntimeException re) {
+			LOG.warn("updateCompositeProduct failed: {}", re.toString());
+			throw re;
+		}
+	}
+	
+	@Override
+	public void updateCompositeRecommendation(int productId, int recommendationId, List<String> fields,
+			RecommendationSummary body) {
+		try {
+			
+			LOG.debug("updateCompositeRecommendation: updates {} of the recommendation {}/{}", fields, productId, 
+					recommendationId);
+			
+			checkUpdate(productId, fields, Recommendation.UPDATABLE_FIELDS);
+			integration.updateRecommendation(fields, new Recommendation(productId, recommendationId, 
+					body.getAuthor(), body.getRate(), body.getContent(), null));
+			
+		} catch (RuntimeException re) {
+			LOG.warn("updateCompositeRecommendation failed: {}", re.toString());
+			throw re;
+		}
+	}
+	
+	@Override
+	public void updateCompositeReview(int productId, int reviewId, List<String> fields, ReviewSummary body) {
+		try {
+			
+			LOG.debug("updateCompositeReview: updates {} of the review {}/{}", fields, productId, reviewId);
+			
+			checkUpdate(productId, fields, Review.UPDATABLE_FIELDS);
+			integration.updateReview(fields, new Review(productId, reviewId, body.getAuthor(), body.getSubject(), 
+					body.getContent(), null));
+			
+		} catch (RuntimeException re) {
+			LOG.warn("updateCompositeReview failed: {}", re.toString());
+			throw re;
+		}
+	}
+	
+	// Updates are applied asynchronously, reject what the core services would reject while the caller waits
+	private void checkUpdate(int productId, List<String> fields, List<String> updatableFields) {
+		if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+		if (fields == null || fields.isEmpty() || !updatableFields.containsAll(fields)) {
+			throw new InvalidInputException("Invalid fields: " + fields + ", expected some of " + updatableFields);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
-    public Mono<ProductAggregate> getCompositeProduct(int productId) {
+    public Mono<ProductAggregate> getCompositeProduct(int productId, int recommendationsTop, 
+    		String recommendationsSort) {
 		return Mono.zip(
 				values -> createProductAggregate(
 							(Product) 				values[0],
@@ -79,7 +138,7 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 							(List<Review>)			values[2], 
 							serviceUtil.getServiceAddress()),
 						integration.getProduct(productId),
-						integration.getRecommendations(productId).collectList(),
+						integration.getRecommendations(productId, recommendationsTop, recommendationsSort).collectList(),
 						integration.getReviews(productId).collectList())
 				.doOnError(ex -> LOG.warn("getCompositeProduct failed: {}", ex.toString()))
 				.log();
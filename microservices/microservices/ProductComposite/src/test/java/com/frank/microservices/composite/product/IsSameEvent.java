@@ -37,6 +37,8 @@ public class IsSameEvent extends TypeSafeMatcher<String> {
         LOG.trace("Convert the following json string to a map: {}", eventAsJson);
         Map<?, ?> mapEvent = convertJsonStringToMap(eventAsJson);
         mapEvent.remove("eventCreatedAt");
+        mapEvent.remove("eventTimestampNanos");
+        mapEvent.remove("eventId");
 
         Map<?, ?>  mapExpectedEvent = getMapWithoutCreatedAt(expectedEvent);
 
@@ -58,6 +60,9 @@ public class IsSameEvent extends TypeSafeMatcher<String> {
    	private Map<?, ?>  getMapWithoutCreatedAt(Event<?, ?>  event) {
         Map<?, ?>  mapEvent = convertObjectToMap(event);
         mapEvent.remove("eventCreatedAt");
+        mapEvent.remove("eventTimestampNanos");
+        // Every event gets a new id, an expected event can not know it
+        mapEvent.remove("eventId");
         return mapEvent;
     }
 
@@ -157,6 +157,51 @@ public class MessagingTest {
 					.receivesPayloadThat(IsSameEvent.sameEventExceptCreatedAt(expectedReviewEvent)));
 	}
 	
+	@Test
+	public void updateCompositeProductAndReview() {
+
+		ProductAggregate composite = new ProductAggregate(1, "new name", 0, null, null, null);
+		client.patch()
+			.uri("/product-composite/1?fields=name")
+			.body(Mono.just(composite), ProductAggregate.class)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.OK);
+
+		assertEquals(1, queueProducts.size());
+		Event<Integer, Product> expectedEvent = new Event<>(Event.Type.UPDATE, 1, 
+				new Product(1, "new name", 0, null), Collections.singletonList("name"));
+		MatcherAssert.assertThat(queueProducts, Matchers.is(
+				MessageQueueMatcher
+					.receivesPayloadThat(IsSameEvent.sameEventExceptCreatedAt(expectedEvent))));
+
+		ReviewSummary review = new ReviewSummary(0, null, "new subject", null);
+		client.patch()
+			.uri("/product-composite/1/reviews/2?fields=subject")
+			.body(Mono.just(review), ReviewSummary.class)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.OK);
+
+		assertEquals(1, queueReviews.size());
+		Event<Integer, Review> expectedReviewEvent = new Event<>(Event.Type.UPDATE, 1, 
+				new Review(1, 2, null, "new subject", null, null), Collections.singletonList("subject"));
+		MatcherAssert.assertThat(queueReviews, Matchers.is(
+				MessageQueueMatcher
+					.receivesPayloadThat(IsSameEvent.sameEventExceptCreatedAt(expectedReviewEvent))));
+	}
+
+	@Test
+	public void updateCompositeProductWithInvalidField() {
+
+		ProductAggregate composite = new ProductAggregate(1, "new name", 0, null, null, null);
+		client.patch()
+			.uri("/product-composite/1?fields=productId")
+			.body(Mono.just(composite), ProductAggregate.class)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+
+		assertEquals(0, queueProducts.size());
+	}
+	
 	private void postAndVerifyProduct(ProductAggregate compositeProduct, HttpStatus expectedStatus) {
 		client.post()
 			.uri("/product-composite")
@@ -53,7 +53,7 @@ class ProductCompositeServiceApplicationTests {
 		Mockito.when(compositeIntegration.getProduct(PRODUCT_ID_OK))
 			.thenReturn(Mono.just(new Product(PRODUCT_ID_OK, "name", 1, "mock-address")));
 
-		Mockito.when(compositeIntegration.getRecommendations(PRODUCT_ID_OK))
+		Mockito.when(compositeIntegration.getRecommendations(PRODUCT_ID_OK, 0, null))
 			.thenReturn(Flux.fromIterable(Collections.singletonList(
 					new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address"))));
 
@@ -4,8 +4,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.stream.annotation.StreamMessageConverter;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.messaging.converter.MessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frank.api.core.api.event.Event;
+import com.frank.api.core.api.event.EventCodec;
+import com.frank.api.core.api.event.EventMessageConverter;
+import com.frank.util.dlq.DlqEventReader;
 
 @SpringBootApplication
 @ComponentScan("com.frank")
@@ -13,6 +22,22 @@ public class ProductServiceApplication {
 	
 	private final static Logger LOG = LoggerFactory.getLogger(ProductServiceApplication.class);
 
+	@Bean
+	@StreamMessageConverter
+	public MessageConverter eventMessageConverter() {
+		return new EventMessageConverter();
+	}
+
+	// Reads the events of the dead letter queue for the filters of the dlqreplay endpoint
+	@Bean
+	public DlqEventReader dlqEventReader(ObjectMapper mapper) {
+		return payload -> {
+			Event<?, ?> event = EventCodec.isEncoded(payload) ? EventCodec.decode(payload)
+					: mapper.readValue(payload, Event.class);
+			return new DlqEventReader.Summary(String.valueOf(event.getEventType()), event.getKey());
+		};
+	}
+
 	public static void main(String[] args) {
 		ConfigurableApplicationContext ctx = SpringApplication.run(ProductServiceApplication.class, args);
 		
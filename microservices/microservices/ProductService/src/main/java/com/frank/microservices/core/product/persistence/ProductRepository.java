@@ -1,9 +1,24 @@
 package com.frank.microservices.core.product.persistence;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ProductRepository extends ReactiveCrudRepository<ProductEntity, String> {
 	Mono<ProductEntity> findByProductId(int productId);
+	
+	String KEYSET_QUERY = "{ 'productId': { $gt: ?0 }, 'weight': { $gte: ?1, $lte: ?2 } }";
+	
+	/**
+	 * Range scan over the unique productId index, the weight range is filtered on the scanned documents.
+	 */
+	@Query(KEYSET_QUERY)
+	Flux<ProductEntity> findAfterProductId(int afterProductId, int minWeight, int maxWeight, Pageable pageable);
+	
+	@Query(KEYSET_QUERY)
+	Flux<ProductEntity> findAfterProductId(int afterProductId, int minWeight, int maxWeight, Sort sort);
 }
@@ -0,0 +1,54 @@
+package com.frank.microservices.core.product.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.Output;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.frank.api.core.api.event.CacheInvalidation;
+import com.frank.microservices.core.product.persistence.ProductEntity;
+import com.frank.util.changestream.MongoChangeStreamPublisher;
+import com.mongodb.client.model.changestream.OperationType;
+
+/**
+ * Publishes a {@link CacheInvalidation} for every change to the products collection, whoever made it,
+ * see {@link MongoChangeStreamPublisher}.
+ */
+@EnableBinding(ChangeStreamPublisher.InvalidationSource.class)
+@ConditionalOnProperty(name = "app.cache-invalidation.enabled", havingValue = "true")
+public class ChangeStreamPublisher extends MongoChangeStreamPublisher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ChangeStreamPublisher.class);
+
+	private static final String ENTITY = "product";
+
+	public interface InvalidationSource {
+
+		String OUTPUT_INVALIDATIONS = "output-invalidations";
+
+		@Output(OUTPUT_INVALIDATIONS)
+		MessageChannel outputInvalidations();
+	}
+
+	private final InvalidationSource invalidationSource;
+
+	@Autowired
+	public ChangeStreamPublisher(ReactiveMongoOperations mongoOperations, InvalidationSource invalidationSource,
+			@Value("${app.cache-invalidation.known-ids:10000}") int knownIds) {
+		super(mongoOperations, ProductEntity.class, knownIds);
+		this.invalidationSource = invalidationSource;
+	}
+
+	@Override
+	protected void publish(OperationType operationType, int productId, Integer version) {
+		LOG.debug("publish: {} of product {}, version {}", operationType, productId, version);
+		invalidationSource.outputInvalidations()
+			.send(MessageBuilder.withPayload(new CacheInvalidation(ENTITY, productId, version)).build());
+	}
+}
@@ -1,51 +1,57 @@
 package com.frank.microservices.core.product.services;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.handler.annotation.Headers;
+import org.springframework.messaging.handler.annotation.Payload;
 
 import com.frank.api.core.api.core.product.Product;
-import com.frank.api.core.api.core.product.ProductService;
 import com.frank.api.core.api.event.Event;
-import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.lanes.EventLanes;
+import com.frank.util.metrics.EventLatencyRecorder;
+import com.frank.util.retry.RetryRouter;
 
 @EnableBinding(Sink.class)
+@ConditionalOnExpression("'${app.messaging.consumer.mode:annotation}' == 'annotation'")
+@ConditionalOnProperty(name = "spring.cloud.stream.bindings.input.consumer.batch-mode", havingValue = "false", 
+	matchIfMissing = true)
 public class MessageProcessor {
 	
-    private static final Logger LOG = LoggerFactory.getLogger(MessageProcessor.class);
-    
-    private final ProductService productService;
+    private final ProductEventApplier applier;
+    private final EventLatencyRecorder latencyRecorder;
+    private final EventLanes lanes;
+    private final RetryRouter retries;
     
 	@Autowired
-	public MessageProcessor(ProductService productService) {
-		this.productService = productService;
+	public MessageProcessor(
+			ProductEventApplier applier,
+			EventLatencyRecorder latencyRecorder,
+			EventLanes lanes,
+			RetryRouter retries) {
+		this.applier = applier;
+		this.latencyRecorder = latencyRecorder;
+		this.lanes = lanes;
+		this.retries = retries;
 	}
 	
 	@StreamListener(target = Sink.INPUT)
-	public void process(Event<Integer, Product> event) {
-		LOG.info("Process message created at {}...", event.getEventCreatedAt());
-		
-		switch(event.getEventType()) {
-			case CREATE:
-				Product product = event.getData();
-				LOG.info("Create product with ID: {}", product.getProductId());
-				productService.createProduct(product);
-				break;
-			case DELETE:
-				int productId = event.getKey();
-				LOG.info("Delete product with ProductID: {}", productId);
-	            productService.deleteProduct(productId);
-	            break;
-			default:
-	            String errorMessage = "Incorrect event type: " + event.getEventType() + 
-	            	", expected a CREATE or DELETE event";
-	            LOG.warn(errorMessage);
-	            throw new EventProcessingException(errorMessage);
+	public void process(@Payload Event<Integer, Product> event, @Headers MessageHeaders headers) {
+		// Failures go to the retry destinations when they are enabled
+		Runnable task = retries.guard(() -> apply(event));
+		if (lanes.isEnabled()) {
+			// Acked once the event and those before it in the partition are applied
+			lanes.submit(event.getKey(), headers, task);
+			return;
 		}
-		
-		LOG.info("Message processing done!");
+		task.run();
+	}
+	
+	private void apply(Event<Integer, Product> event) {
+		applier.apply(event, latencyRecorder.recorder()).block();
 	}
 }
@@ -0,0 +1,78 @@
+package com.frank.microservices.core.product.services;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+
+import com.frank.api.core.api.core.product.Product;
+import com.frank.api.core.api.event.Event;
+import com.frank.microservices.core.product.persistence.ProductEntity;
+import com.frank.util.batch.CoalescingBatchWriter;
+import com.frank.util.batch.MongoBulkBatchWriter;
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Applies a batch of product events with a single ordered Mongo bulkWrite, see
+ * {@link MongoBulkBatchWriter}, then the applied ones to the {@link ProductNameIndex}.
+ */
+@Component
+public class ProductBatchWriter extends MongoBulkBatchWriter<Event<Integer, Product>> {
+
+	private final ProductMapper mapper;
+	private final ProductNameIndex nameIndex;
+
+	// A DELETE removes its product, CREATEs are one product each. An UPDATE only changes some fields,
+	// it is not coalesced and the events of its product are not coalesced across it
+	@Autowired
+	public ProductBatchWriter(ReactiveMongoOperations mongoOperations, ProductMapper mapper, ProductNameIndex nameIndex,
+			MeterRegistry registry, @Value("${app.messaging.coalesce.enabled:false}") boolean coalesce) {
+		super(mongoOperations, ProductEntity.class, "products", registry, coalesce, Event::getKey,
+				e -> e.getEventType() == Event.Type.DELETE ? null
+					: e.getEventType() == Event.Type.UPDATE ? CoalescingBatchWriter.NOT_COALESCED
+					: e.getData().getProductId());
+		this.mapper = mapper;
+		this.nameIndex = nameIndex;
+	}
+
+	@Override
+	protected WriteModel<Document> toWrite(Event<Integer, Product> event) {
+		switch (event.getEventType()) {
+			case CREATE:
+				Product product = event.getData();
+				if (product.getProductId() < 1)
+					throw new InvalidInputException("Invalid productId: " + product.getProductId());
+
+				ProductEntity entity = mapper.apiToEntity(product);
+				entity.setVersion(0);
+				return new InsertOneModel<>(toDocument(entity));
+			case UPDATE:
+				return new UpdateOneModel<>(Filters.eq("productId", event.getData().getProductId()),
+					ProductServiceImpl.partialUpdate(event.getUpdatedFields(), event.getData()).getUpdateObject());
+			case DELETE:
+				return new DeleteManyModel<>(Filters.eq("productId", event.getKey()));
+			default:
+				throw new EventProcessingException("Incorrect event type: " + event.getEventType() +
+					", expected a CREATE, UPDATE or DELETE event");
+		}
+	}
+
+	@Override
+	protected void onApplied(Event<Integer, Product> event) {
+		nameIndex.apply(event);
+	}
+
+	@Override
+	protected String describe(Event<Integer, Product> event) {
+		return event.getEventType() + " event for Product Id: " + event.getKey();
+	}
+}
@@ -0,0 +1,75 @@
+package com.frank.microservices.core.product.services;
+
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.frank.api.core.api.core.product.Product;
+import com.frank.api.core.api.event.Event;
+import com.frank.util.dedupe.DedupeStore;
+import com.frank.util.exceptions.EventProcessingException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies a single product event, for {@link MessageProcessor} and {@link ReactiveMessageProcessor}:
+ * skips it if it was already processed, writes it with the {@link ProductServiceImpl}, which also updates
+ * the {@link ProductNameIndex}, then records it as processed and its latency.
+ */
+@Component
+public class ProductEventApplier {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProductEventApplier.class);
+
+	private final ProductServiceImpl productService;
+	private final DedupeStore dedupeStore;
+
+	@Autowired
+	public ProductEventApplier(ProductServiceImpl productService, DedupeStore dedupeStore) {
+		this.productService = productService;
+		this.dedupeStore = dedupeStore;
+	}
+
+	/**
+	 * @param recordLatency records the latency of the event, given its timestamp
+	 * @return completes once the event is applied
+	 */
+	public Mono<Void> apply(Event<Integer, Product> event, Consumer<Long> recordLatency) {
+		LOG.info("Process message created at {}...", event.getEventCreatedAt());
+
+		if (dedupeStore.isDuplicate(event.getEventId())) {
+			LOG.info("Skips event {}, it was already processed", event.getEventId());
+			return Mono.empty();
+		}
+
+		Mono<Void> write;
+		switch(event.getEventType()) {
+			case CREATE:
+				LOG.info("Create product with ID: {}", event.getData().getProductId());
+				write = productService.createProductAsync(event.getData()).then();
+				break;
+			case UPDATE:
+				LOG.info("Update {} of product with ID: {}", event.getUpdatedFields(), event.getData().getProductId());
+				write = productService.updateProductAsync(event.getUpdatedFields(), event.getData()).then();
+				break;
+			case DELETE:
+				LOG.info("Delete product with ProductID: {}", event.getKey());
+				write = productService.deleteProductAsync(event.getKey());
+				break;
+			default:
+				String errorMessage = "Incorrect event type: " + event.getEventType() +
+					", expected a CREATE, UPDATE or DELETE event";
+				LOG.warn(errorMessage);
+				throw new EventProcessingException(errorMessage);
+		}
+
+		return write.then(Mono.fromRunnable(() -> {
+			dedupeStore.record(event.getEventId());
+			recordLatency.accept(event.getEventTimestampNanos());
+			LOG.info("Message processing done!");
+		}));
+	}
+}
@@ -0,0 +1,315 @@
+package com.frank.microservices.core.product.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Component;
+
+import com.frank.api.core.api.core.product.Product;
+import com.frank.api.core.api.core.product.ProductSuggestion;
+import com.frank.api.core.api.event.Event;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * In-memory prefix index over product names, a radix tree where each edge holds a run of characters
+ * so names sharing a prefix share its nodes.
+ *
+ * Lookups are case insensitive and rank the shortest completions of the prefix first, ties in name
+ * order.
+ *
+ * A {@link #rebuild} loads the products into a fresh tree and swaps it in once done. The products
+ * added or removed meanwhile are applied to both trees, and their stored state is not loaded since
+ * it may be older.
+ */
+@Component
+public class ProductNameIndex {
+
+	private static class Node {
+		private String label;
+		private final TreeMap<Character, Node> children = new TreeMap<>();
+		// Products whose name ends in this node, productId -> name as given
+		private final TreeMap<Integer, String> products = new TreeMap<>();
+
+		private Node(String label) {
+			this.label = label;
+		}
+	}
+
+	private static class Candidate {
+		private final Node node;
+		// The key the node ends in, its length is the depth of the node
+		private final String key;
+
+		private Candidate(Node node, String key) {
+			this.node = node;
+			this.key = key;
+		}
+	}
+
+	private static class Tree {
+		private final Node root = new Node("");
+		private final Map<Integer, String> keys = new HashMap<>();
+	}
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Tree tree = new Tree();
+
+	// The tree being rebuilt and the products changed since the rebuild started, null unless rebuilding
+	private Tree rebuilt;
+	private Set<Integer> changed;
+
+	public void add(int productId, String name) {
+		if (name == null) return;
+
+		lock.writeLock().lock();
+		try {
+			add(tree, productId, name);
+			if (rebuilt != null) {
+				add(rebuilt, productId, name);
+				changed.add(productId);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(int productId) {
+		lock.writeLock().lock();
+		try {
+			remove(tree, productId);
+			if (rebuilt != null) {
+				remove(rebuilt, productId);
+				changed.add(productId);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the content of the index with the products, the index keeps serving lookups meanwhile.
+	 *
+	 * @return the number of products in the index once rebuilt
+	 */
+	public Mono<Integer> rebuild(Flux<ProductSuggestion> products) {
+		return Mono.defer(() -> {
+			lock.writeLock().lock();
+			try {
+				if (rebuilt != null) return Mono.error(new IllegalStateException("The index is already rebuilding"));
+				rebuilt = new Tree();
+				changed = new HashSet<>();
+			} finally {
+				lock.writeLock().unlock();
+			}
+
+			return products
+				.doOnNext(product -> load(product.getProductId(), product.getName()))
+				.then(Mono.fromCallable(this::swap))
+				.doOnError(ex -> abortRebuild());
+		});
+	}
+
+	/**
+	 * Applies an event that was written to the database, for writers that bypass ProductService.
+	 */
+	public void apply(Event<Integer, Product> event) {
+		if (event.getEventType() == Event.Type.CREATE) {
+			add(event.getData().getProductId(), event.getData().getName());
+		} else if (event.getEventType() == Event.Type.UPDATE && event.getUpdatedFields().contains("name")) {
+			add(event.getData().getProductId(), event.getData().getName());
+		} else if (event.getEventType() == Event.Type.DELETE) {
+			remove(event.getKey());
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			tree = new Tree();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return tree.keys.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public List<ProductSuggestion> suggest(String prefix, int limit) {
+		List<ProductSuggestion> result = new ArrayList<>(limit);
+		String key = normalize(prefix);
+
+		lock.readLock().lock();
+		try {
+			// Find the node the prefix ends in, possibly part way into its label
+			Node node = tree.root;
+			int depth = 0;
+			while (depth < key.length()) {
+				Node child = node.children.get(key.charAt(depth));
+				if (child == null) return result;
+
+				int common = commonPrefixLength(child.label, key, depth);
+				if (common < child.label.length() && depth + common < key.length()) return result;
+
+				node = child;
+				depth += child.label.length();
+			}
+
+			// Best first from there, shorter keys before longer ones and keys of the same length in order
+			PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator
+				.comparingInt((Candidate c) -> c.key.length())
+				.thenComparing(c -> c.key));
+			queue.add(new Candidate(node, key.substring(0, depth - node.label.length()) + node.label));
+
+			while (!queue.isEmpty() && result.size() < limit) {
+				Candidate candidate = queue.poll();
+
+				candidate.node.products.entrySet().stream()
+					.sorted(Map.Entry.comparingByValue())
+					.limit(limit - result.size())
+					.forEach(e -> result.add(new ProductSuggestion(e.getKey(), e.getValue())));
+
+				candidate.node.children.values()
+					.forEach(child -> queue.add(new Candidate(child, candidate.key + child.label)));
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void load(int productId, String name) {
+		if (name == null) return;
+
+		lock.writeLock().lock();
+		try {
+			if (!changed.contains(productId)) add(rebuilt, productId, name);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private int swap() {
+		lock.writeLock().lock();
+		try {
+			tree = rebuilt;
+			rebuilt = null;
+			changed = null;
+			return tree.keys.size();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void abortRebuild() {
+		lock.writeLock().lock();
+		try {
+			rebuilt = null;
+			changed = null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static void add(Tree tree, int productId, String name) {
+		String previous = tree.keys.put(productId, normalize(name));
+		if (previous != null) removeKey(tree.root, previous, productId);
+		insert(tree.root, normalize(name), productId, name);
+	}
+
+	private static void remove(Tree tree, int productId) {
+		String key = tree.keys.remove(productId);
+		if (key != null) removeKey(tree.root, key, productId);
+	}
+
+	private static void insert(Node root, String key, int productId, String name) {
+		Node node = root;
+		int i = 0;
+
+		while (i < key.length()) {
+			Node child = node.children.get(key.charAt(i));
+			if (child == null) {
+				Node leaf = new Node(key.substring(i));
+				leaf.products.put(productId, name);
+				node.children.put(key.charAt(i), leaf);
+				return;
+			}
+
+			int common = commonPrefixLength(child.label, key, i);
+			if (common < child.label.length()) {
+				// Split the edge where the key leaves it
+				Node split = new Node(child.label.substring(0, common));
+				child.label = child.label.substring(common);
+				split.children.put(child.label.charAt(0), child);
+				node.children.put(split.label.charAt(0), split);
+				child = split;
+			}
+
+			node = child;
+			i += common;
+		}
+		node.products.put(productId, name);
+	}
+
+	private static void removeKey(Node root, String key, int productId) {
+		List<Node> path = new ArrayList<>();
+		Node node = root;
+		int i = 0;
+
+		path.add(node);
+		while (i < key.length()) {
+			node = node.children.get(key.charAt(i));
+			if (node == null || !key.startsWith(node.label, i)) return;
+			i += node.label.length();
+			path.add(node);
+		}
+		node.products.remove(productId);
+
+		// Prune empty leaves and merge nodes left with a single child into it
+		for (int p = path.size() - 1; p > 0; p--) {
+			Node current = path.get(p);
+			Node parent = path.get(p - 1);
+
+			if (!current.products.isEmpty()) break;
+
+			if (current.children.isEmpty()) {
+				parent.children.remove(current.label.charAt(0));
+			} else if (current.children.size() == 1) {
+				Node child = current.children.firstEntry().getValue();
+				child.label = current.label + child.label;
+				parent.children.put(child.label.charAt(0), child);
+				break;
+			} else {
+				break;
+			}
+		}
+	}
+
+	private static int commonPrefixLength(String label, String key, int offset) {
+		int max = Math.min(label.length(), key.length() - offset);
+		int i = 0;
+		while (i < max && label.charAt(i) == key.charAt(offset + i)) i++;
+		return i;
+	}
+
+	private static String normalize(String name) {
+		return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+	}
+}
@@ -1,19 +1,33 @@
 package com.frank.microservices.core.product.services;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.frank.api.core.api.core.product.Product;
 import com.frank.api.core.api.core.product.ProductService;
+import com.frank.api.core.api.core.product.ProductSuggestion;
 import com.frank.microservices.core.product.persistence.ProductEntity;
 import com.frank.microservices.core.product.persistence.ProductRepository;
 import com.frank.util.exceptions.InvalidInputException;
 import com.frank.util.exceptions.NotFoundException;
 import com.frank.util.http.ServiceUtil;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -22,31 +36,95 @@ public class ProductServiceImpl implements ProductService {
 	private static final Logger LOG = LoggerFactory.getLogger(ProductServiceImpl.class);
 	
 	private final ProductRepository repository;
+	private final ReactiveMongoOperations mongoOperations;
 	private final ProductMapper mapper;
 	private final ServiceUtil serviceUtil;
+	private final ProductNameIndex nameIndex;
+	private final int maxSuggestions;
 
 	@Autowired
-	public ProductServiceImpl(ProductRepository repository, ProductMapper mapper, ServiceUtil serviceUtil) {
+	public ProductServiceImpl(ProductRepository repository, ReactiveMongoOperations mongoOperations, 
+			ProductMapper mapper, ServiceUtil serviceUtil, ProductNameIndex nameIndex, 
+			@Value("${app.suggestions.max-limit:100}") int maxSuggestions) {
 		this.repository = repository;
+		this.mongoOperations = mongoOperations;
 		this.mapper = mapper;
 		this.serviceUtil = serviceUtil;
+		this.nameIndex = nameIndex;
+		this.maxSuggestions = maxSuggestions;
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void buildNameIndex() {
+		nameIndex.rebuild(repository.findAll().map(e -> new ProductSuggestion(e.getProductId(), e.getName())))
+			.subscribe(
+				count -> LOG.info("Built the product name index from {} products", count),
+				ex -> LOG.warn("Failed to build the product name index: {}", ex.toString()));
 	}
 	
 	@Override
 	public Product createProduct(Product body) {
+		return createProductAsync(body).block();
+	}
+	
+	/**
+	 * Like {@link #createProduct}, completes once the product is written instead of blocking.
+	 */
+	public Mono<Product> createProductAsync(Product body) {
 		if(body.getProductId() < 1)
 			throw new InvalidInputException("Invalid productId: " + body.getProductId());
 		
 		ProductEntity entity = mapper.apiToEntity(body);
-		Mono<Product> newEntity = repository.save(entity)
+		return repository.save(entity)
 				.log()
 				.onErrorMap(
 						DuplicateKeyException.class, 
 						ex -> new InvalidInputException("Duplicate key, Product Id: " 
 								+ body.getProductId()))
-				.map(e -> mapper.entityToApi(e));
+				.map(e -> mapper.entityToApi(e))
+				.doOnSuccess(product -> nameIndex.add(product.getProductId(), product.getName()));
+	}
+
+	@Override
+	public Product updateProduct(List<String> fields, Product body) {
+		return updateProductAsync(fields, body).block();
+	}
+	
+	/**
+	 * Like {@link #updateProduct}, completes once the product is written instead of blocking.
+	 */
+	public Mono<Product> updateProductAsync(List<String> fields, Product body) {
+		if(body.getProductId() < 1)
+			throw new InvalidInputException("Invalid productId: " + body.getProductId());
+		
+		// One $set of the changed fields, the other fields of the document are left alone
+		return mongoOperations.findAndModify(
+					Query.query(Criteria.where("productId").is(body.getProductId())), 
+					partialUpdate(fields, body), 
+					FindAndModifyOptions.options().returnNew(true), 
+					ProductEntity.class)
+				.switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " 
+						+ body.getProductId())))
+				.log()
+				.map(e -> mapper.entityToApi(e))
+				.doOnSuccess(product -> {
+					if (fields.contains("name")) nameIndex.add(product.getProductId(), product.getName());
+				});
+	}
+	
+	/**
+	 * The update setting the given fields of a product, it also increments the version so it works
+	 * together with the optimistic locking of the repository.
+	 */
+	static Update partialUpdate(List<String> fields, Product body) {
+		if (fields == null || fields.isEmpty() || !Product.UPDATABLE_FIELDS.containsAll(fields))
+			throw new InvalidInputException("Invalid fields: " + fields + ", expected some of " 
+					+ Product.UPDATABLE_FIELDS);
 		
-		return newEntity.block();
+		Update update = new Update().inc("version", 1);
+		if (fields.contains("name")) update.set("name", body.getName());
+		if (fields.contains("weight")) update.set("weight", body.getWeight());
+		return update;
 	}
 
 	@Override
@@ -65,11 +143,50 @@ public class ProductServiceImpl implements ProductService {
 				});
 	}
 
+	@Override
+	public Flux<Product> getProducts(int afterProductId, int limit, Integer minWeight, Integer maxWeight) {
+		if (limit < 0) throw new InvalidInputException("Invalid limit: " + limit);
+		
+		int min = (minWeight == null) ? Integer.MIN_VALUE : minWeight;
+		int max = (maxWeight == null) ? Integer.MAX_VALUE : maxWeight;
+		Sort sort = Sort.by("productId");
+		
+		LOG.debug("getProducts: after productId: {}, limit: {}, weight: {} - {}", afterProductId, limit, min, max);
+		
+		Flux<ProductEntity> entities = (limit == 0)
+				? repository.findAfterProductId(afterProductId, min, max, sort)
+				: repository.findAfterProductId(afterProductId, min, max, PageRequest.of(0, limit, sort));
+		
+		return entities
+				.map(e -> mapper.entityToApi(e))
+				.map(e -> {
+					e.setServiceAddress(serviceUtil.getServiceAddress());
+					return e;
+				});
+	}
+	
+	@Override
+	public Flux<ProductSuggestion> getProductSuggestions(String prefix, int limit) {
+		if (prefix == null || prefix.trim().isEmpty()) throw new InvalidInputException("Empty prefix");
+		if (limit < 1 || limit > maxSuggestions) 
+			throw new InvalidInputException("Invalid limit: " + limit + ", expected 1 to " + maxSuggestions);
+		
+		return Flux.fromIterable(nameIndex.suggest(prefix, limit));
+	}
+
 	@Override
 	public void deleteProduct(int productId) {
+		deleteProductAsync(productId).block();
+	}
+	
+	/**
+	 * Like {@link #deleteProduct}, completes once the product is deleted instead of blocking.
+	 */
+	public Mono<Void> deleteProductAsync(int productId) {
         if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
 
 		LOG.debug("deleteProduct: tries to delete an entity with productId: {}", productId);
-        repository.findByProductId(productId).log().map(e -> repository.delete(e)).flatMap(e -> e).block();
+        return repository.findByProductId(productId).log().flatMap(e -> repository.delete(e))
+        		.doOnSuccess(v -> nameIndex.remove(productId));
 	}
 }
@@ -0,0 +1,86 @@
+package com.frank.microservices.core.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.frank.api.core.api.core.product.ProductSuggestion;
+import com.frank.microservices.core.product.services.ProductNameIndex;
+
+import reactor.core.publisher.Flux;
+
+public class NameIndexTest {
+	
+	private ProductNameIndex index;
+	
+	@BeforeEach
+	public void setUp() {
+		index = new ProductNameIndex();
+		index.add(1, "Laptop");
+		index.add(2, "Laptop bag");
+		index.add(3, "Lamp");
+		index.add(4, "laptop stand");
+		index.add(5, "Phone");
+	}
+	
+	@Test
+	public void suggestRanksShortestFirst() {
+		assertEquals(listOf(1, 2, 4), ids(index.suggest("lap", 10)));
+		assertEquals(listOf(3, 1, 2, 4), ids(index.suggest("LA", 10)));
+		assertEquals(listOf(3, 1), ids(index.suggest("la", 2)));
+	}
+	
+	@Test
+	public void suggestRanksTiesByName() {
+		index.add(6, "Lamb");
+		index.add(7, "Lace");
+		assertEquals(listOf(7, 6, 3, 1, 2, 4), ids(index.suggest("la", 10)));
+	}
+	
+	@Test
+	public void suggestNoMatch() {
+		assertTrue(index.suggest("lapx", 10).isEmpty());
+		assertTrue(index.suggest("x", 10).isEmpty());
+	}
+	
+	@Test
+	public void removeAndRename() {
+		index.remove(1);
+		assertEquals(listOf(2, 4), ids(index.suggest("laptop", 10)));
+		
+		index.add(2, "Phone case");
+		assertEquals(listOf(4), ids(index.suggest("laptop", 10)));
+		assertEquals(listOf(5, 2), ids(index.suggest("ph", 10)));
+		assertEquals(4, index.size());
+	}
+	
+	@Test
+	public void rebuildKeepsChangesMadeMeanwhile() {
+		Flux<ProductSuggestion> stored = Flux.just(new ProductSuggestion(1, "Laptop"),
+				new ProductSuggestion(6, "Lamp shade"), new ProductSuggestion(7, "Lace"))
+			.doOnNext(product -> {
+				if (product.getProductId() == 1) {
+					index.remove(6);
+					index.add(7, "Laptop sleeve");
+				}
+			});
+		
+		assertEquals(2, index.rebuild(stored).block());
+		assertEquals(listOf(1, 7), ids(index.suggest("la", 10)));
+		assertEquals(2, index.size());
+	}
+	
+	private List<Integer> ids(List<ProductSuggestion> suggestions) {
+		return suggestions.stream().map(ProductSuggestion::getProductId).collect(Collectors.toList());
+	}
+	
+	private List<Integer> listOf(Integer... ids) {
+		return Arrays.asList(ids);
+	}
+}
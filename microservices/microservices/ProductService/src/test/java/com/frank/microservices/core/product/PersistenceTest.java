@@ -1,11 +1,16 @@
 package com.frank.microservices.core.product;
 
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import com.frank.microservices.core.product.persistence.ProductEntity;
 import com.frank.microservices.core.product.persistence.ProductRepository;
@@ -82,6 +87,30 @@ public class PersistenceTest {
             .verifyComplete();
     }
     
+    @Test
+   	public void keysetPaging() {
+    	repository.saveAll(IntStream.rangeClosed(2, 10)
+    			.mapToObj(i -> new ProductEntity(i, "n", i))
+    			.collect(Collectors.toList()))
+    		.blockLast();
+    	
+    	Sort sort = Sort.by("productId");
+    	
+    	StepVerifier.create(repository.findAfterProductId(0, Integer.MIN_VALUE, Integer.MAX_VALUE, PageRequest.of(0, 4, sort))
+    			.map(ProductEntity::getProductId))
+    		.expectNext(1, 2, 3, 4)
+    		.verifyComplete();
+    	
+    	StepVerifier.create(repository.findAfterProductId(4, Integer.MIN_VALUE, Integer.MAX_VALUE, PageRequest.of(0, 4, sort))
+    			.map(ProductEntity::getProductId))
+    		.expectNext(5, 6, 7, 8)
+    		.verifyComplete();
+    	
+    	StepVerifier.create(repository.findAfterProductId(4, 6, 9, sort).map(ProductEntity::getProductId))
+    		.expectNext(6, 7, 8, 9)
+    		.verifyComplete();
+    }
+    
     @Test
    	public void optimisticLockError() {
 
@@ -7,6 +7,8 @@ import static org.junit.jupiter.api.Assertions.fail;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
+import java.util.Collections;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,7 +22,9 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 
 import com.frank.api.core.api.core.product.Product;
 import com.frank.api.core.api.event.Event;
+import com.frank.microservices.core.product.persistence.ProductEntity;
 import com.frank.microservices.core.product.persistence.ProductRepository;
+import com.frank.microservices.core.product.services.ProductNameIndex;
 import com.frank.util.exceptions.InvalidInputException;
 
 @SpringBootTest(webEnvironment=RANDOM_PORT,
@@ -36,6 +40,9 @@ class ProductServiceApplicationTests {
     @Autowired
     ProductRepository repository;
     
+    @Autowired
+    ProductNameIndex nameIndex;
+    
     @Autowired
 	private Sink channels;
     
@@ -45,6 +52,7 @@ class ProductServiceApplicationTests {
     public void setUpDb() {
     	input = (AbstractMessageChannel) channels.input();
     	repository.deleteAll().block();
+    	nameIndex.clear();
     }
     
     @Test
@@ -99,6 +107,60 @@ class ProductServiceApplicationTests {
 		sendDeleteProductEvent(productId);
 	}
     
+    @Test
+	public void updateProduct() {
+    	int productId = 1;
+
+		sendCreateProductEvent(productId);
+		Integer version = repository.findByProductId(productId).block().getVersion();
+
+		// Only the name changes, the weight of 0 in the event is ignored
+		Product product = new Product(productId, "New name", 0, null);
+		input.send(new GenericMessage<>(new Event<>(Event.Type.UPDATE, productId, product, 
+				Collections.singletonList("name"))));
+
+		ProductEntity entity = repository.findByProductId(productId).block();
+		assertEquals("New name", entity.getName());
+		assertEquals(productId, entity.getWeight());
+		assertEquals(version + 1, (int) entity.getVersion());
+		assertEquals(1, nameIndex.suggest("new", 10).size());
+
+		client.patch()
+			.uri("/product?fields=productId")
+			.contentType(APPLICATION_JSON)
+			.bodyValue(product)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+    
+    @Test
+    public void getProductSuggestions() {
+    	sendCreateProductEvent(1);
+    	sendCreateProductEvent(12);
+    	sendCreateProductEvent(2);
+    	
+    	client.get()
+    		.uri("/product/suggestions?prefix={prefix}&limit=10", "name 1")
+    		.accept(APPLICATION_JSON)
+    		.exchange()
+    		.expectStatus().isEqualTo(HttpStatus.OK)
+    		.expectBody()
+    		.jsonPath("$.length()").isEqualTo(2)
+    		.jsonPath("$[0].productId").isEqualTo(1)
+    		.jsonPath("$[1].productId").isEqualTo(12);
+    	
+    	sendDeleteProductEvent(1);
+    	
+    	client.get()
+			.uri("/product/suggestions?prefix=NAME&limit=1")
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.OK)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(1)
+			.jsonPath("$[0].productId").isEqualTo(2);
+    }
+    
     @Test
 	public void getProductInvalidParameterString() {
     	getAndVerifyProduct("/no-integer", HttpStatus.BAD_REQUEST)
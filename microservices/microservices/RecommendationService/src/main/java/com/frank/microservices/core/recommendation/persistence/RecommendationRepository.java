@@ -1,9 +1,13 @@
 package com.frank.microservices.core.recommendation.persistence;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 
 import reactor.core.publisher.Flux;
 
 public interface RecommendationRepository extends ReactiveCrudRepository<RecommendationEntity, String>{
 	Flux<RecommendationEntity> findByProductId(int productId);
+	Flux<RecommendationEntity> findByProductId(int productId, Sort sort);
+	Flux<RecommendationEntity> findByProductId(int productId, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.frank.microservices.core.recommendation.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.cloud.stream.messaging.Sink;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frank.api.core.api.core.recommendation.Recommendation;
+import com.frank.api.core.api.event.Event;
+import com.frank.api.core.api.event.EventCodec;
+import com.frank.util.batch.BatchEventProcessor;
+import com.frank.util.batch.BatchPayloads;
+import com.frank.util.dedupe.DedupeStore;
+import com.frank.util.metrics.EventLatencyRecorder;
+
+/**
+ * Batch mode counterpart of {@link MessageProcessor}, the binder delivers a list of recommendation
+ * events that is applied with a single bulk write and acked once, see {@link BatchEventProcessor}.
+ */
+@EnableBinding(Sink.class)
+@ConditionalOnExpression("'${app.messaging.consumer.mode:annotation}' == 'annotation'")
+@ConditionalOnProperty(name = "spring.cloud.stream.bindings.input.consumer.batch-mode", havingValue = "true")
+public class BatchMessageProcessor {
+
+	private final BatchEventProcessor<Event<Integer, Recommendation>> processor;
+
+	@Autowired
+	public BatchMessageProcessor(RecommendationBatchWriter batchWriter, DedupeStore dedupeStore,
+			EventLatencyRecorder latencyRecorder, ObjectMapper mapper) {
+		JavaType eventType = mapper.getTypeFactory()
+				.constructParametricType(Event.class, Integer.class, Recommendation.class);
+
+		this.processor = new BatchEventProcessor<>(batchWriter,
+				payloads -> BatchPayloads.decode(payloads, mapper, eventType,
+						EventCodec::isEncoded, EventCodec::decode),
+				Event::getEventId, Event::getEventTimestampNanos, dedupeStore, latencyRecorder);
+	}
+
+	@StreamListener(target = Sink.INPUT)
+	public void process(List<?> payloads) {
+		processor.process(payloads);
+	}
+}
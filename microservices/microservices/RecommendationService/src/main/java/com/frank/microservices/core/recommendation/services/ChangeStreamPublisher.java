@@ -0,0 +1,54 @@
+package com.frank.microservices.core.recommendation.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.Output;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.frank.api.core.api.event.CacheInvalidation;
+import com.frank.microservices.core.recommendation.persistence.RecommendationEntity;
+import com.frank.util.changestream.MongoChangeStreamPublisher;
+import com.mongodb.client.model.changestream.OperationType;
+
+/**
+ * Publishes a {@link CacheInvalidation} keyed by productId for each change to the recommendations
+ * collection, including changes made outside of the event flow, see {@link MongoChangeStreamPublisher}.
+ */
+@EnableBinding(ChangeStreamPublisher.InvalidationSource.class)
+@ConditionalOnProperty(name = "app.cache-invalidation.enabled", havingValue = "true")
+public class ChangeStreamPublisher extends MongoChangeStreamPublisher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ChangeStreamPublisher.class);
+
+	private static final String ENTITY = "recommendation";
+
+	public interface InvalidationSource {
+
+		String OUTPUT_INVALIDATIONS = "output-invalidations";
+
+		@Output(OUTPUT_INVALIDATIONS)
+		MessageChannel outputInvalidations();
+	}
+
+	private final InvalidationSource invalidationSource;
+
+	@Autowired
+	public ChangeStreamPublisher(ReactiveMongoOperations mongoOperations, InvalidationSource invalidationSource,
+			@Value("${app.cache-invalidation.known-ids:10000}") int knownIds) {
+		super(mongoOperations, RecommendationEntity.class, knownIds);
+		this.invalidationSource = invalidationSource;
+	}
+
+	@Override
+	protected void publish(OperationType operationType, int productId, Integer version) {
+		LOG.debug("publish: {} of a recommendation for product {}, version {}", operationType, productId, version);
+		invalidationSource.outputInvalidations()
+			.send(MessageBuilder.withPayload(new CacheInvalidation(ENTITY, productId, version)).build());
+	}
+}
@@ -0,0 +1,56 @@
+package com.frank.microservices.core.recommendation.services;
+
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frank.api.core.api.core.recommendation.Recommendation;
+import com.frank.api.core.api.event.Event;
+import com.frank.api.core.api.event.EventCodec;
+import com.frank.util.batch.BatchPayloads;
+import com.frank.util.reactive.ReactiveConsumer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Takes the place of {@link MessageProcessor} when {@code app.messaging.consumer.mode} is reactive.
+ * The events are consumed by the function processEvents, bound to the input destination, and applied
+ * by the {@link RecommendationEventApplier} like those of the listener. The next event is requested
+ * once the write of the previous one completes, see {@link ReactiveConsumer}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.messaging.consumer.mode", havingValue = "reactive")
+public class ReactiveMessageProcessor {
+
+    private final RecommendationEventApplier applier;
+    private final ReactiveConsumer reactiveConsumer;
+    private final ObjectMapper mapper;
+    private final JavaType eventType;
+
+    @Autowired
+    public ReactiveMessageProcessor(RecommendationEventApplier applier, ReactiveConsumer reactiveConsumer,
+            ObjectMapper mapper) {
+        this.applier = applier;
+        this.reactiveConsumer = reactiveConsumer;
+        this.mapper = mapper;
+        this.eventType = mapper.getTypeFactory()
+                .constructParametricType(Event.class, Integer.class, Recommendation.class);
+    }
+
+    @Bean
+    public Function<Flux<Message<byte[]>>, Mono<Void>> processEvents() {
+        return reactiveConsumer.consumer(this::decode, applier::apply);
+    }
+
+    // JSON or the binary encoding of the event, like the payloads of a batch
+    private Event<Integer, Recommendation> decode(byte[] payload) {
+        return BatchPayloads.decodeOne(payload, mapper, eventType, EventCodec::isEncoded, EventCodec::decode);
+    }
+}
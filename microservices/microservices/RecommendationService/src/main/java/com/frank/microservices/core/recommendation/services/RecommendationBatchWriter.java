@@ -0,0 +1,76 @@
+package com.frank.microservices.core.recommendation.services;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+
+import com.frank.api.core.api.core.recommendation.Recommendation;
+import com.frank.api.core.api.event.Event;
+import com.frank.microservices.core.recommendation.persistence.RecommendationEntity;
+import com.frank.util.batch.CoalescingBatchWriter;
+import com.frank.util.batch.MongoBulkBatchWriter;
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Writes recommendation events as ordered Mongo bulkWrites, see {@link MongoBulkBatchWriter}.
+ */
+@Component
+public class RecommendationBatchWriter extends MongoBulkBatchWriter<Event<Integer, Recommendation>> {
+
+	private final RecommendationMapper mapper;
+
+	// A DELETE removes all recommendations of its product, CREATEs are one recommendation each. An
+	// UPDATE only changes some fields, it is not coalesced and the events of its product are not
+	// coalesced across it
+	@Autowired
+	public RecommendationBatchWriter(ReactiveMongoOperations mongoOperations, RecommendationMapper mapper,
+			MeterRegistry registry, @Value("${app.messaging.coalesce.enabled:false}") boolean coalesce) {
+		super(mongoOperations, RecommendationEntity.class, "recommendations", registry, coalesce, Event::getKey,
+				e -> e.getEventType() == Event.Type.DELETE ? null
+					: e.getEventType() == Event.Type.UPDATE ? CoalescingBatchWriter.NOT_COALESCED
+					: e.getData().getRecommendationId());
+		this.mapper = mapper;
+	}
+
+	@Override
+	protected WriteModel<Document> toWrite(Event<Integer, Recommendation> event) {
+		switch (event.getEventType()) {
+			case CREATE:
+				Recommendation recommendation = event.getData();
+				if (recommendation.getProductId() < 1)
+					throw new InvalidInputException("Invalid productId: " + recommendation.getProductId());
+
+				RecommendationEntity entity = mapper.apiToEntity(recommendation);
+				entity.setVersion(0);
+				return new InsertOneModel<>(toDocument(entity));
+			case UPDATE:
+				Recommendation changes = event.getData();
+				return new UpdateOneModel<>(
+					Filters.and(Filters.eq("productId", changes.getProductId()),
+						Filters.eq("recommendationId", changes.getRecommendationId())),
+					RecommendationServiceImpl.partialUpdate(event.getUpdatedFields(), changes).getUpdateObject());
+			case DELETE:
+				return new DeleteManyModel<>(Filters.eq("productId", event.getKey()));
+			default:
+				throw new EventProcessingException("Incorrect event type: " + event.getEventType() +
+					", expected a CREATE, UPDATE or DELETE event");
+		}
+	}
+
+	@Override
+	protected String describe(Event<Integer, Recommendation> event) {
+		String description = event.getEventType() + " event for Product Id: " + event.getKey();
+		return event.getData() == null ? description
+			: description + ", Recommendation Id:" + event.getData().getRecommendationId();
+	}
+}
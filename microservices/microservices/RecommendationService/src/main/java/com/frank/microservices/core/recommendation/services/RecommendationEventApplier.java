@@ -0,0 +1,84 @@
+package com.frank.microservices.core.recommendation.services;
+
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.frank.api.core.api.core.recommendation.Recommendation;
+import com.frank.api.core.api.event.Event;
+import com.frank.util.dedupe.DedupeStore;
+import com.frank.util.exceptions.EventProcessingException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies a single recommendation event, for {@link MessageProcessor} and
+ * {@link ReactiveMessageProcessor}: skips it if it was already processed, writes it with the reactive
+ * repository, then records it as processed and its latency.
+ */
+@Component
+public class RecommendationEventApplier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecommendationEventApplier.class);
+
+    private final RecommendationServiceImpl recommendationService;
+    private final DedupeStore dedupeStore;
+
+    @Autowired
+    public RecommendationEventApplier(RecommendationServiceImpl recommendationService, DedupeStore dedupeStore) {
+        this.recommendationService = recommendationService;
+        this.dedupeStore = dedupeStore;
+    }
+
+    /**
+     * @param recordLatency records the latency of the event, given its timestamp
+     * @return completes once the event is applied
+     */
+    public Mono<Void> apply(Event<Integer, Recommendation> event, Consumer<Long> recordLatency) {
+        LOG.info("Process message created at {}...", event.getEventCreatedAt());
+
+        if (dedupeStore.isDuplicate(event.getEventId())) {
+            LOG.info("Skips event {}, it was already processed", event.getEventId());
+            return Mono.empty();
+        }
+
+        Mono<Void> write;
+        switch (event.getEventType()) {
+
+        case CREATE:
+            Recommendation recommendation = event.getData();
+            LOG.info("Create recommendation with ID: {}/{}", recommendation.getProductId(),
+                    recommendation.getRecommendationId());
+            write = recommendationService.createRecommendationAsync(recommendation).then();
+            break;
+
+        case UPDATE:
+            Recommendation changes = event.getData();
+            LOG.info("Update {} of recommendation with ID: {}/{}", event.getUpdatedFields(), changes.getProductId(),
+                    changes.getRecommendationId());
+            write = recommendationService.updateRecommendationAsync(event.getUpdatedFields(), changes).then();
+            break;
+
+        case DELETE:
+            int productId = event.getKey();
+            LOG.info("Delete recommendations with ProductID: {}", productId);
+            write = recommendationService.deleteRecommendationsAsync(productId);
+            break;
+
+        default:
+            String errorMessage = "Incorrect event type: " + event.getEventType() + ", "
+                    + "expected a CREATE, UPDATE or DELETE event";
+            LOG.warn(errorMessage);
+            throw new EventProcessingException(errorMessage);
+        }
+
+        return write.then(Mono.fromRunnable(() -> {
+            dedupeStore.record(event.getEventId());
+            recordLatency.accept(event.getEventTimestampNanos());
+            LOG.info("Message processing done!");
+        }));
+    }
+}
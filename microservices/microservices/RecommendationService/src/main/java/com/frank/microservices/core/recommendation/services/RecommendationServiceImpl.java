@@ -1,9 +1,18 @@
 package com.frank.microservices.core.recommendation.services;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.frank.api.core.api.core.recommendation.Recommendation;
@@ -11,6 +20,7 @@ import com.frank.api.core.api.core.recommendation.RecommendationService;
 import com.frank.microservices.core.recommendation.persistence.RecommendationEntity;
 import com.frank.microservices.core.recommendation.persistence.RecommendationRepository;
 import com.frank.util.exceptions.InvalidInputException;
+import com.frank.util.exceptions.NotFoundException;
 import com.frank.util.http.ServiceUtil;
 
 import reactor.core.publisher.Flux;
@@ -22,39 +32,98 @@ public class RecommendationServiceImpl implements RecommendationService {
 	private static final Logger LOG = LoggerFactory.getLogger(RecommendationServiceImpl.class);
 
 	private final RecommendationRepository repository;
+	private final ReactiveMongoOperations mongoOperations;
 	private final RecommendationMapper mapper;
     private final ServiceUtil serviceUtil;
 
     @Autowired
-    public RecommendationServiceImpl(RecommendationRepository repository, 
+    public RecommendationServiceImpl(RecommendationRepository repository, ReactiveMongoOperations mongoOperations,
     		RecommendationMapper mapper, ServiceUtil serviceUtil) {
     	this.repository = repository;
+    	this.mongoOperations = mongoOperations;
     	this.mapper = mapper;
         this.serviceUtil = serviceUtil;
     }
     
 	@Override
 	public Recommendation createRecommendation(Recommendation body) {		
+		return createRecommendationAsync(body).block();
+	}
+	
+	/**
+	 * Like {@link #createRecommendation}, completes once the recommendation is written instead of
+	 * blocking.
+	 */
+	public Mono<Recommendation> createRecommendationAsync(Recommendation body) {
 		if (body.getProductId() < 1) 
 			throw new InvalidInputException("Invalid productId: " + body.getProductId());
 		
 		RecommendationEntity entity = mapper.apiToEntity(body);
-		Mono<Recommendation> newEntity = repository.save(entity)
+		return repository.save(entity)
 				.log()
 				.onErrorMap(DuplicateKeyException.class, 
 						ex -> new InvalidInputException("Duplicate key, Product Id: " + 
 								body.getProductId() + ", Recommendation Id:" + body.getRecommendationId()))
 				.map(e -> mapper.entityToApi(e));
+	}
+
+	@Override
+	public Recommendation updateRecommendation(List<String> fields, Recommendation body) {
+		return updateRecommendationAsync(fields, body).block();
+	}
+	
+	/**
+	 * Like {@link #updateRecommendation}, completes once the recommendation is written instead of
+	 * blocking.
+	 */
+	public Mono<Recommendation> updateRecommendationAsync(List<String> fields, Recommendation body) {
+		if (body.getProductId() < 1) 
+			throw new InvalidInputException("Invalid productId: " + body.getProductId());
 		
-		return newEntity.block();
+		// One $set of the changed fields on the (productId, recommendationId) index
+		return mongoOperations.findAndModify(
+					Query.query(Criteria.where("productId").is(body.getProductId())
+							.and("recommendationId").is(body.getRecommendationId())),
+					partialUpdate(fields, body),
+					FindAndModifyOptions.options().returnNew(true),
+					RecommendationEntity.class)
+				.switchIfEmpty(Mono.error(new NotFoundException("No recommendation found for Product Id: " + 
+						body.getProductId() + ", Recommendation Id:" + body.getRecommendationId())))
+				.log()
+				.map(e -> mapper.entityToApi(e));
+	}
+	
+	/**
+	 * The update setting the given fields of a recommendation, the rate is stored as rating. The
+	 * version is incremented for the optimistic locking of the repository.
+	 */
+	static Update partialUpdate(List<String> fields, Recommendation body) {
+		if (fields == null || fields.isEmpty() || !Recommendation.UPDATABLE_FIELDS.containsAll(fields))
+			throw new InvalidInputException("Invalid fields: " + fields + ", expected some of " 
+					+ Recommendation.UPDATABLE_FIELDS);
+		
+		Update update = new Update().inc("version", 1);
+		if (fields.contains("author")) update.set("author", body.getAuthor());
+		if (fields.contains("rate")) update.set("rating", body.getRate());
+		if (fields.contains("content")) update.set("content", body.getContent());
+		return update;
 	}
 
 	@Override
-	public Flux<Recommendation> getRecommendations(int productId) {
+	public Flux<Recommendation> getRecommendations(int productId, int top, String sort) {
 		if (productId < 1) 
 			throw new InvalidInputException("Invalid productId: " + productId);
+		if (top < 0)
+			throw new InvalidInputException("Invalid top: " + top);
+		
+		// With sort=rating the (productId, rating, recommendationId) index returns the best ones first,
+		// and the limit makes Mongo stop reading after them
+		Sort order = toSort(sort);
+		Flux<RecommendationEntity> entities = (top == 0)
+				? repository.findByProductId(productId, order)
+				: repository.findByProductId(productId, PageRequest.of(0, top, order));
 		
-		return repository.findByProductId(productId)
+		return entities
 				.log()
 				.map(e -> mapper.entityToApi(e))
 				.map(e -> {
@@ -63,13 +132,28 @@ public class RecommendationServiceImpl implements RecommendationService {
 				});
 	}
 
+	private Sort toSort(String sort) {
+		if (sort == null || sort.isEmpty()) return Sort.unsorted();
+		if (sort.equals("rating")) return Sort.by(Sort.Order.desc("rating"), Sort.Order.asc("recommendationId"));
+		
+		throw new InvalidInputException("Invalid sort: " + sort + ", expected rating");
+	}
+
 	@Override
 	public void deleteRecommendations(int productId) {
+		deleteRecommendationsAsync(productId).block();
+	}
+	
+	/**
+	 * Like {@link #deleteRecommendations}, completes once the recommendations are deleted instead of
+	 * blocking.
+	 */
+	public Mono<Void> deleteRecommendationsAsync(int productId) {
 		if (productId < 1) 
 			throw new InvalidInputException("Invalid productId: " + productId);
 
         LOG.debug("deleteRecommendations: tries to delete recommendations for the product with "
         		+ "productId: {}", productId);
-        repository.deleteAll(repository.findByProductId(productId)).block();
+        return repository.deleteAll(repository.findByProductId(productId));
 	}
 }
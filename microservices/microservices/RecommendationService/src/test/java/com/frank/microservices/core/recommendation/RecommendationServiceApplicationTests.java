@@ -4,6 +4,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
+import java.util.Collections;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +20,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 
 import com.frank.api.core.api.core.recommendation.Recommendation;
 import com.frank.api.core.api.event.Event;
+import com.frank.microservices.core.recommendation.persistence.RecommendationEntity;
 import com.frank.microservices.core.recommendation.persistence.RecommendationRepository;
 import com.frank.util.exceptions.InvalidInputException;
 
@@ -62,6 +65,21 @@ class RecommendationServiceApplicationTests {
 			.jsonPath("$[2].recommendationId").isEqualTo(3);
 	}
 
+	@Test
+	public void getTopRecommendationsByRating() {
+
+		int productId = 1;
+
+		sendCreateRecommendationEvent(productId, 1);
+		sendCreateRecommendationEvent(productId, 3);
+		sendCreateRecommendationEvent(productId, 2);
+
+		getAndVerifyRecommendationsByProductId("?productId=" + productId + "&top=2&sort=rating", HttpStatus.OK)
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].recommendationId").isEqualTo(3)
+			.jsonPath("$[1].recommendationId").isEqualTo(2);
+	}
+
 	@Test
 	public void duplicateError() {
 
@@ -86,6 +104,24 @@ class RecommendationServiceApplicationTests {
 		assertEquals(1, (long)repository.count().block());
 	}
 
+	@Test
+	public void updateRecommendation() {
+
+		int productId = 1;
+		int recommendationId = 1;
+
+		sendCreateRecommendationEvent(productId, recommendationId);
+
+		Recommendation changes = new Recommendation(productId, recommendationId, null, 5, null, null);
+		input.send(new GenericMessage<>(new Event<>(Event.Type.UPDATE, productId, changes, 
+				Collections.singletonList("rate"))));
+
+		RecommendationEntity entity = repository.findByProductId(productId).blockFirst();
+		assertEquals(5, entity.getRating());
+		assertEquals("Author " + recommendationId, entity.getAuthor());
+		assertEquals("Content " + recommendationId, entity.getContent());
+	}
+
 	@Test
 	public void deleteRecommendations() {
 
@@ -0,0 +1,56 @@
+package com.frank.microservices.core.review;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Fixed size thread pool with a bounded queue. Tasks that find the queue full are rejected at once
+ * with a {@link RejectedExecutionException} instead of waiting behind an unbounded backlog.
+ */
+public class BoundedThreadPoolExecutor extends ThreadPoolExecutor {
+
+	private final Timer waitTimer;
+	private final Timer executionTimer;
+	private final Counter rejectedCounter;
+
+	public BoundedThreadPoolExecutor(int poolSize, int queueSize, MeterRegistry registry) {
+		super(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize));
+
+		this.waitTimer = Timer.builder("jdbc.scheduler.queue.wait")
+				.description("Time tasks waited for a thread, hikaricp.connections.acquire is the connection wait")
+				.register(registry);
+		this.executionTimer = Timer.builder("jdbc.scheduler.execution")
+				.description("Time tasks ran on the scheduler")
+				.register(registry);
+		this.rejectedCounter = Counter.builder("jdbc.scheduler.rejected")
+				.description("Tasks rejected since the queue was full")
+				.register(registry);
+		Gauge.builder("jdbc.scheduler.queue", this, e -> e.getQueue().size())
+				.description("Tasks waiting in the queue")
+				.register(registry);
+		Gauge.builder("jdbc.scheduler.active", this, ThreadPoolExecutor::getActiveCount)
+				.description("Tasks currently running")
+				.register(registry);
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		long queuedAt = System.nanoTime();
+		try {
+			super.execute(() -> {
+				waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+				executionTimer.record(task);
+			});
+		} catch (RejectedExecutionException ree) {
+			rejectedCounter.increment();
+			throw ree;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.frank.microservices.core.review;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Adds the jdbcScheduler metrics to the health endpoint, as the "jdbcScheduler" component.
+ *
+ * The scheduler rejects work it can not queue, so a full queue is reported in the details but does
+ * not take the service down.
+ */
+@Component
+public class JdbcSchedulerHealthIndicator implements HealthIndicator {
+
+	private final MeterRegistry registry;
+	private final int queueSize;
+
+	@Autowired
+	public JdbcSchedulerHealthIndicator(MeterRegistry registry,
+			@Value("${app.jdbc-scheduler.queue-size:100}") int queueSize) {
+		this.registry = registry;
+		this.queueSize = queueSize;
+	}
+
+	@Override
+	public Health health() {
+		Gauge queue = registry.find("jdbc.scheduler.queue").gauge();
+		Gauge active = registry.find("jdbc.scheduler.active").gauge();
+		Counter rejected = registry.find("jdbc.scheduler.rejected").counter();
+		Timer wait = registry.find("jdbc.scheduler.queue.wait").timer();
+		Timer execution = registry.find("jdbc.scheduler.execution").timer();
+
+		double queued = queue == null ? 0 : queue.value();
+
+		return Health.up()
+				.withDetail("queueDepth", (long) queued)
+				.withDetail("queueCapacity", queueSize)
+				.withDetail("saturated", queued >= queueSize)
+				.withDetail("active", active == null ? 0 : (long) active.value())
+				.withDetail("rejected", rejected == null ? 0 : (long) rejected.count())
+				.withDetail("queueWaitMeanMs", wait == null ? 0 : wait.mean(TimeUnit.MILLISECONDS))
+				.withDetail("queueWaitMaxMs", wait == null ? 0 : wait.max(TimeUnit.MILLISECONDS))
+				.withDetail("executionMeanMs", execution == null ? 0 : execution.mean(TimeUnit.MILLISECONDS))
+				.withDetail("executionMaxMs", execution == null ? 0 : execution.max(TimeUnit.MILLISECONDS))
+				.build();
+	}
+}
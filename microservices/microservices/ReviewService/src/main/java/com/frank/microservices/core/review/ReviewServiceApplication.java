@@ -1,16 +1,23 @@
 package com.frank.microservices.core.review;
 
-import java.util.concurrent.Executors;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.stream.annotation.StreamMessageConverter;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.messaging.converter.MessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frank.api.core.api.event.Event;
+import com.frank.api.core.api.event.EventCodec;
+import com.frank.api.core.api.event.EventMessageConverter;
+import com.frank.util.dlq.DlqEventReader;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
@@ -21,17 +28,49 @@ public class ReviewServiceApplication {
 	private static final Logger LOG = LoggerFactory.getLogger(ReviewServiceApplication.class);
 	
 	private final Integer connectionPoolSize;
+	private final String schedulerMode;
+	private final Integer queueSize;
 	
 	public ReviewServiceApplication(
 			@Value("${spring.datasource.maximum-pool-size:10}")
-			Integer connectionPoolSize) {
+			Integer connectionPoolSize,
+			@Value("${app.jdbc-scheduler.mode:fixed}")
+			String schedulerMode,
+			@Value("${app.jdbc-scheduler.queue-size:100}")
+			Integer queueSize) {
 		this.connectionPoolSize = connectionPoolSize;
+		this.schedulerMode = schedulerMode;
+		this.queueSize = queueSize;
 	}
 	
 	@Bean
-	public Scheduler jdbcScheduler() {
-		LOG.info("Creates a jdbcScheduler with connectionPoolSize = " + connectionPoolSize);
-        return Schedulers.fromExecutor(Executors.newFixedThreadPool(connectionPoolSize));
+	public Scheduler jdbcScheduler(MeterRegistry registry) {
+		if ("virtual".equals(schedulerMode) && !VirtualThreadExecutor.isSupported()) {
+			// A pool of platform threads per call would hold more threads than the fixed scheduler
+			LOG.warn("Virtual threads need a Java 21 runtime, falls back to the fixed jdbcScheduler");
+		} else if ("virtual".equals(schedulerMode)) {
+			LOG.info("Creates a jdbcScheduler on virtual threads, at most connectionPoolSize = " + connectionPoolSize + " at a time");
+			return Schedulers.fromExecutor(new VirtualThreadExecutor(connectionPoolSize, queueSize, registry));
+		}
+		
+		LOG.info("Creates a jdbcScheduler with connectionPoolSize = " + connectionPoolSize + ", queueSize = " + queueSize);
+        return Schedulers.fromExecutor(new BoundedThreadPoolExecutor(connectionPoolSize, queueSize, registry));
+	}
+
+	@Bean
+	@StreamMessageConverter
+	public MessageConverter eventMessageConverter() {
+		return new EventMessageConverter();
+	}
+
+	// Reads the events of the dead letter queue for the filters of the dlqreplay endpoint
+	@Bean
+	public DlqEventReader dlqEventReader(ObjectMapper mapper) {
+		return payload -> {
+			Event<?, ?> event = EventCodec.isEncoded(payload) ? EventCodec.decode(payload)
+					: mapper.readValue(payload, Event.class);
+			return new DlqEventReader.Summary(String.valueOf(event.getEventType()), event.getKey());
+		};
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,153 @@
+package com.frank.microservices.core.review;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Runs each task on its own virtual thread, at most {@code permits} of them at a time, so blocking
+ * JDBC calls wait for a connection on a cheap virtual thread instead of holding a platform thread.
+ *
+ * Virtual threads require Java 21, the service is compiled for Java 8 so they are looked up at
+ * runtime, see {@link #isSupported}. The shipped image runs Java 12, where the scheduler falls back
+ * to the fixed {@link BoundedThreadPoolExecutor}.
+ *
+ * At most {@code queueSize} tasks may wait for a permit, further tasks are rejected at once. The
+ * permits only bound the concurrent calls, {@code jdbc.scheduler.queue.wait} is the wait for a
+ * permit. The time a call then waits for a pooled connection is {@code hikaricp.connections.acquire}
+ * of the connection pool.
+ */
+public class VirtualThreadExecutor implements Executor, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+	private static final String FACTORY_METHOD = "newVirtualThreadPerTaskExecutor";
+	private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private final int queueSize;
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final Timer waitTimer;
+	private final Timer executionTimer;
+	private final Counter rejectedCounter;
+	private final Counter pinnedCounter;
+	private AutoCloseable pinnedRecording = null;
+
+	/**
+	 * @throws IllegalStateException if the Java runtime has no virtual threads
+	 */
+	public VirtualThreadExecutor(int permits, int queueSize, MeterRegistry registry) {
+		this.executor = createExecutor();
+		this.permits = new Semaphore(permits, true);
+		this.queueSize = queueSize;
+
+		this.waitTimer = Timer.builder("jdbc.scheduler.queue.wait")
+				.description("Time tasks waited for a permit, hikaricp.connections.acquire is the connection wait")
+				.register(registry);
+		this.executionTimer = Timer.builder("jdbc.scheduler.execution")
+				.description("Time tasks ran on the scheduler")
+				.register(registry);
+		this.rejectedCounter = Counter.builder("jdbc.scheduler.rejected")
+				.description("Tasks rejected since too many were waiting for a permit")
+				.register(registry);
+		this.pinnedCounter = Counter.builder("jdbc.scheduler.pinned")
+				.description("Virtual threads pinned to their carrier thread for more than 20 ms")
+				.register(registry);
+		Gauge.builder("jdbc.scheduler.active", this.permits, p -> permits - p.availablePermits())
+				.description("Tasks currently holding a permit")
+				.register(registry);
+		Gauge.builder("jdbc.scheduler.queue", waiting, AtomicInteger::get)
+				.description("Tasks waiting for a permit")
+				.register(registry);
+
+		this.pinnedRecording = recordPinnedThreads();
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (waiting.incrementAndGet() > queueSize) {
+			waiting.decrementAndGet();
+			rejectedCounter.increment();
+			throw new RejectedExecutionException("More than " + queueSize + " tasks wait for a permit");
+		}
+
+		executor.execute(() -> {
+			long start = System.nanoTime();
+			try {
+				permits.acquire();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				waiting.decrementAndGet();
+			}
+			waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+			try {
+				executionTimer.record(task);
+			} finally {
+				permits.release();
+			}
+		});
+	}
+
+	@Override
+	public void close() throws Exception {
+		if (pinnedRecording != null) pinnedRecording.close();
+		executor.shutdown();
+	}
+
+	/**
+	 * @return true if the Java runtime has virtual threads, from Java 21
+	 */
+	public static boolean isSupported() {
+		try {
+			Executors.class.getMethod(FACTORY_METHOD);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static ExecutorService createExecutor() {
+		try {
+			Method factory = Executors.class.getMethod(FACTORY_METHOD);
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Virtual threads are not supported by this Java runtime", e);
+		}
+	}
+
+	// Counts pinned virtual threads with a JFR event stream, available from Java 14
+	private AutoCloseable recordPinnedThreads() {
+		try {
+			Class<?> streamClass = Class.forName("jdk.jfr.consumer.RecordingStream");
+			Object stream = streamClass.getConstructor().newInstance();
+
+			streamClass.getMethod("enable", String.class).invoke(stream, PINNED_EVENT);
+			Consumer<Object> onPinned = event -> pinnedCounter.increment();
+			streamClass.getMethod("onEvent", String.class, Consumer.class).invoke(stream, PINNED_EVENT, onPinned);
+			streamClass.getMethod("startAsync").invoke(stream);
+
+			return (AutoCloseable) stream;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOG.info("Pinned virtual threads are not recorded: {}", e.toString());
+			return null;
+		}
+	}
+}
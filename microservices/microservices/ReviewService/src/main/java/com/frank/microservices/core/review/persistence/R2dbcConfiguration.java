@@ -0,0 +1,41 @@
+package com.frank.microservices.core.review.persistence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+
+/**
+ * Reactive MySQL connections, used to stream reviews when the r2dbc profile is active.
+ */
+@Configuration
+@Profile("r2dbc")
+public class R2dbcConfiguration extends AbstractR2dbcConfiguration {
+
+	private final String url;
+	private final String username;
+	private final String password;
+
+	public R2dbcConfiguration(
+			@Value("${app.r2dbc.url}") String url,
+			@Value("${spring.datasource.username}") String username,
+			@Value("${spring.datasource.password}") String password) {
+		this.url = url;
+		this.username = username;
+		this.password = password;
+	}
+
+	@Bean
+	@Override
+	public ConnectionFactory connectionFactory() {
+		return ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+				.option(ConnectionFactoryOptions.USER, username)
+				.option(ConnectionFactoryOptions.PASSWORD, password)
+				.build());
+	}
+}
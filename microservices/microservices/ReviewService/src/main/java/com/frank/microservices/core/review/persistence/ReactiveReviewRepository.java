@@ -0,0 +1,48 @@
+package com.frank.microservices.core.review.persistence;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+
+import io.r2dbc.spi.Row;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reads reviews through the reactive MySQL driver. Rows are emitted as they arrive, without a
+ * thread waiting for them.
+ *
+ * The reviews table is still owned, and written to, by JPA.
+ */
+@Repository
+@Profile("r2dbc")
+public class ReactiveReviewRepository {
+
+	private final DatabaseClient databaseClient;
+
+	@Autowired
+	public ReactiveReviewRepository(DatabaseClient databaseClient) {
+		this.databaseClient = databaseClient;
+	}
+
+	public Flux<ReviewEntity> findByProductId(int productId) {
+		return databaseClient
+				.execute("SELECT id, version, product_id, review_id, author, subject, content FROM reviews " +
+					"WHERE product_id = :productId ORDER BY id")
+				.bind("productId", productId)
+				.map((row, metadata) -> toEntity(row))
+				.all();
+	}
+
+	private ReviewEntity toEntity(Row row) {
+		ReviewEntity entity = new ReviewEntity(
+				row.get("product_id", Integer.class),
+				row.get("review_id", Integer.class),
+				row.get("author", String.class),
+				row.get("subject", String.class),
+				row.get("content", String.class));
+		entity.setId(row.get("id", Integer.class));
+		entity.setVersion(row.get("version", Integer.class));
+		return entity;
+	}
+}
@@ -0,0 +1,82 @@
+package com.frank.microservices.core.review.persistence;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Replaces the auto-configured data source with one that routes read-only transactions to the
+ * replicas in app.read-replicas.urls, writes stay on spring.datasource. The replicas are shown in
+ * the health endpoint as the "readReplicas" component.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.read-replicas.enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+	}
+
+	@Bean(destroyMethod = "close")
+	public ReplicaRoutingDataSource replicaRoutingDataSource(
+			HikariDataSource primaryDataSource,
+			DataSourceProperties properties,
+			@Value("${app.read-replicas.urls}") List<String> urls,
+			@Value("${app.read-replicas.maximum-pool-size:10}") int poolSize,
+			@Value("${app.read-replicas.max-lag-seconds:5}") long maxLagSeconds,
+			@Value("${app.read-replicas.lag-check-interval-ms:5000}") long checkIntervalMs,
+			MeterRegistry registry) {
+
+		List<DataSource> replicas = IntStream.range(0, urls.size())
+				.mapToObj(i -> {
+					HikariDataSource replica = new HikariDataSource();
+					replica.setPoolName("replica-" + i);
+					replica.setJdbcUrl(urls.get(i));
+					replica.setUsername(properties.determineUsername());
+					replica.setPassword(properties.determinePassword());
+					replica.setMaximumPoolSize(poolSize);
+					replica.setReadOnly(true);
+					// Do not fail the startup on a replica that is down, the lag check skips it
+					replica.setInitializationFailTimeout(-1);
+					return replica;
+				})
+				.collect(Collectors.toList());
+
+		return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLagSeconds, checkIntervalMs, registry);
+	}
+
+	// Excluded replicas do not take the service down, their reads go to the primary
+	@Bean
+	public HealthIndicator readReplicasHealthIndicator(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return () -> Health.up()
+				.withDetail("usable", replicaRoutingDataSource.getUsableReplicas())
+				.withDetail("excluded", replicaRoutingDataSource.getExcludedReplicas())
+				.withDetail("lagSeconds", replicaRoutingDataSource.getLags())
+				.build();
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+}
@@ -0,0 +1,162 @@
+package com.frank.microservices.core.review.persistence;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends connections of read-only transactions to one of the replicas, round robin, and everything
+ * else to the primary.
+ *
+ * The replication lag of every replica is checked periodically, replicas that lag more than
+ * {@code maxLagSeconds} behind or can not be reached are skipped until they catch up. Without any
+ * usable replica reads go to the primary. Every replica that is excluded or taken back is logged at
+ * WARN, the number of excluded replicas is the {@code db.replicas.excluded} gauge and the lag of each
+ * replica the {@code db.replica.lag} gauge, NaN while unknown.
+ *
+ * The key is looked up when the connection is acquired, wrap this data source in a
+ * LazyConnectionDataSourceProxy so that happens after the transaction is marked read-only.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+	private static final String PRIMARY = "primary";
+
+	// The lag of a replica that can not be reached or does not report it
+	private static final long UNKNOWN = -1;
+
+	private final List<String> replicaKeys = new ArrayList<>();
+	private final Map<String, DataSource> replicas = new HashMap<>();
+	private volatile List<String> usableReplicas = new ArrayList<>();
+	private final Map<String, Long> lags = new ConcurrentHashMap<>();
+	private final AtomicInteger next = new AtomicInteger();
+	private final long maxLagSeconds;
+	private final ScheduledExecutorService lagChecker;
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long maxLagSeconds,
+			long checkIntervalMs, MeterRegistry registry) {
+		this.maxLagSeconds = maxLagSeconds;
+
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		for (int i = 0; i < replicas.size(); i++) {
+			String key = "replica-" + i;
+			replicaKeys.add(key);
+			this.replicas.put(key, replicas.get(i));
+			targets.put(key, replicas.get(i));
+			lags.put(key, UNKNOWN);
+
+			Gauge.builder("db.replica.lag", lags, l -> l.get(key) == UNKNOWN ? Double.NaN : l.get(key))
+					.description("Replication lag of the replica in seconds, NaN while unknown")
+					.baseUnit("seconds")
+					.tag("replica", key)
+					.register(registry);
+		}
+		Gauge.builder("db.replicas.excluded", this, r -> r.getExcludedReplicas().size())
+				.description("Replicas not read from since they lag too far behind or can not be reached")
+				.register(registry);
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+
+		lagChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "replica-lag-checker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// Reads go to the primary until the first check has found usable replicas
+		lagChecker.scheduleWithFixedDelay(this::checkLag, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		List<String> usable = usableReplicas;
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || usable.isEmpty()) return PRIMARY;
+
+		return usable.get(Math.floorMod(next.getAndIncrement(), usable.size()));
+	}
+
+	public List<String> getUsableReplicas() {
+		return usableReplicas;
+	}
+
+	public List<String> getExcludedReplicas() {
+		List<String> excluded = new ArrayList<>(replicaKeys);
+		excluded.removeAll(usableReplicas);
+		return excluded;
+	}
+
+	/**
+	 * @return the last checked lag of each replica in seconds, -1 if unknown
+	 */
+	public Map<String, Long> getLags() {
+		return new HashMap<>(lags);
+	}
+
+	@Override
+	public void close() throws Exception {
+		lagChecker.shutdownNow();
+		for (DataSource replica : replicas.values()) {
+			if (replica instanceof AutoCloseable) ((AutoCloseable) replica).close();
+		}
+	}
+
+	private void checkLag() {
+		List<String> usable = new ArrayList<>();
+		for (String key : replicaKeys) {
+			Long lag = lagSeconds(replicas.get(key));
+			lags.put(key, lag == null ? UNKNOWN : lag);
+
+			boolean wasUsable = usableReplicas.contains(key);
+			if (lag != null && lag <= maxLagSeconds) {
+				usable.add(key);
+				if (!wasUsable) LOG.warn("Reads from {} again, replication lag: {} seconds", key, lag);
+			} else if (wasUsable) {
+				LOG.warn("Stops reading from {}, replication lag: {} seconds", key, lag == null ? "unknown" : lag);
+			}
+		}
+
+		if (!usable.equals(usableReplicas)) {
+			LOG.warn("Reads from replicas: {}, excluded: {}", usable.isEmpty() ? PRIMARY : usable,
+					replicaKeys.stream().filter(key -> !usable.contains(key)).collect(Collectors.toList()));
+		}
+		usableReplicas = usable;
+	}
+
+	// Seconds_Behind_Master of the replica, 0 for a server that is not replicating, null if unknown
+	private Long lagSeconds(DataSource replica) {
+		try (Connection connection = replica.getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet status = statement.executeQuery("SHOW SLAVE STATUS")) {
+
+			if (!status.next()) return 0L;
+
+			long lag = status.getLong("Seconds_Behind_Master");
+			return status.wasNull() ? null : lag;
+
+		} catch (Exception e) {
+			LOG.debug("Failed to check the replication lag: {}", e.toString());
+			return null;
+		}
+	}
+}
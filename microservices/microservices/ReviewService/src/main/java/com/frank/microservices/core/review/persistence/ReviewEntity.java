@@ -1,5 +1,6 @@
 package com.frank.microservices.core.review.persistence;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -7,11 +8,25 @@ import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "reviews")
 @Table(name = "reviews", indexes = { @Index(name = "reviews_unique_idx", unique = true, columnList = "productId,reviewId")})
 public class ReviewEntity {
 	
-	@Id @GeneratedValue
+	// Reserves 50 ids per round trip, pooled-lo starts each block at the value read from the
+	// sequence so it continues from ids already handed out by hibernate_sequence
+	@Id @GeneratedValue(generator = "review-id")
+	@GenericGenerator(name = "review-id", strategy = "enhanced-sequence", parameters = {
+		@Parameter(name = "sequence_name", value = "hibernate_sequence"),
+		@Parameter(name = "increment_size", value = "50"),
+		@Parameter(name = "optimizer", value = "pooled-lo")
+	})
 	private int id;
 	
 	@Version
@@ -1,13 +1,24 @@
 package com.frank.microservices.core.review.persistence;
 
 import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.QueryHint;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
 
-public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer> {
+public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer>, ReviewRepositoryCustom {
 	
+	// Served from the query cache until this instance writes to the reviews table, writes of other
+	// instances are seen once the cached result expires, see application.conf
 	@Transactional(readOnly = true)
+	@QueryHints({
+		@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+		@QueryHint(name = "org.hibernate.cacheRegion", value = "review-queries")
+	})
 	List<ReviewEntity> findByProductId(int productId);
+	
+	Optional<ReviewEntity> findByProductIdAndReviewId(int productId, int reviewId);
 }
@@ -0,0 +1,14 @@
+package com.frank.microservices.core.review.persistence;
+
+import java.util.Map;
+
+public interface ReviewRepositoryCustom {
+
+	/**
+	 * Sets the given fields of a review in place, without reading it first.
+	 *
+	 * @param values the new value of each field to change, some of author, subject and content
+	 * @return the number of updated reviews, 0 if there is no such review
+	 */
+	int updateFields(int productId, int reviewId, Map<String, Object> values);
+}
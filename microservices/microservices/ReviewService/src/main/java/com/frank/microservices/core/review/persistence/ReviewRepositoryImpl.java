@@ -0,0 +1,48 @@
+package com.frank.microservices.core.review.persistence;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Partial updates as a JPQL bulk update, only the changed columns and the version are written.
+ *
+ * Hibernate evicts the reviews cache regions on bulk updates, and the persistence context is flushed
+ * before and cleared after the update, so no cached or managed entity keeps the old values.
+ */
+public class ReviewRepositoryImpl implements ReviewRepositoryCustom {
+
+	private static final Set<String> UPDATABLE_COLUMNS = new HashSet<>(Arrays.asList("author", "subject", "content"));
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Transactional
+	@Override
+	public int updateFields(int productId, int reviewId, Map<String, Object> values) {
+		StringBuilder jpql = new StringBuilder("update ReviewEntity r set r.version = r.version + 1");
+		for (String field : values.keySet()) {
+			// The field names end up in the statement, only known columns get there
+			if (!UPDATABLE_COLUMNS.contains(field)) throw new IllegalArgumentException("Not an updatable field: " + field);
+			jpql.append(", r.").append(field).append(" = :").append(field);
+		}
+		jpql.append(" where r.productId = :productId and r.reviewId = :reviewId");
+
+		entityManager.flush();
+		Query query = entityManager.createQuery(jpql.toString())
+				.setParameter("productId", productId)
+				.setParameter("reviewId", reviewId);
+		values.forEach(query::setParameter);
+
+		int updated = query.executeUpdate();
+		entityManager.clear();
+		return updated;
+	}
+}
@@ -0,0 +1,60 @@
+package com.frank.microservices.core.review.services;
+
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frank.api.core.api.core.review.Review;
+import com.frank.api.core.api.event.Event;
+import com.frank.api.core.api.event.EventCodec;
+import com.frank.util.batch.BatchPayloads;
+import com.frank.util.reactive.ReactiveConsumer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Takes the place of {@link MessageProcessor} when {@code app.messaging.consumer.mode} is reactive.
+ * The events are consumed by the function processEvents, bound to the input destination, and applied
+ * by the {@link ReviewEventApplier} like those of the listener. The JPA writes block, they run on the
+ * jdbcScheduler and the next event is requested once the write of the previous one completes, see
+ * {@link ReactiveConsumer}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.messaging.consumer.mode", havingValue = "reactive")
+public class ReactiveMessageProcessor {
+
+    private final ReviewEventApplier applier;
+    private final ReactiveConsumer reactiveConsumer;
+    private final Scheduler scheduler;
+    private final ObjectMapper mapper;
+    private final JavaType eventType;
+
+    @Autowired
+    public ReactiveMessageProcessor(ReviewEventApplier applier, ReactiveConsumer reactiveConsumer,
+            Scheduler scheduler, ObjectMapper mapper) {
+        this.applier = applier;
+        this.reactiveConsumer = reactiveConsumer;
+        this.scheduler = scheduler;
+        this.mapper = mapper;
+        this.eventType = mapper.getTypeFactory().constructParametricType(Event.class, Integer.class, Review.class);
+    }
+
+    @Bean
+    public Function<Flux<Message<byte[]>>, Mono<Void>> processEvents() {
+        return reactiveConsumer.consumer(this::decode,
+                (event, recordLatency) -> applier.apply(event, recordLatency).subscribeOn(scheduler));
+    }
+
+    // JSON or the binary encoding of the event, like the payloads of a batch
+    private Event<Integer, Review> decode(byte[] payload) {
+        return BatchPayloads.decodeOne(payload, mapper, eventType, EventCodec::isEncoded, EventCodec::decode);
+    }
+}
@@ -0,0 +1,117 @@
+package com.frank.microservices.core.review.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.frank.api.core.api.core.review.Review;
+import com.frank.api.core.api.event.Event;
+import com.frank.microservices.core.review.persistence.ReviewRepository;
+import com.frank.util.batch.CoalescingBatchWriter;
+import com.frank.util.batch.TransactionalBatchWriter;
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Applies a batch of review events in one transaction, see {@link TransactionalBatchWriter}, then
+ * the applied ones to the {@link ReviewTextIndex}. An UPDATE of a missing review changes nothing.
+ */
+@Component
+public class ReviewBatchWriter extends TransactionalBatchWriter<Event<Integer, Review>> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReviewBatchWriter.class);
+
+	private final ReviewRepository repository;
+	private final ReviewMapper mapper;
+	private final EntityManager entityManager;
+	private final ReviewTextIndex textIndex;
+
+	// A DELETE removes all reviews of its product, CREATEs are one review each. An UPDATE only changes
+	// some fields, it is not coalesced and the events of its product are not coalesced across it
+	@Autowired
+	public ReviewBatchWriter(ReviewRepository repository, ReviewMapper mapper, EntityManager entityManager,
+			ReviewTextIndex textIndex, PlatformTransactionManager transactionManager, MeterRegistry registry,
+			@Value("${app.messaging.coalesce.enabled:false}") boolean coalesce) {
+		super(transactionManager, "reviews", registry, coalesce, Event::getKey,
+				e -> e.getEventType() == Event.Type.DELETE ? null
+					: e.getEventType() == Event.Type.UPDATE ? CoalescingBatchWriter.NOT_COALESCED
+					: e.getData().getReviewId());
+		this.repository = repository;
+		this.mapper = mapper;
+		this.entityManager = entityManager;
+		this.textIndex = textIndex;
+	}
+
+	@Override
+	protected List<RuntimeException> apply(List<Event<Integer, Review>> events) {
+		List<RuntimeException> errors = new ArrayList<>(Collections.nCopies(events.size(), null));
+
+		for (int i = 0; i < events.size(); i++) {
+			Event<Integer, Review> event = events.get(i);
+
+			switch (event.getEventType()) {
+				case CREATE:
+					Review review = event.getData();
+					if (review.getProductId() < 1) {
+						errors.set(i, new InvalidInputException("Invalid productId: " + review.getProductId()));
+						break;
+					}
+					repository.save(mapper.apiToEntity(review));
+					break;
+				case UPDATE:
+					Review changes = event.getData();
+					try {
+						// Flushes the pending inserts first, so it sees the reviews created earlier in the batch
+						repository.updateFields(changes.getProductId(), changes.getReviewId(),
+							ReviewServiceImpl.changedValues(event.getUpdatedFields(), changes));
+					} catch (InvalidInputException ex) {
+						errors.set(i, ex);
+					}
+					break;
+				case DELETE:
+					repository.deleteAll(repository.findByProductId(event.getKey()));
+					// Hibernate flushes inserts before deletes, flush now to keep the order of the events
+					entityManager.flush();
+					break;
+				default:
+					errors.set(i, new EventProcessingException("Incorrect event type: " + event.getEventType() +
+						", expected a CREATE, UPDATE or DELETE event"));
+			}
+		}
+		entityManager.flush();
+
+		LOG.debug("apply: applied {} review events in a batch", events.size());
+		return errors;
+	}
+
+	@Override
+	protected void onApplied(Event<Integer, Review> event) {
+		textIndex.apply(event);
+	}
+
+	@Override
+	protected String describe(Event<Integer, Review> event) {
+		String description = event.getEventType() + " event for Product Id: " + event.getKey();
+		return event.getData() == null ? description : description + ", Review Id:" + event.getData().getReviewId();
+	}
+
+	// The flush of the entity manager reports violations untranslated
+	@Override
+	protected boolean isConstraintViolation(RuntimeException failure) {
+		return super.isConstraintViolation(failure)
+			|| (failure instanceof PersistenceException && failure.getCause() instanceof ConstraintViolationException);
+	}
+}
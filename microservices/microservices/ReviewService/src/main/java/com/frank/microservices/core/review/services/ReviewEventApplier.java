@@ -0,0 +1,86 @@
+package com.frank.microservices.core.review.services;
+
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.frank.api.core.api.core.review.Review;
+import com.frank.api.core.api.core.review.ReviewService;
+import com.frank.api.core.api.event.Event;
+import com.frank.util.dedupe.DedupeStore;
+import com.frank.util.exceptions.EventProcessingException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies a single review event, for {@link MessageProcessor} and {@link ReactiveMessageProcessor}:
+ * skips it if it was already processed, writes it, then records it as processed and its latency. The
+ * JPA write blocks the thread that subscribes to the returned Mono.
+ */
+@Component
+public class ReviewEventApplier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReviewEventApplier.class);
+
+    private final ReviewService reviewService;
+    private final DedupeStore dedupeStore;
+
+    @Autowired
+    public ReviewEventApplier(ReviewService reviewService, DedupeStore dedupeStore) {
+        this.reviewService = reviewService;
+        this.dedupeStore = dedupeStore;
+    }
+
+    /**
+     * @param recordLatency records the latency of the event, given its timestamp
+     * @return completes once the event is applied
+     */
+    public Mono<Void> apply(Event<Integer, Review> event, Consumer<Long> recordLatency) {
+
+        LOG.info("Process message created at {}...", event.getEventCreatedAt());
+
+        if (dedupeStore.isDuplicate(event.getEventId())) {
+            LOG.info("Skips event {}, it was already processed", event.getEventId());
+            return Mono.empty();
+        }
+
+        Runnable write;
+        switch (event.getEventType()) {
+
+        case CREATE:
+            Review review = event.getData();
+            LOG.info("Create review with ID: {}/{}", review.getProductId(), review.getReviewId());
+            write = () -> reviewService.createReview(review);
+            break;
+
+        case UPDATE:
+            Review changes = event.getData();
+            LOG.info("Update {} of review with ID: {}/{}", event.getUpdatedFields(), changes.getProductId(),
+            		changes.getReviewId());
+            write = () -> reviewService.updateReview(event.getUpdatedFields(), changes);
+            break;
+
+        case DELETE:
+            int productId = event.getKey();
+            LOG.info("Delete reviews with ProductID: {}", productId);
+            write = () -> reviewService.deleteReviews(productId);
+            break;
+
+        default:
+            String errorMessage = "Incorrect event type: " + event.getEventType() + ", "
+            		+ "expected a CREATE, UPDATE or DELETE event";
+            LOG.warn(errorMessage);
+            throw new EventProcessingException(errorMessage);
+        }
+
+        return Mono.fromRunnable(write)
+                .then(Mono.fromRunnable(() -> {
+                    dedupeStore.record(event.getEventId());
+                    recordLatency.accept(event.getEventTimestampNanos());
+                    LOG.info("Message processing done!");
+                }));
+    }
+}
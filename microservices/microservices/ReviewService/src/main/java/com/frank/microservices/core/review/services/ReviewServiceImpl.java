@@ -1,24 +1,39 @@
 package com.frank.microservices.core.review.services;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.frank.api.core.api.core.review.Review;
+import com.frank.api.core.api.core.review.ReviewSearchHit;
 import com.frank.api.core.api.core.review.ReviewService;
+import com.frank.microservices.core.review.persistence.ReactiveReviewRepository;
 import com.frank.microservices.core.review.persistence.ReviewEntity;
 import com.frank.microservices.core.review.persistence.ReviewRepository;
 import com.frank.util.exceptions.InvalidInputException;
+import com.frank.util.exceptions.NotFoundException;
+import com.frank.util.exceptions.ServiceUnavailableException;
 import com.frank.util.http.ServiceUtil;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
 @RestController
@@ -29,16 +44,39 @@ public class ReviewServiceImpl implements ReviewService {
 	private final Scheduler scheduler;
 
 	private final ReviewRepository repository;
+	// Only available with the r2dbc profile, reads are then streamed instead of run on the scheduler
+	private final ReactiveReviewRepository reactiveRepository;
 	private final ReviewMapper mapper;
     private final ServiceUtil serviceUtil;
+    private final ReviewTextIndex textIndex;
+    private final int maxSearchSize;
 
     @Autowired
-	public ReviewServiceImpl(Scheduler scheduler, ReviewRepository repository, ReviewMapper mapper, 
-			ServiceUtil serviceUtil) {
+	public ReviewServiceImpl(Scheduler scheduler, ReviewRepository repository, 
+			ObjectProvider<ReactiveReviewRepository> reactiveRepository, ReviewMapper mapper, 
+			ServiceUtil serviceUtil, ReviewTextIndex textIndex, 
+			@Value("${app.search.max-size:100}") int maxSearchSize) {
     	this.scheduler = scheduler;
 		this.repository = repository;
+		this.reactiveRepository = reactiveRepository.getIfAvailable();
 		this.mapper = mapper;
 		this.serviceUtil = serviceUtil;
+		this.textIndex = textIndex;
+		this.maxSearchSize = maxSearchSize;
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void buildTextIndex() {
+		rebuildTextIndex().subscribe(
+			count -> LOG.info("Built the review search index from {} reviews", count),
+			ex -> LOG.warn("Failed to build the review search index: {}", ex.toString()));
+	}
+	
+	@Override
+	public Mono<Integer> rebuildTextIndex() {
+		return textIndex.rebuild(Flux.defer(() -> Flux.fromIterable(repository.findAll()))
+			.map(mapper::entityToApi)
+			.subscribeOn(scheduler));
 	}
 
 	@Override
@@ -49,6 +87,7 @@ public class ReviewServiceImpl implements ReviewService {
 		try{
 			ReviewEntity entity = mapper.apiToEntity(body);
 			ReviewEntity newEntity = repository.save(entity);
+			index(newEntity);
 			
 			LOG.debug("createReview: created a review entity: {}/{}", body.getProductId(), body.getReviewId());
             return mapper.entityToApi(newEntity);
@@ -59,6 +98,65 @@ public class ReviewServiceImpl implements ReviewService {
 		}
 	}
 	
+	@Override
+	public List<Review> createReviews(List<Review> body) {
+		body.stream()
+			.filter(review -> review.getProductId() < 1)
+			.findFirst()
+			.ifPresent(review -> {
+				throw new InvalidInputException("Invalid productId: " + review.getProductId());
+			});
+		
+		try {
+			// One transaction, the inserts are sent in JDBC batches of hibernate.jdbc.batch_size
+			List<ReviewEntity> entities = mapper.apiListToEntityList(body);
+			repository.saveAll(entities);
+			entities.forEach(this::index);
+			
+			LOG.debug("createReviews: created {} review entities", entities.size());
+			return mapper.entityListToApiList(entities);
+		}
+		catch(DataIntegrityViolationException dive) {
+			throw new InvalidInputException("Duplicate key in a batch of " + body.size() + " reviews");
+		}
+	}
+	
+	// The update and the read of the result in one read-write transaction on the primary
+	@Transactional
+	@Override
+	public Review updateReview(List<String> fields, Review body) {
+		if (body.getProductId() < 1) 
+			throw new InvalidInputException("Invalid productId: " + body.getProductId());
+		
+		int updated = repository.updateFields(body.getProductId(), body.getReviewId(), changedValues(fields, body));
+		if (updated == 0) {
+			throw new NotFoundException("No review found for Product Id: " + body.getProductId() + 
+					", Review Id:" + body.getReviewId());
+		}
+		
+		ReviewEntity entity = repository.findByProductIdAndReviewId(body.getProductId(), body.getReviewId()).get();
+		index(entity);
+		
+		LOG.debug("updateReview: updated {} of the review entity: {}/{}", fields, body.getProductId(), 
+				body.getReviewId());
+		return mapper.entityToApi(entity);
+	}
+	
+	/**
+	 * The new value of each of the given fields of a review, keyed by field name.
+	 */
+	static Map<String, Object> changedValues(List<String> fields, Review body) {
+		if (fields == null || fields.isEmpty() || !Review.UPDATABLE_FIELDS.containsAll(fields))
+			throw new InvalidInputException("Invalid fields: " + fields + ", expected some of " 
+					+ Review.UPDATABLE_FIELDS);
+		
+		Map<String, Object> values = new HashMap<>();
+		if (fields.contains("author")) values.put("author", body.getAuthor());
+		if (fields.contains("subject")) values.put("subject", body.getSubject());
+		if (fields.contains("content")) values.put("content", body.getContent());
+		return values;
+	}
+	
 	@Override
 	public Flux<Review> getReviews(int productId) {
 		if (productId < 1) 
@@ -66,11 +164,31 @@ public class ReviewServiceImpl implements ReviewService {
 
 		LOG.info("Will get reviews for product with id={}", productId);
 
+		if (reactiveRepository != null) {
+			return reactiveRepository.findByProductId(productId)
+					.map(e -> mapper.entityToApi(e))
+					.map(e -> {
+						e.setServiceAddress(serviceUtil.getServiceAddress());
+						return e;
+					})
+					.log(null, Level.FINE);
+		}
+
         return asyncFlux(() -> Flux
         		.fromIterable(getByProductId(productId)))
         		.log(null, Level.FINE);
 	}
 	
+	@Override
+	public Flux<ReviewSearchHit> searchReviews(String query, int page, int size) {
+		if (query == null || query.trim().isEmpty()) throw new InvalidInputException("Empty query");
+		if (page < 0) throw new InvalidInputException("Invalid page: " + page);
+		if (size < 1 || size > maxSearchSize) 
+			throw new InvalidInputException("Invalid size: " + size + ", expected 1 to " + maxSearchSize);
+		
+		return Flux.fromIterable(textIndex.search(query, page, size));
+	}
+	
 	protected List<Review> getByProductId(int productId) {
 
         List<ReviewEntity> entityList = repository.findByProductId(productId);
@@ -82,15 +200,40 @@ public class ReviewServiceImpl implements ReviewService {
         return list;
     }
 
+	// One read-write transaction, so the reviews to delete are read from the primary and not a replica
+	@Transactional
 	@Override
 	public void deleteReviews(int productId) {
 		LOG.debug("deleteReviews: tries to delete reviews for the product with productId: {}", productId);
         repository.deleteAll(repository.findByProductId(productId));
+        afterCommit(() -> textIndex.removeProduct(productId));
+	}
+	
+	private void index(ReviewEntity entity) {
+		afterCommit(() -> textIndex.add(entity.getProductId(), entity.getReviewId(), entity.getAuthor(), 
+				entity.getSubject(), entity.getContent()));
+	}
+	
+	// Changes the index once the transaction commits, so a rolled back write never shows in the search
+	private void afterCommit(Runnable indexChange) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			indexChange.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				indexChange.run();
+			}
+		});
 	}
 
 	private <T> Flux<T> asyncFlux(Supplier<Publisher<T>> publisherSupplier) {
         return Flux
         		.defer(publisherSupplier)
-        		.subscribeOn(scheduler);
+        		.subscribeOn(scheduler)
+        		// The scheduler's queue is full, fail fast instead of queueing more work
+        		.onErrorMap(RejectedExecutionException.class, 
+        				ree -> new ServiceUnavailableException("Too many concurrent requests, try again later"));
     }
 }
@@ -0,0 +1,335 @@
+package com.frank.microservices.core.review.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Component;
+
+import com.frank.api.core.api.core.review.Review;
+import com.frank.api.core.api.core.review.ReviewSearchHit;
+import com.frank.api.core.api.event.Event;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * In-memory inverted index over the subject and content of reviews, ranked with BM25.
+ *
+ * Terms are lower cased runs of letters and digits, terms in the subject count twice. A query
+ * matches reviews containing any of its terms.
+ *
+ * A {@link #rebuild} loads the reviews into fresh postings and swaps them in once done. The reviews
+ * and products changed meanwhile are applied to both, and their stored state is not loaded since it
+ * may be older.
+ */
+@Component
+public class ReviewTextIndex {
+
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+	private static final int SUBJECT_WEIGHT = 2;
+
+	private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+			"a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+			"of", "on", "or", "so", "that", "the", "this", "to", "was", "with"));
+
+	private static class Doc {
+		private final int productId;
+		private final int reviewId;
+		private final String author;
+		private final String subject;
+		private final String content;
+		private final Map<String, Integer> termFrequencies;
+		private final int length;
+
+		private Doc(int productId, int reviewId, String author, String subject, String content,
+				Map<String, Integer> termFrequencies) {
+			this.productId = productId;
+			this.reviewId = reviewId;
+			this.author = author;
+			this.subject = subject;
+			this.content = content;
+			this.termFrequencies = termFrequencies;
+			this.length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+		}
+	}
+
+	private static final Comparator<ReviewSearchHit> RANKING = Comparator
+			.comparingDouble(ReviewSearchHit::getScore).reversed()
+			.thenComparingInt(ReviewSearchHit::getProductId)
+			.thenComparingInt(ReviewSearchHit::getReviewId);
+
+	private static class Postings {
+		private final Map<Long, Doc> docs = new HashMap<>();
+		// term -> documents containing it, document key -> term frequency
+		private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+		private final Map<Integer, Set<Long>> docsByProduct = new HashMap<>();
+		private long totalLength = 0;
+
+		private void add(Doc doc) {
+			long key = key(doc.productId, doc.reviewId);
+			removeDoc(key);
+			docs.put(key, doc);
+			docsByProduct.computeIfAbsent(doc.productId, p -> new HashSet<>()).add(key);
+			doc.termFrequencies.forEach(
+					(term, tf) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(key, tf));
+			totalLength += doc.length;
+		}
+
+		private void removeProduct(int productId) {
+			Set<Long> keys = docsByProduct.remove(productId);
+			if (keys != null) new ArrayList<>(keys).forEach(this::removeDoc);
+		}
+
+		private void removeDoc(long key) {
+			Doc doc = docs.remove(key);
+			if (doc == null) return;
+
+			totalLength -= doc.length;
+			doc.termFrequencies.keySet().forEach(term -> {
+				Map<Long, Integer> posting = postings.get(term);
+				posting.remove(key);
+				if (posting.isEmpty()) postings.remove(term);
+			});
+
+			Set<Long> keys = docsByProduct.get(doc.productId);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) docsByProduct.remove(doc.productId);
+			}
+		}
+	}
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Postings index = new Postings();
+
+	// The postings being rebuilt and the reviews and products changed since the rebuild started, null
+	// unless rebuilding
+	private Postings rebuilt;
+	private Set<Long> changedReviews;
+	private Set<Integer> changedProducts;
+
+	public void add(int productId, int reviewId, String author, String subject, String content) {
+		Doc doc = doc(productId, reviewId, author, subject, content);
+
+		lock.writeLock().lock();
+		try {
+			index.add(doc);
+			if (rebuilt != null) {
+				rebuilt.add(doc);
+				changedReviews.add(key(productId, reviewId));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the given fields of an indexed review, keeping the others. Reviews that are not
+	 * indexed are left alone.
+	 */
+	public void update(int productId, int reviewId, List<String> fields, Review changes) {
+		lock.writeLock().lock();
+		try {
+			Doc doc = index.docs.get(key(productId, reviewId));
+			if (doc == null) return;
+
+			add(productId, reviewId,
+					fields.contains("author") ? changes.getAuthor() : doc.author,
+					fields.contains("subject") ? changes.getSubject() : doc.subject,
+					fields.contains("content") ? changes.getContent() : doc.content);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void removeProduct(int productId) {
+		lock.writeLock().lock();
+		try {
+			index.removeProduct(productId);
+			if (rebuilt != null) {
+				rebuilt.removeProduct(productId);
+				changedProducts.add(productId);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the content of the index with the reviews, the index keeps serving searches meanwhile.
+	 *
+	 * @return the number of reviews in the index once rebuilt
+	 */
+	public Mono<Integer> rebuild(Flux<Review> reviews) {
+		return Mono.defer(() -> {
+			lock.writeLock().lock();
+			try {
+				if (rebuilt != null) return Mono.error(new IllegalStateException("The index is already rebuilding"));
+				rebuilt = new Postings();
+				changedReviews = new HashSet<>();
+				changedProducts = new HashSet<>();
+			} finally {
+				lock.writeLock().unlock();
+			}
+
+			return reviews
+				.doOnNext(this::load)
+				.then(Mono.fromCallable(this::swap))
+				.doOnError(ex -> abortRebuild());
+		});
+	}
+
+	/**
+	 * Applies an event that was written to the database, for writers that bypass ReviewService.
+	 */
+	public void apply(Event<Integer, Review> event) {
+		if (event.getEventType() == Event.Type.CREATE) {
+			Review review = event.getData();
+			add(review.getProductId(), review.getReviewId(), review.getAuthor(), review.getSubject(),
+					review.getContent());
+		} else if (event.getEventType() == Event.Type.UPDATE) {
+			Review changes = event.getData();
+			update(changes.getProductId(), changes.getReviewId(), event.getUpdatedFields(), changes);
+		} else if (event.getEventType() == Event.Type.DELETE) {
+			removeProduct(event.getKey());
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			index = new Postings();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.docs.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the given page of the reviews matching the query, the best matches first.
+	 */
+	public List<ReviewSearchHit> search(String query, int page, int size) {
+		Set<String> terms = new HashSet<>(tokenize(query, new HashMap<>()).keySet());
+		int wanted = (page + 1) * size;
+
+		lock.readLock().lock();
+		try {
+			Map<Long, Doc> docs = index.docs;
+			if (docs.isEmpty() || terms.isEmpty()) return Collections.emptyList();
+
+			double avgLength = (double) index.totalLength / docs.size();
+			Map<Long, Double> scores = new HashMap<>();
+
+			for (String term : terms) {
+				Map<Long, Integer> posting = index.postings.get(term);
+				if (posting == null) continue;
+
+				double idf = Math.log(1 + (docs.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+				posting.forEach((key, tf) -> {
+					double norm = K1 * (1 - B + B * docs.get(key).length / avgLength);
+					scores.merge(key, idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+				});
+			}
+
+			// Keep the best (page + 1) * size hits, the worst of them on top of the queue
+			PriorityQueue<ReviewSearchHit> best = new PriorityQueue<>(RANKING.reversed());
+			scores.forEach((key, score) -> {
+				Doc doc = docs.get(key);
+				best.add(new ReviewSearchHit(doc.productId, doc.reviewId, doc.author, doc.subject, score));
+				if (best.size() > wanted) best.poll();
+			});
+
+			List<ReviewSearchHit> ranked = new ArrayList<>(best);
+			ranked.sort(RANKING);
+			int from = Math.min(page * size, ranked.size());
+			return new ArrayList<>(ranked.subList(from, ranked.size()));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void load(Review review) {
+		Doc doc = doc(review.getProductId(), review.getReviewId(), review.getAuthor(), review.getSubject(),
+				review.getContent());
+
+		lock.writeLock().lock();
+		try {
+			boolean changed = changedProducts.contains(doc.productId)
+					|| changedReviews.contains(key(doc.productId, doc.reviewId));
+			if (!changed) rebuilt.add(doc);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private int swap() {
+		lock.writeLock().lock();
+		try {
+			index = rebuilt;
+			abortRebuild();
+			return index.docs.size();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void abortRebuild() {
+		lock.writeLock().lock();
+		try {
+			rebuilt = null;
+			changedReviews = null;
+			changedProducts = null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static Doc doc(int productId, int reviewId, String author, String subject, String content) {
+		Map<String, Integer> frequencies = new HashMap<>();
+		for (int i = 0; i < SUBJECT_WEIGHT; i++) tokenize(subject, frequencies);
+		tokenize(content, frequencies);
+		return new Doc(productId, reviewId, author, subject, content, frequencies);
+	}
+
+	private static Map<String, Integer> tokenize(String text, Map<String, Integer> frequencies) {
+		if (text == null) return frequencies;
+
+		String lower = text.toLowerCase(Locale.ROOT);
+		int start = -1;
+		for (int i = 0; i <= lower.length(); i++) {
+			boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				String term = lower.substring(start, i);
+				if (term.length() > 1 && !STOP_WORDS.contains(term)) frequencies.merge(term, 1, Integer::sum);
+				start = -1;
+			}
+		}
+		return frequencies;
+	}
+
+	private static long key(int productId, int reviewId) {
+		return ((long) productId << 32) | (reviewId & 0xffffffffL);
+	}
+}
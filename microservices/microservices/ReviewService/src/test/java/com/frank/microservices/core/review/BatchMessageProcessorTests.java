@@ -0,0 +1,60 @@
+package com.frank.microservices.core.review;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.messaging.support.GenericMessage;
+
+import com.frank.api.core.api.core.review.Review;
+import com.frank.api.core.api.event.Event;
+import com.frank.microservices.core.review.persistence.ReviewRepository;
+
+@SpringBootTest(webEnvironment=RANDOM_PORT,
+		properties = {
+			"spring.datasource.url=jdbc:h2:mem:review-db",
+			"eureka.client.enabled=false",
+			"spring.cloud.stream.bindings.input.consumer.batch-mode=true"
+		})
+public class BatchMessageProcessorTests {
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@Autowired
+	private Sink channels;
+
+	@BeforeEach
+	public void setupDb() {
+		repository.deleteAll();
+	}
+
+	@Test
+	public void processBatch() {
+
+		sendBatch(Arrays.asList(createEvent(1, 1), createEvent(1, 2), createEvent(2, 1)));
+		assertEquals(2, repository.findByProductId(1).size());
+		assertEquals(1, repository.findByProductId(2).size());
+
+		// A redelivered event is skipped as a duplicate, the rest of the batch is written
+		sendBatch(Arrays.asList(createEvent(1, 2), createEvent(1, 3), new Event<>(Event.Type.DELETE, 2, null)));
+		assertEquals(3, repository.findByProductId(1).size());
+		assertEquals(0, repository.findByProductId(2).size());
+	}
+
+	private Event<Integer, Review> createEvent(int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		return new Event<>(Event.Type.CREATE, productId, review);
+	}
+
+	private void sendBatch(List<Event<Integer, Review>> events) {
+		channels.input().send(new GenericMessage<>(events));
+	}
+}
@@ -0,0 +1,57 @@
+package com.frank.microservices.core.review;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BoundedThreadPoolExecutorTest {
+
+	@Test
+	public void rejectsWhenQueueIsFull() throws Exception {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		BoundedThreadPoolExecutor executor = new BoundedThreadPoolExecutor(1, 2, registry);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+
+		try {
+			executor.execute(() -> {
+				started.countDown();
+				await(release);
+			});
+			started.await(5, TimeUnit.SECONDS);
+
+			executor.execute(() -> {});
+			executor.execute(() -> {});
+			assertEquals(2, registry.get("jdbc.scheduler.queue").gauge().value(), 0);
+
+			assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+			assertEquals(1, registry.get("jdbc.scheduler.rejected").counter().count(), 0);
+
+			release.countDown();
+			executor.shutdown();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+
+			assertEquals(3, registry.get("jdbc.scheduler.execution").timer().count());
+			assertEquals(3, registry.get("jdbc.scheduler.queue.wait").timer().count());
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -4,9 +4,14 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.hamcrest.MatcherAssert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,6 +32,9 @@ public class PersistenceTest {
 	@Autowired
     private ReviewRepository repository;
 
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
     private ReviewEntity savedEntity;
 
     @BeforeEach
@@ -75,6 +83,23 @@ public class PersistenceTest {
         assertEqualsReview(savedEntity, entityList.get(0));
     }
 
+    @Test
+   	public void getByProductIdFromQueryCache() {
+    	Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    	statistics.clear();
+
+    	repository.findByProductId(savedEntity.getProductId());
+    	repository.findByProductId(savedEntity.getProductId());
+    	assertEquals(1, statistics.getQueryCacheMissCount());
+    	assertEquals(1, statistics.getQueryCacheHitCount());
+    	assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+
+    	// A write to the reviews table invalidates the cached result
+    	repository.save(new ReviewEntity(1, 3, "a", "s", "c"));
+    	MatcherAssert.assertThat(repository.findByProductId(savedEntity.getProductId()), hasSize(2));
+    	assertEquals(2, statistics.getQueryCacheMissCount());
+    }
+
     @Test
    	public void duplicateError() {
     	assertThrows(DataIntegrityViolationException.class, 
@@ -5,6 +5,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,13 +19,20 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.integration.channel.AbstractMessageChannel;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.GenericMessage;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import com.frank.api.core.api.core.review.Review;
 import com.frank.api.core.api.event.Event;
+import com.frank.api.core.api.event.EventCodec;
+import com.frank.api.core.api.event.EventMessageConverter;
+import com.frank.microservices.core.review.persistence.ReviewEntity;
 import com.frank.microservices.core.review.persistence.ReviewRepository;
+import com.frank.microservices.core.review.services.ReviewTextIndex;
+import com.frank.util.compression.PayloadCompression;
 import com.frank.util.exceptions.InvalidInputException;
 
 @SpringBootTest(webEnvironment=RANDOM_PORT,
@@ -38,6 +50,9 @@ public class ReviewServiceApplicationTests {
 	@Autowired
 	private ReviewRepository repository;
 
+	@Autowired
+	private ReviewTextIndex textIndex;
+
 	@Autowired
 	private Sink channels;
 
@@ -48,6 +63,7 @@ public class ReviewServiceApplicationTests {
 		this.client = WebTestClient.bindToApplicationContext(this.context).build();
 		input = (AbstractMessageChannel) channels.input();
 		repository.deleteAll();
+		textIndex.clear();
 	}
 
 	@Test
@@ -96,6 +112,75 @@ public class ReviewServiceApplicationTests {
 		assertEquals(1, repository.count());
 	}
 
+	@Test
+	public void createReviewsInBatch() {
+
+		int productId = 1;
+		List<Review> reviews = IntStream.rangeClosed(1, 120)
+			.mapToObj(reviewId -> new Review(productId, reviewId, "Author", "Subject", "Content", null))
+			.collect(Collectors.toList());
+
+		client.post()
+			.uri("/review/batch")
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(reviews)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.OK)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(120)
+			.jsonPath("$[119].reviewId").isEqualTo(120);
+
+		assertEquals(120, repository.findByProductId(productId).size());
+
+		// A duplicate rolls back the whole batch
+		client.post()
+			.uri("/review/batch")
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(reviews.subList(100, 120))
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+			.expectBody()
+			.jsonPath("$.message").isEqualTo("Duplicate key in a batch of 20 reviews");
+
+		assertEquals(120, repository.count());
+	}
+
+	@Test
+	public void redeliveredEventIsSkipped() {
+
+		Review review = new Review(1, 1, "Author 1", "Subject 1", "Content 1", "SA");
+		Event<Integer, Review> event = new Event<>(Event.Type.CREATE, 1, review);
+
+		input.send(new GenericMessage<>(event));
+		// Would fail with a duplicate key if it reached the database again
+		input.send(new GenericMessage<>(event));
+
+		assertEquals(1, repository.count());
+	}
+
+	@Test
+	public void binaryEncodedEvent() {
+
+		Review review = new Review(1, 1, "Author 1", "Subject 1", "Content 1", "SA");
+		input.send(MessageBuilder.withPayload(EventCodec.encode(new Event<>(Event.Type.CREATE, 1, review)))
+				.setHeader(MessageHeaders.CONTENT_TYPE, EventMessageConverter.EVENT_BINARY.toString())
+				.build());
+
+		assertEquals(1, repository.findByProductId(1).size());
+	}
+
+	@Test
+	public void compressedEvent() {
+
+		Review review = new Review(1, 1, "Author 1", "Subject 1", "Content 1", "SA");
+		byte[] payload = PayloadCompression.compress(EventCodec.encode(new Event<>(Event.Type.CREATE, 1, review)));
+		input.send(MessageBuilder.withPayload(payload)
+				.setHeader(MessageHeaders.CONTENT_TYPE, EventMessageConverter.EVENT_BINARY.toString())
+				.build());
+
+		assertEquals(1, repository.findByProductId(1).size());
+	}
+
 	@Test
 	public void deleteReviews() {
 
@@ -111,6 +196,60 @@ public class ReviewServiceApplicationTests {
 		sendDeleteReviewEvent(productId);
 	}
 
+	@Test
+	public void updateReview() {
+
+		sendCreateReviewEvent(1, 1);
+		ReviewEntity created = repository.findByProductId(1).get(0);
+
+		// Only the subject changes, the null content in the event is ignored
+		Review review = new Review(1, 1, null, "Updated subject", null, null);
+		input.send(new GenericMessage<>(new Event<>(Event.Type.UPDATE, 1, review, 
+				Collections.singletonList("subject"))));
+
+		ReviewEntity updated = repository.findByProductId(1).get(0);
+		assertEquals("Updated subject", updated.getSubject());
+		assertEquals("Content 1", updated.getContent());
+		assertEquals(created.getVersion() + 1, updated.getVersion());
+
+		getAndVerifySearch("?query=updated", HttpStatus.OK)
+			.jsonPath("$.length()").isEqualTo(1)
+			.jsonPath("$[0].subject").isEqualTo("Updated subject");
+		getAndVerifySearch("?query=content", HttpStatus.OK)
+			.jsonPath("$.length()").isEqualTo(1);
+
+		client.patch()
+			.uri("/review?fields=reviewId")
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(review)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
+	@Test
+	public void searchReviews() {
+
+		sendCreateReviewEvent(1, 1);
+		sendCreateReviewEvent(1, 2);
+		sendCreateReviewEvent(2, 1);
+
+		getAndVerifySearch("?query=content&size=2", HttpStatus.OK)
+			.jsonPath("$.length()").isEqualTo(2);
+
+		getAndVerifySearch("?query=content&page=1&size=2", HttpStatus.OK)
+			.jsonPath("$.length()").isEqualTo(1);
+
+		sendDeleteReviewEvent(1);
+
+		getAndVerifySearch("?query=content", HttpStatus.OK)
+			.jsonPath("$.length()").isEqualTo(1)
+			.jsonPath("$[0].productId").isEqualTo(2)
+			.jsonPath("$[0].subject").isEqualTo("Subject 1");
+
+		getAndVerifySearch("?query=content&size=0", HttpStatus.UNPROCESSABLE_ENTITY)
+			.jsonPath("$.message").isEqualTo("Invalid size: 0, expected 1 to 100");
+	}
+
 	@Test
 	public void getReviewsMissingParameter() {
 
@@ -158,6 +297,16 @@ public class ReviewServiceApplicationTests {
 			.expectBody();
 	}
 	
+	private WebTestClient.BodyContentSpec getAndVerifySearch(String query, HttpStatus expectedStatus) {
+		return client.get()
+			.uri("/review/search" + query)
+			.accept(MediaType.APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(expectedStatus)
+			.expectHeader().contentType(MediaType.APPLICATION_JSON)
+			.expectBody();
+	}
+	
 	private void sendCreateReviewEvent(int productId, int reviewId) {
 		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
 		Event<Integer, Review> event = new Event<>(Event.Type.CREATE, productId, review);
@@ -0,0 +1,94 @@
+package com.frank.microservices.core.review;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.frank.api.core.api.core.review.Review;
+import com.frank.api.core.api.core.review.ReviewSearchHit;
+import com.frank.microservices.core.review.services.ReviewTextIndex;
+
+import reactor.core.publisher.Flux;
+
+public class TextIndexTest {
+
+	private ReviewTextIndex index;
+
+	@BeforeEach
+	public void setUp() {
+		index = new ReviewTextIndex();
+		index.add(1, 1, "a", "Great battery", "The battery lasts two days");
+		index.add(1, 2, "b", "Nice screen", "Bright screen, the battery is average");
+		index.add(2, 1, "c", "Too heavy", "Heavy and the keyboard is loud");
+		index.add(3, 1, "d", "Loud fan", "The fan is loud when charging the battery, loud loud loud");
+	}
+
+	@Test
+	public void searchRanksBestMatchFirst() {
+		assertEquals(keys("1/1", "1/2", "3/1"), keys(index.search("battery", 0, 10)));
+		assertEquals(keys("3/1", "2/1"), keys(index.search("LOUD", 0, 10)));
+		assertEquals("Great battery", index.search("battery", 0, 10).get(0).getSubject());
+	}
+
+	@Test
+	public void searchPages() {
+		assertEquals(keys("1/1", "1/2"), keys(index.search("battery", 0, 2)));
+		assertEquals(keys("3/1"), keys(index.search("battery", 1, 2)));
+		assertTrue(index.search("battery", 2, 2).isEmpty());
+	}
+
+	@Test
+	public void searchNoMatch() {
+		assertTrue(index.search("camera", 0, 10).isEmpty());
+		assertTrue(index.search("the", 0, 10).isEmpty());
+	}
+
+	@Test
+	public void removeProduct() {
+		index.removeProduct(1);
+
+		assertEquals(2, index.size());
+		assertEquals(keys("3/1"), keys(index.search("battery", 0, 10)));
+	}
+
+	@Test
+	public void addReplacesReview() {
+		index.add(1, 1, "a", "Bad camera", "Blurry pictures");
+
+		assertEquals(4, index.size());
+		assertEquals(keys("1/2", "3/1"), keys(index.search("battery", 0, 10)));
+		assertEquals(keys("1/1"), keys(index.search("camera", 0, 10)));
+	}
+
+	@Test
+	public void rebuildKeepsChangesMadeMeanwhile() {
+		Flux<Review> stored = Flux.just(
+				new Review(1, 1, "a", "Great battery", "Lasts two days", null),
+				new Review(2, 1, "c", "Heavy battery", "Heavy", null),
+				new Review(4, 1, "e", "Battery died", "After a week", null))
+			.doOnNext(review -> {
+				if (review.getProductId() == 1) {
+					index.removeProduct(2);
+					index.add(4, 1, "e", "Bad camera", "Blurry pictures");
+				}
+			});
+
+		assertEquals(2, index.rebuild(stored).block());
+		assertEquals(keys("1/1"), keys(index.search("battery", 0, 10)));
+		assertEquals(keys("4/1"), keys(index.search("camera", 0, 10)));
+	}
+
+	private List<String> keys(String... keys) {
+		return Arrays.asList(keys);
+	}
+
+	private List<String> keys(List<ReviewSearchHit> hits) {
+		return hits.stream().map(h -> h.getProductId() + "/" + h.getReviewId()).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,85 @@
+package com.frank.util.batch;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.frank.util.dedupe.DedupeStore;
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+import com.frank.util.metrics.EventLatencyRecorder;
+
+/**
+ * Processes a delivery of a batch mode input binding: decodes the payloads, skips the events that
+ * were already processed and writes the others with one call of the {@link BatchWriter}, then records
+ * them as processed and their latency.
+ *
+ * Events rejected as invalid input are logged and skipped, any other failure fails the delivery so
+ * the binder redelivers it. Already written events then come back as duplicates and are skipped.
+ */
+public class BatchEventProcessor<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchEventProcessor.class);
+
+	private final BatchWriter<T> writer;
+	private final Function<List<?>, List<T>> decoder;
+	private final Function<T, String> eventId;
+	private final Function<T, Long> eventTimestampNanos;
+	private final DedupeStore dedupeStore;
+	private final EventLatencyRecorder latencyRecorder;
+
+	/**
+	 * @param decoder reads the payloads of a delivery, e.g. with {@link BatchPayloads}
+	 */
+	public BatchEventProcessor(BatchWriter<T> writer, Function<List<?>, List<T>> decoder,
+			Function<T, String> eventId, Function<T, Long> eventTimestampNanos, DedupeStore dedupeStore,
+			EventLatencyRecorder latencyRecorder) {
+		this.writer = writer;
+		this.decoder = decoder;
+		this.eventId = eventId;
+		this.eventTimestampNanos = eventTimestampNanos;
+		this.dedupeStore = dedupeStore;
+		this.latencyRecorder = latencyRecorder;
+	}
+
+	public void process(List<?> payloads) {
+		List<T> events = new ArrayList<>(decoder.apply(payloads));
+		// Position of each event in the delivery, the binder reports the partitions by position
+		Map<T, Integer> positions = new IdentityHashMap<>();
+		for (int i = 0; i < events.size(); i++) positions.put(events.get(i), i);
+
+		events.removeIf(event -> {
+			boolean duplicate = dedupeStore.isDuplicate(eventId.apply(event));
+			if (duplicate) LOG.info("Skips event {}, it was already processed", eventId.apply(event));
+			return duplicate;
+		});
+		if (events.isEmpty()) return;
+		LOG.info("Process a batch of {} messages...", events.size());
+
+		List<RuntimeException> errors = writer.write(events);
+		List<RuntimeException> failures = new ArrayList<>();
+
+		for (int i = 0; i < events.size(); i++) {
+			RuntimeException error = errors == null ? null : errors.get(i);
+			if (error == null) {
+				dedupeStore.record(eventId.apply(events.get(i)));
+				latencyRecorder.record(eventTimestampNanos.apply(events.get(i)), positions.get(events.get(i)));
+			} else if (error instanceof InvalidInputException) {
+				LOG.warn("Skips event {} of the batch: {}", i, error.getMessage());
+			} else {
+				failures.add(error);
+			}
+		}
+
+		if (!failures.isEmpty()) {
+			throw new EventProcessingException("Failed to process " + failures.size() + " of " + events.size() +
+				" events in the batch", failures.get(0));
+		}
+		LOG.info("Batch processing done!");
+	}
+}
@@ -0,0 +1,65 @@
+package com.frank.util.batch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frank.util.compression.PayloadCompression;
+import com.frank.util.exceptions.EventProcessingException;
+
+/**
+ * Converts the payload of a batch listener to a typed list, or a single raw payload to its type.
+ *
+ * In batch mode the binders hand over the raw payloads, byte arrays from Kafka and Strings or byte
+ * arrays from RabbitMQ depending on the content type, so the JSON is read here. Compressed payloads
+ * are decompressed first.
+ */
+public final class BatchPayloads {
+
+	private BatchPayloads() {
+	}
+
+	public static <T> List<T> decode(List<?> payloads, ObjectMapper mapper, JavaType type) {
+		return decode(payloads, mapper, type, bytes -> false, null);
+	}
+
+	/**
+	 * Like {@link #decode(List, ObjectMapper, JavaType)}, but byte arrays accepted by isBinary are read
+	 * with binaryReader. The content type of the single messages is not available in a batch, the
+	 * format is told apart by the bytes.
+	 */
+	public static <T> List<T> decode(List<?> payloads, ObjectMapper mapper, JavaType type,
+			Predicate<byte[]> isBinary, Function<byte[], T> binaryReader) {
+		List<T> result = new ArrayList<>(payloads.size());
+		for (Object payload : payloads) {
+			result.add(decodeOne(payload, mapper, type, isBinary, binaryReader));
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a single payload like {@link #decode(List, ObjectMapper, JavaType, Predicate, Function)}, for
+	 * the consumers that take the raw payload of a message.
+	 */
+	public static <T> T decodeOne(Object payload, ObjectMapper mapper, JavaType type, Predicate<byte[]> isBinary,
+			Function<byte[], T> binaryReader) {
+		try {
+			if (payload instanceof byte[] && PayloadCompression.isCompressed((byte[]) payload)) {
+				payload = PayloadCompression.decompress((byte[]) payload);
+			}
+			if (payload instanceof byte[] && isBinary.test((byte[]) payload)) {
+				return binaryReader.apply((byte[]) payload);
+			}
+			if (payload instanceof byte[]) return mapper.readValue((byte[]) payload, type);
+			if (payload instanceof String) return mapper.readValue((String) payload, type);
+			return mapper.convertValue(payload, type);
+
+		} catch (IOException | IllegalArgumentException e) {
+			throw new EventProcessingException("Failed to read a message as " + type, e);
+		}
+	}
+}
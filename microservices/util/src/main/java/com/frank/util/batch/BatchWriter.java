@@ -0,0 +1,19 @@
+package com.frank.util.batch;
+
+import java.util.List;
+
+/**
+ * Writes the events of a batch delivery together.
+ */
+@FunctionalInterface
+public interface BatchWriter<T> {
+
+	/**
+	 * Writes a batch.
+	 *
+	 * @param batch
+	 * @return one entry per item in the batch, null if the item was written, else the error to
+	 *         report for that item
+	 */
+	List<RuntimeException> write(List<T> batch);
+}
@@ -0,0 +1,142 @@
+package com.frank.util.batch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Folds a batch down to its net effect before handing it to another {@link BatchWriter}.
+ *
+ * Items belong to a group, e.g. a productId, and are either an upsert of one item of the group,
+ * identified by its item key, a removal of the whole group, with a null item key, or an item that is
+ * not coalesced, e.g. a partial update, with the item key {@link #NOT_COALESCED}.
+ * <ul>
+ * <li>A removal drops everything pending for its group, earlier removals included.</li>
+ * <li>A repeated upsert of the same item drops the pending one, the latest is written.</li>
+ * <li>An item that is not coalesced is always written and nothing is coalesced across it: the items
+ * of its group before it are no longer pending, the later ones can not replace them.</li>
+ * </ul>
+ * The written items keep their relative order, so the order within a group is kept. A dropped item
+ * gets the result of the item that replaced it.
+ */
+public class CoalescingBatchWriter<T> implements BatchWriter<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CoalescingBatchWriter.class);
+
+	/**
+	 * The item key of items that are not coalesced, they neither replace nor are replaced by others.
+	 */
+	public static final Object NOT_COALESCED = new Object();
+
+	private final BatchWriter<T> writer;
+	private final Function<T, Object> groupKey;
+	private final Function<T, Object> itemKey;
+
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong saved = new AtomicLong();
+
+	public CoalescingBatchWriter(BatchWriter<T> writer, Function<T, Object> groupKey,
+			Function<T, Object> itemKey) {
+		this.writer = writer;
+		this.groupKey = groupKey;
+		this.itemKey = itemKey;
+	}
+
+	/**
+	 * Also publishes {@link #getReceived} and {@link #getSaved} as the {@code messaging.coalesce.received}
+	 * and {@code messaging.coalesce.saved} counters, tagged with the destination.
+	 */
+	public CoalescingBatchWriter(BatchWriter<T> writer, Function<T, Object> groupKey, Function<T, Object> itemKey,
+			String destination, MeterRegistry registry) {
+		this(writer, groupKey, itemKey);
+
+		FunctionCounter.builder("messaging.coalesce.received", this, CoalescingBatchWriter::getReceived)
+				.description("Events received in batches")
+				.tag("destination", destination)
+				.register(registry);
+		FunctionCounter.builder("messaging.coalesce.saved", this, CoalescingBatchWriter::getSaved)
+				.description("Events not written since a later event in the batch replaced them")
+				.tag("destination", destination)
+				.register(registry);
+	}
+
+	@Override
+	public List<RuntimeException> write(List<T> batch) {
+		// For every item of the batch, the item that replaced it, itself if it is kept
+		int[] replacedBy = new int[batch.size()];
+		boolean[] kept = new boolean[batch.size()];
+		Map<Object, List<Integer>> pendingByGroup = new HashMap<>();
+
+		for (int i = 0; i < batch.size(); i++) {
+			T item = batch.get(i);
+			Object key = itemKey.apply(item);
+			List<Integer> pending = pendingByGroup.computeIfAbsent(groupKey.apply(item), g -> new ArrayList<>());
+			kept[i] = true;
+			replacedBy[i] = i;
+
+			if (key == NOT_COALESCED) {
+				// Replacing an item before it would move that item after it, or drop it
+				pending.clear();
+				continue;
+			}
+
+			for (Iterator<Integer> it = pending.iterator(); it.hasNext();) {
+				int j = it.next();
+				if (key == null || key.equals(itemKey.apply(batch.get(j)))) {
+					kept[j] = false;
+					replacedBy[j] = i;
+					it.remove();
+				}
+			}
+			pending.add(i);
+		}
+
+		List<T> net = new ArrayList<>();
+		int[] position = new int[batch.size()];
+		for (int i = 0; i < batch.size(); i++) {
+			if (kept[i]) {
+				position[i] = net.size();
+				net.add(batch.get(i));
+			}
+		}
+
+		received.addAndGet(batch.size());
+		saved.addAndGet(batch.size() - net.size());
+		if (net.size() < batch.size()) LOG.debug("Coalesced a batch of {} items to {}", batch.size(), net.size());
+
+		List<RuntimeException> netErrors = writer.write(net);
+
+		List<RuntimeException> errors = new ArrayList<>(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			// Follow the chain of replacements to the item that was written
+			int j = i;
+			while (!kept[j]) j = replacedBy[j];
+			errors.add(netErrors == null ? null : netErrors.get(position[j]));
+		}
+		return errors;
+	}
+
+	/**
+	 * @return the number of items received in batches
+	 */
+	public long getReceived() {
+		return received.get();
+	}
+
+	/**
+	 * @return the number of items that were not written since a later item of the batch replaced them
+	 */
+	public long getSaved() {
+		return saved.get();
+	}
+}
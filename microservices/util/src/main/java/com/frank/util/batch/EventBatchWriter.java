@@ -0,0 +1,52 @@
+package com.frank.util.batch;
+
+import java.util.List;
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Base of the batch writers of the core services. With {@code app.messaging.coalesce.enabled} a batch
+ * is first folded to its net effect by a {@link CoalescingBatchWriter}, counted as
+ * {@code messaging.coalesce.received} and {@code messaging.coalesce.saved}, then written by
+ * {@link #writeAll}. The applied events are then passed to {@link #onApplied} in batch order.
+ */
+public abstract class EventBatchWriter<T> implements BatchWriter<T> {
+
+	// Null unless the batches are coalesced
+	private final CoalescingBatchWriter<T> coalescer;
+
+	/**
+	 * @param groupKey the group of an event, e.g. its productId
+	 * @param itemKey the item of the group an event upserts, null if it removes the whole group,
+	 *        {@link CoalescingBatchWriter#NOT_COALESCED} if it is not coalesced
+	 */
+	protected EventBatchWriter(String destination, MeterRegistry registry, boolean coalesce,
+			Function<T, Object> groupKey, Function<T, Object> itemKey) {
+		this.coalescer = coalesce
+				? new CoalescingBatchWriter<>(this::writeAll, groupKey, itemKey, destination, registry) : null;
+	}
+
+	@Override
+	public List<RuntimeException> write(List<T> events) {
+		List<RuntimeException> errors = coalescer != null ? coalescer.write(events) : writeAll(events);
+
+		for (int i = 0; i < events.size(); i++) {
+			if (errors == null || errors.get(i) == null) onApplied(events.get(i));
+		}
+		return errors;
+	}
+
+	/**
+	 * Writes the events in order, see {@link BatchWriter#write}.
+	 */
+	protected abstract List<RuntimeException> writeAll(List<T> events);
+
+	/**
+	 * Called once the batch is written, for each event that was applied and in the order of the batch,
+	 * e.g. to keep an in-memory index in step with the database. A coalesced event counts as applied if
+	 * the event that replaced it was.
+	 */
+	protected void onApplied(T event) {
+	}
+}
@@ -0,0 +1,111 @@
+package com.frank.util.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies a batch of events with a single ordered Mongo bulkWrite.
+ *
+ * If a write fails, the failing event gets the error and the bulkWrite is resumed after it, so the
+ * remaining events are still applied in order. A duplicate key is reported as invalid input. An
+ * UPDATE of a document that does not exist changes nothing, the bulk result does not tell which of
+ * the updates matched.
+ */
+public abstract class MongoBulkBatchWriter<T> extends EventBatchWriter<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongoBulkBatchWriter.class);
+
+	private static final int DUPLICATE_KEY_ERROR = 11000;
+
+	protected final ReactiveMongoOperations mongoOperations;
+	private final Class<?> entityClass;
+
+	protected MongoBulkBatchWriter(ReactiveMongoOperations mongoOperations, Class<?> entityClass, String destination,
+			MeterRegistry registry, boolean coalesce, Function<T, Object> groupKey, Function<T, Object> itemKey) {
+		super(destination, registry, coalesce, groupKey, itemKey);
+		this.mongoOperations = mongoOperations;
+		this.entityClass = entityClass;
+	}
+
+	@Override
+	protected List<RuntimeException> writeAll(List<T> events) {
+		List<RuntimeException> errors = new ArrayList<>(Collections.nCopies(events.size(), null));
+
+		// The writes, and the position of the event each write came from
+		List<WriteModel<Document>> writes = new ArrayList<>();
+		List<Integer> positions = new ArrayList<>();
+
+		for (int i = 0; i < events.size(); i++) {
+			try {
+				writes.add(toWrite(events.get(i)));
+				positions.add(i);
+			} catch (InvalidInputException | EventProcessingException ex) {
+				errors.set(i, ex);
+			}
+		}
+
+		int from = 0;
+		while (from < writes.size()) {
+			try {
+				Mono.from(mongoOperations.getCollection(mongoOperations.getCollectionName(entityClass))
+						.bulkWrite(writes.subList(from, writes.size()), new BulkWriteOptions().ordered(true)))
+					.block();
+				break;
+			} catch (MongoBulkWriteException ex) {
+				BulkWriteError error = ex.getWriteErrors().get(0);
+				int failed = from + error.getIndex();
+				int position = positions.get(failed);
+
+				errors.set(position, failure(events.get(position), error));
+				from = failed + 1;
+			}
+		}
+
+		LOG.debug("write: applied {} events to {} in a batch", events.size(), entityClass.getSimpleName());
+		return errors;
+	}
+
+	/**
+	 * @return the write applying the event
+	 * @throws InvalidInputException or EventProcessingException if the event can not be applied
+	 */
+	protected abstract WriteModel<Document> toWrite(T event);
+
+	/**
+	 * @return the event type and key, to name the event in errors
+	 */
+	protected abstract String describe(T event);
+
+	/**
+	 * @return the entity as a document to insert
+	 */
+	protected Document toDocument(Object entity) {
+		Document document = new Document();
+		mongoOperations.getConverter().write(entity, document);
+		return document;
+	}
+
+	private RuntimeException failure(T event, BulkWriteError error) {
+		if (error.getCode() == DUPLICATE_KEY_ERROR) {
+			return new InvalidInputException("Duplicate key, " + describe(event));
+		}
+		return new EventProcessingException("Failed to apply " + describe(event) + ", " + error.getMessage());
+	}
+}
@@ -0,0 +1,89 @@
+package com.frank.util.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Applies a batch of events in one transaction.
+ *
+ * A failure rolls back the whole transaction, in that case the events are replayed one transaction
+ * each to find out which of them caused it. The failing ones get the error they caused, a constraint
+ * violation is reported as invalid input.
+ */
+public abstract class TransactionalBatchWriter<T> extends EventBatchWriter<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TransactionalBatchWriter.class);
+
+	private final TransactionTemplate transactionTemplate;
+
+	protected TransactionalBatchWriter(PlatformTransactionManager transactionManager, String destination,
+			MeterRegistry registry, boolean coalesce, Function<T, Object> groupKey, Function<T, Object> itemKey) {
+		super(destination, registry, coalesce, groupKey, itemKey);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	@Override
+	protected List<RuntimeException> writeAll(List<T> events) {
+		try {
+			return transactionTemplate.execute(status -> apply(events));
+
+		} catch (RuntimeException ex) {
+			LOG.debug("write: batch of {} events failed, retries them one by one: {}", events.size(), ex.toString());
+
+			List<RuntimeException> errors = new ArrayList<>(events.size());
+			for (T event : events) {
+				try {
+					errors.add(transactionTemplate.execute(status -> apply(Collections.singletonList(event))).get(0));
+				} catch (RuntimeException e) {
+					errors.add(failure(event, e));
+				}
+			}
+			return errors;
+		}
+	}
+
+	/**
+	 * Applies the events within the current transaction.
+	 *
+	 * @return one entry per event, null if the event was applied, else the error to report for it
+	 */
+	protected abstract List<RuntimeException> apply(List<T> events);
+
+	/**
+	 * @return the event type and key, to name the event in errors
+	 */
+	protected abstract String describe(T event);
+
+	/**
+	 * @return true if the failure is a constraint violation, e.g. a duplicate key
+	 */
+	protected boolean isConstraintViolation(RuntimeException failure) {
+		return failure instanceof DataIntegrityViolationException;
+	}
+
+	private RuntimeException failure(T event, RuntimeException failure) {
+		if (isConstraintViolation(failure)) {
+			return new InvalidInputException("Constraint violated by " + describe(event) + ": " + rootMessage(failure));
+		}
+		return new EventProcessingException("Failed to apply " + describe(event) + ", " + failure, failure);
+	}
+
+	private static String rootMessage(Throwable failure) {
+		Throwable root = failure;
+		while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+		return root.getMessage();
+	}
+}
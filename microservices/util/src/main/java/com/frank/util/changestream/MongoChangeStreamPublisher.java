@@ -0,0 +1,211 @@
+package com.frank.util.changestream;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.reactivestreams.client.MongoCollection;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Tails the change stream of a collection whose documents belong to a product, and calls
+ * {@link #publish} with the productId and version of every changed document, whoever made the change.
+ * Change streams require MongoDB to run as a replica set.
+ *
+ * The resume token of the last published change is stored in the {@code changeStreamResumeTokens}
+ * collection. After a failure or a restart the stream resumes after it, so no change is missed. A
+ * change may be published twice though. If the oplog no longer holds the stored token, the stream
+ * restarts from the current time and publishes productId 0, meaning all products may have changed.
+ *
+ * A delete only carries the document id. The productId of each document is therefore stored in the
+ * {@code <collection>_productIds} collection, with the recently seen ones also kept in memory. A
+ * document that was neither inserted nor changed since the publisher was first enabled is not known
+ * there, its delete is published with productId 0.
+ */
+public abstract class MongoChangeStreamPublisher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongoChangeStreamPublisher.class);
+
+	private static final String RESUME_TOKENS = "changeStreamResumeTokens";
+
+	// The oplog no longer holds the resume token, or the token is not valid for the stream
+	private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+	private static final int CHANGE_STREAM_FATAL_ERROR = 280;
+
+	private final ReactiveMongoOperations mongoOperations;
+	private final String collectionName;
+	private final String productIdsName;
+
+	// Recently seen productIds by document id, saves a read of the stored ones for most deletes
+	private final Map<BsonValue, Integer> productIds;
+
+	// The token of the last published change, null to start from the current time
+	private volatile BsonValue resumeToken;
+
+	private Disposable subscription;
+
+	/**
+	 * @param knownIds the number of productIds to keep in memory
+	 */
+	protected MongoChangeStreamPublisher(ReactiveMongoOperations mongoOperations, Class<?> entityClass,
+			int knownIds) {
+		this.mongoOperations = mongoOperations;
+		this.collectionName = mongoOperations.getCollectionName(entityClass);
+		this.productIdsName = collectionName + "_productIds";
+		this.productIds = Collections.synchronizedMap(new LinkedHashMap<BsonValue, Integer>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<BsonValue, Integer> eldest) {
+				return size() > knownIds;
+			}
+		});
+	}
+
+	@PostConstruct
+	public void start() {
+		subscription = loadResumeToken()
+				.doOnNext(token -> resumeToken = token)
+				.thenMany(Flux.defer(this::tail)
+					.doOnError(this::onError)
+					.retryBackoff(Long.MAX_VALUE, Duration.ofSeconds(1), Duration.ofSeconds(30)))
+				.subscribe();
+
+		LOG.info("Publishes the changes to the {} collection", collectionName);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (subscription != null) subscription.dispose();
+	}
+
+	/**
+	 * Publishes a change of a document.
+	 *
+	 * @param operationType the change, INVALIDATE if the stream had to restart and all products may
+	 *        have changed
+	 * @param productId the product of the changed document, 0 if it is not known
+	 * @param version the version of the document after the change, null if it was deleted
+	 */
+	protected abstract void publish(OperationType operationType, int productId, Integer version);
+
+	// Resubscribed with the latest token on every retry
+	private Flux<Void> tail() {
+		ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+				.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+		if (resumeToken != null) options.resumeAfter(resumeToken);
+
+		return mongoOperations.changeStream(collectionName, options.build(), Document.class)
+				.concatMap(this::handle);
+	}
+
+	private Mono<Void> handle(ChangeStreamEvent<Document> event) {
+		OperationType operationType = event.getOperationType();
+		if (operationType == null || event.getRaw() == null || event.getRaw().getDocumentKey() == null) {
+			return saveResumeToken(event.getResumeToken());
+		}
+
+		BsonValue id = event.getRaw().getDocumentKey().get("_id");
+		Document document = event.getBody();
+
+		Mono<Void> published;
+		if (operationType == OperationType.DELETE) {
+			published = removeProductId(id)
+					.defaultIfEmpty(0)
+					.doOnNext(productId -> publish(operationType, productId, null))
+					.then();
+		} else if (document != null) {
+			int productId = document.getInteger("productId", 0);
+			Integer version = document.getInteger("version");
+			published = storeProductId(id, productId)
+					.then(Mono.fromRunnable(() -> publish(operationType, productId, version)));
+		} else {
+			published = Mono.empty();
+		}
+
+		return published.then(saveResumeToken(event.getResumeToken()));
+	}
+
+	private void onError(Throwable ex) {
+		if (isHistoryLost(ex)) {
+			LOG.warn("Change stream on {} can not resume, restarts it and publishes a change of all products: {}",
+					collectionName, ex.toString());
+			resumeToken = null;
+			publish(OperationType.INVALIDATE, 0, null);
+			return;
+		}
+		LOG.warn("Change stream on {} failed, will resume: {}", collectionName, ex.toString());
+	}
+
+	private static boolean isHistoryLost(Throwable ex) {
+		if (!(ex instanceof MongoCommandException)) return false;
+		int code = ((MongoCommandException) ex).getErrorCode();
+		return code == CHANGE_STREAM_HISTORY_LOST || code == CHANGE_STREAM_FATAL_ERROR;
+	}
+
+	// Only writes the productIds not already seen since the start
+	private Mono<Void> storeProductId(BsonValue id, int productId) {
+		Integer known = productIds.put(id, productId);
+		if (known != null && known == productId) return Mono.empty();
+
+		return Mono.from(productIdsCollection().replaceOne(Filters.eq("_id", id),
+				new BsonDocument("_id", id).append("productId", new BsonInt32(productId)),
+				new ReplaceOptions().upsert(true)))
+			.then();
+	}
+
+	private Mono<Integer> removeProductId(BsonValue id) {
+		Integer known = productIds.remove(id);
+		if (known != null) {
+			return Mono.from(productIdsCollection().deleteOne(Filters.eq("_id", id))).thenReturn(known);
+		}
+		return Mono.from(productIdsCollection().findOneAndDelete(Filters.eq("_id", id)))
+				.map(stored -> stored.getInt32("productId").getValue());
+	}
+
+	private Mono<BsonValue> loadResumeToken() {
+		return Mono.from(resumeTokensCollection().find(Filters.eq("_id", collectionName)).first())
+				.map(stored -> stored.get("token"));
+	}
+
+	// Runs once the change is published, a failure before that resumes before the change
+	private Mono<Void> saveResumeToken(BsonValue token) {
+		if (token == null) return Mono.empty();
+
+		return Mono.defer(() -> {
+			resumeToken = token;
+			return Mono.from(resumeTokensCollection().replaceOne(Filters.eq("_id", collectionName),
+					new BsonDocument("_id", new BsonString(collectionName)).append("token", token),
+					new ReplaceOptions().upsert(true)));
+		}).then();
+	}
+
+	private MongoCollection<BsonDocument> productIdsCollection() {
+		return mongoOperations.getCollection(productIdsName).withDocumentClass(BsonDocument.class);
+	}
+
+	private MongoCollection<BsonDocument> resumeTokensCollection() {
+		return mongoOperations.getCollection(RESUME_TOKENS).withDocumentClass(BsonDocument.class);
+	}
+}
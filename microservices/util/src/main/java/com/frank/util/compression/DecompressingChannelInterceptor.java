@@ -0,0 +1,55 @@
+package com.frank.util.compression;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Decompresses payloads compressed by the producer before they are converted for the listener of
+ * the input binding. Uncompressed payloads pass unchanged, batches are unpacked by
+ * {@link com.frank.util.batch.BatchPayloads}. Payloads that would decompress to more than
+ * {@code app.messaging.compression.max-decompressed-bytes} are rejected.
+ */
+@Component
+@GlobalChannelInterceptor(patterns = "input")
+public class DecompressingChannelInterceptor implements ChannelInterceptor {
+
+	private final Timer decompressTime;
+	private final int maxLength;
+
+	@Autowired
+	public DecompressingChannelInterceptor(MeterRegistry registry,
+			@Value("${app.messaging.compression.max-decompressed-bytes:16777216}") int maxLength) {
+		this.maxLength = maxLength;
+		this.decompressTime = Timer.builder("messaging.compression.time")
+				.description("Time spent compressing and decompressing message payloads")
+				.tag("binding", "input")
+				.tag("operation", "decompress")
+				.register(registry);
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		Object payload = message.getPayload();
+		if (!(payload instanceof byte[]) || !PayloadCompression.isCompressed((byte[]) payload)) return message;
+
+		long start = System.nanoTime();
+		byte[] decompressed = PayloadCompression.decompress((byte[]) payload, maxLength);
+		decompressTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+		return MessageBuilder.withPayload(decompressed)
+				.copyHeaders(message.getHeaders())
+				.removeHeader(PayloadCompression.CONTENT_ENCODING_HEADER)
+				.build();
+	}
+}
@@ -0,0 +1,89 @@
+package com.frank.util.compression;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * LZ4 compression of message payloads.
+ *
+ * A compressed payload starts with a magic byte, a version byte and the length of the original
+ * payload, so consumers recognize it by its bytes alone. That works for batch listeners too, they
+ * get no headers for the single messages. Neither JSON nor the binary event encoding start with the
+ * magic byte. The producer also sets the {@link #CONTENT_ENCODING_HEADER} for consumers and tools
+ * that read the headers.
+ *
+ * The length in the header comes from the sender, a payload that claims to be larger than the
+ * maximum is rejected before anything is allocated, and the safe decompressor checks the bounds of
+ * the input instead of trusting it.
+ */
+public final class PayloadCompression {
+
+	public static final byte MAGIC = (byte) 0xC4;
+	public static final byte VERSION = 1;
+
+	public static final String CONTENT_ENCODING_HEADER = "contentEncoding";
+	public static final String CONTENT_ENCODING = "lz4";
+
+	// Default upper bound of a decompressed payload
+	public static final int DEFAULT_MAX_LENGTH = 16 * 1024 * 1024;
+
+	private static final int HEADER_LENGTH = 6;
+
+	private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+	private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+	private PayloadCompression() {
+	}
+
+	public static boolean isCompressed(byte[] bytes) {
+		return bytes != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+	}
+
+	public static byte[] compress(byte[] bytes) {
+		byte[] compressed = new byte[HEADER_LENGTH + COMPRESSOR.maxCompressedLength(bytes.length)];
+		compressed[0] = MAGIC;
+		compressed[1] = VERSION;
+		for (int i = 0; i < 4; i++) compressed[2 + i] = (byte) (bytes.length >>> (24 - 8 * i));
+
+		int length = COMPRESSOR.compress(bytes, 0, bytes.length, compressed, HEADER_LENGTH);
+		byte[] result = new byte[HEADER_LENGTH + length];
+		System.arraycopy(compressed, 0, result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * Like {@link #decompress(byte[], int)}, with at most {@link #DEFAULT_MAX_LENGTH} bytes.
+	 */
+	public static byte[] decompress(byte[] bytes) {
+		return decompress(bytes, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the bytes are not a compressed payload of a known version, or
+	 *         would decompress to more than maxLength bytes
+	 */
+	public static byte[] decompress(byte[] bytes, int maxLength) {
+		if (!isCompressed(bytes)) throw new IllegalArgumentException("Not a compressed payload");
+		if (bytes[1] != VERSION) throw new IllegalArgumentException("Unsupported compression version " + bytes[1]);
+
+		int length = 0;
+		for (int i = 0; i < 4; i++) length = (length << 8) | (bytes[2 + i] & 0xff);
+		if (length < 0) throw new IllegalArgumentException("Malformed compressed payload");
+		if (length > maxLength) {
+			throw new IllegalArgumentException("Compressed payload of " + length + " bytes exceeds the maximum of " +
+				maxLength);
+		}
+
+		try {
+			byte[] result = new byte[length];
+			int written = DECOMPRESSOR.decompress(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, result, 0,
+					length);
+			if (written != length) throw new IllegalArgumentException("Malformed compressed payload");
+			return result;
+		} catch (LZ4Exception e) {
+			throw new IllegalArgumentException("Malformed compressed payload", e);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.frank.util.dedupe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the ids of recently applied events so redeliveries can be dropped before they reach
+ * the database.
+ *
+ * The exact set holds the last {@code maxExact} ids seen within the window and answers with
+ * certainty. Behind it two Bloom filter generations remember the ids of the last one to two
+ * generations in a fixed amount of memory, but may report an id that was never seen. A generation is
+ * rotated every window, or sooner once it holds {@code expectedEvents} ids, so the false positive
+ * rate stays at the configured one however many events arrive. A Bloom filter hit alone is therefore
+ * only a {@link Result#PROBABLE_DUPLICATE}, it is only trusted with trustBloom, otherwise only the
+ * exact set is kept and the writes stay idempotent for the older redeliveries.
+ *
+ * The store is per instance. A redelivery reaching another instance, e.g. after its partition moved
+ * with dynamic partitions or a Kafka rebalance, or from a DLQ replay, is not dropped here and falls
+ * back to the idempotency of the write itself.
+ *
+ * Nothing is allocated until the first event is checked, services without consumers pay nothing.
+ */
+@Component
+public class DedupeStore {
+
+	public enum Result {
+		NEW,
+		DUPLICATE,
+		PROBABLE_DUPLICATE
+	}
+
+	private final boolean trustBloom;
+	private final int maxExact;
+	private final long windowMs;
+	private final int expectedEvents;
+	private final int bits;
+	private final int hashes;
+	private final LongSupplier clock;
+
+	private final LinkedHashMap<String, Long> exact = new LinkedHashMap<>();
+	private BitSet current = null;
+	private BitSet previous = null;
+	private long generationStart;
+	private int generationSize;
+
+	@Autowired
+	public DedupeStore(
+			@Value("${app.messaging.dedupe.exact-size:10000}") int maxExact,
+			@Value("${app.messaging.dedupe.window-ms:3600000}") long windowMs,
+			@Value("${app.messaging.dedupe.expected-events:100000}") int expectedEvents,
+			@Value("${app.messaging.dedupe.false-positive-rate:0.000001}") double falsePositiveRate,
+			@Value("${app.messaging.dedupe.trust-bloom:false}") boolean trustBloom) {
+		this(maxExact, windowMs, expectedEvents, falsePositiveRate, trustBloom, System::currentTimeMillis);
+	}
+
+	DedupeStore(int maxExact, long windowMs, int expectedEvents, double falsePositiveRate, boolean trustBloom,
+			LongSupplier clock) {
+		this.trustBloom = trustBloom;
+		this.maxExact = maxExact;
+		this.windowMs = windowMs;
+		this.expectedEvents = expectedEvents;
+		// Optimal size and number of hash functions for the expected events per window
+		this.bits = (int) Math.ceil(-expectedEvents * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		this.hashes = Math.max(1, (int) Math.round((double) bits / expectedEvents * Math.log(2)));
+		this.clock = clock;
+	}
+
+	public synchronized Result check(String eventId) {
+		if (eventId == null) return Result.NEW;
+
+		long now = clock.getAsLong();
+		expire(now);
+
+		if (exact.containsKey(eventId)) return Result.DUPLICATE;
+		return mightContain(current, eventId) || mightContain(previous, eventId)
+				? Result.PROBABLE_DUPLICATE
+				: Result.NEW;
+	}
+
+	/**
+	 * @return true if the event was applied before, or probably was and Bloom filter hits are trusted
+	 */
+	public boolean isDuplicate(String eventId) {
+		Result result = check(eventId);
+		return result == Result.DUPLICATE || (trustBloom && result == Result.PROBABLE_DUPLICATE);
+	}
+
+	/**
+	 * Records the id of an event that was applied.
+	 */
+	public synchronized void record(String eventId) {
+		if (eventId == null) return;
+
+		long now = clock.getAsLong();
+		expire(now);
+
+		exact.remove(eventId);
+		exact.put(eventId, now);
+		while (exact.size() > maxExact) exact.remove(exact.keySet().iterator().next());
+
+		if (current == null) return;
+		for (int position : positions(eventId)) current.set(position);
+		generationSize++;
+	}
+
+	private void expire(long now) {
+		if (!trustBloom) {
+			// The filters are only kept to be trusted
+		} else if (current == null) {
+			current = new BitSet(bits);
+			previous = new BitSet(bits);
+			generationStart = now;
+		} else if (now - generationStart >= windowMs || generationSize >= expectedEvents) {
+			// Skip a generation if nothing was recorded for more than a window
+			previous = now - generationStart >= 2 * windowMs ? new BitSet(bits) : current;
+			current = new BitSet(bits);
+			generationStart = now;
+			generationSize = 0;
+		}
+
+		for (Iterator<Map.Entry<String, Long>> it = exact.entrySet().iterator(); it.hasNext();) {
+			if (now - it.next().getValue() < windowMs) break;
+			it.remove();
+		}
+	}
+
+	private boolean mightContain(BitSet filter, String eventId) {
+		if (filter == null) return false;
+		for (int position : positions(eventId)) {
+			if (!filter.get(position)) return false;
+		}
+		return true;
+	}
+
+	// Double hashing, the i-th position is h1 + i * h2
+	private int[] positions(String eventId) {
+		byte[] bytes = eventId.getBytes(StandardCharsets.UTF_8);
+		int h1 = eventId.hashCode();
+		int h2 = fnv1a(bytes) | 1;
+
+		int[] positions = new int[hashes];
+		for (int i = 0; i < hashes; i++) {
+			positions[i] = Math.floorMod(h1 + i * h2, bits);
+		}
+		return positions;
+	}
+
+	private static int fnv1a(byte[] bytes) {
+		int hash = 0x811c9dc5;
+		for (byte b : bytes) {
+			hash ^= b & 0xff;
+			hash *= 0x01000193;
+		}
+		return hash;
+	}
+}
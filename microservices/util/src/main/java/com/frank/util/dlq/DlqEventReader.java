@@ -0,0 +1,35 @@
+package com.frank.util.dlq;
+
+import java.io.IOException;
+
+/**
+ * Reads the event type and key of a dead lettered payload, for the filters of {@link DlqReplayer}.
+ * Provided by the services, which know the encodings of their events.
+ */
+public interface DlqEventReader {
+
+	/**
+	 * @param payload the payload as it was received, decompressed
+	 * @throws IOException if the payload is not a readable event
+	 */
+	Summary read(byte[] payload) throws IOException;
+
+	final class Summary {
+
+		private final String eventType;
+		private final Object key;
+
+		public Summary(String eventType, Object key) {
+			this.eventType = eventType;
+			this.key = key;
+		}
+
+		public String getEventType() {
+			return eventType;
+		}
+
+		public Object getKey() {
+			return key;
+		}
+	}
+}
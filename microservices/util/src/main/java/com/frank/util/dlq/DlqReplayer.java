@@ -0,0 +1,316 @@
+package com.frank.util.dlq;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.stereotype.Component;
+
+import com.frank.util.compression.PayloadCompression;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Replays the dead letter queue of the input binding to the consumer group its messages failed in,
+ * as the {@code dlqreplay} actuator endpoint:
+ * <ul>
+ * <li>POST starts a replay, with the optional fields rate (messages per second, by default
+ * {@code app.messaging.dlq-replay.default-rate}), limit (messages to replay), eventType and key
+ * (replay only matching events) and dryRun (browse the DLQ and count the matches, change nothing)</li>
+ * <li>GET reports the progress of the running or last replay</li>
+ * <li>DELETE stops the running replay after the current message</li>
+ * </ul>
+ * One replay runs at a time per instance, on a background thread. It looks at the messages present
+ * when it starts, messages failing again during the replay are left for the next one. Messages not
+ * matching the filters and those beyond the limit stay in the DLQ. On Kafka the next replay starts
+ * after the last one, unless it was a dry run or filtered, then the whole topic is looked at again.
+ * The messages only reach the failed group, see {@link RabbitDlqSource} and {@link KafkaDlqSource}.
+ *
+ * The messages looked at are counted as {@code messaging.dlq.replay}, tagged with the outcome:
+ * replayed, skipped, matched in a dry run or failed. {@code messaging.dlq.replay.running} is 1 while
+ * a replay runs.
+ *
+ * The endpoint is disabled by default, it is enabled with
+ * {@code management.endpoint.dlqreplay.enabled: true} and must also be exposed.
+ */
+@Component
+@Endpoint(id = "dlqreplay", enableByDefault = false)
+@ConditionalOnProperty("spring.cloud.stream.bindings.input.destination")
+public class DlqReplayer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DlqReplayer.class);
+
+	private final String destination;
+	private final Supplier<DlqSource> sourceFactory;
+	// Supplies null if the service reads no events
+	private final Supplier<DlqEventReader> reader;
+	private final double defaultRate;
+	private final double maxRate;
+	private final LongSupplier clock;
+	private final MeterRegistry registry;
+
+	private Replay current = null;
+
+	@Autowired
+	public DlqReplayer(
+			MeterRegistry registry,
+			BeanFactory beanFactory,
+			ObjectProvider<DlqEventReader> reader,
+			@Value("${spring.cloud.stream.bindings.input.destination}") String destination,
+			@Value("${spring.cloud.stream.bindings.input.group:}") String group,
+			@Value("${spring.cloud.stream.bindings.input.binder:${spring.cloud.stream.default-binder:rabbit}}")
+				String binder,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.dlq-name:}") String rabbitDlq,
+			@Value("${spring.cloud.stream.kafka.bindings.input.consumer.dlq-name:}") String kafkaDlq,
+			@Value("${spring.cloud.stream.kafka.binder.brokers:localhost}") String kafkaBrokers,
+			@Value("${spring.cloud.stream.kafka.binder.default-broker-port:9092}") String kafkaPort,
+			@Value("${app.messaging.dlq-replay.default-rate:10}") double defaultRate,
+			@Value("${app.messaging.dlq-replay.max-rate:100}") double maxRate) {
+		this(registry, destination,
+				sourceFactory(beanFactory, binder, destination, group, rabbitDlq, kafkaDlq, kafkaBrokers, kafkaPort),
+				reader::getIfAvailable, defaultRate, maxRate, System::nanoTime);
+	}
+
+	DlqReplayer(MeterRegistry registry, String destination, Supplier<DlqSource> sourceFactory,
+			Supplier<DlqEventReader> reader, double defaultRate, double maxRate, LongSupplier clock) {
+		this.registry = registry;
+		this.destination = destination;
+		this.sourceFactory = sourceFactory;
+		this.reader = reader;
+		this.defaultRate = defaultRate;
+		this.maxRate = maxRate;
+		this.clock = clock;
+
+		Gauge.builder("messaging.dlq.replay.running", this, r -> r.isRunning() ? 1 : 0)
+				.description("1 while the dead letter queue is replayed")
+				.tag("destination", destination)
+				.register(registry);
+	}
+
+	@WriteOperation
+	public synchronized Map<String, Object> replay(@Nullable Double rate, @Nullable Integer limit,
+			@Nullable String eventType, @Nullable String key, @Nullable Boolean dryRun) {
+		if (isRunning()) throw invalid("A replay of " + destination + " is running");
+
+		double messagesPerSecond = rate == null ? defaultRate : rate;
+		if (messagesPerSecond <= 0 || messagesPerSecond > maxRate) {
+			throw invalid("Invalid rate: " + messagesPerSecond + ", allowed up to " + maxRate);
+		}
+		if (limit != null && limit < 0) throw invalid("Invalid limit: " + limit);
+		if ((eventType != null || key != null) && reader.get() == null) {
+			throw invalid("The events of " + destination + " can not be filtered");
+		}
+
+		current = new Replay(messagesPerSecond, limit, eventType, key, Boolean.TRUE.equals(dryRun));
+		Thread thread = new Thread(current::run, "dlq-replay");
+		thread.setDaemon(true);
+		thread.start();
+		return current.status();
+	}
+
+	@ReadOperation
+	public synchronized Map<String, Object> status() {
+		if (current == null) {
+			Map<String, Object> status = new LinkedHashMap<>();
+			status.put("destination", destination);
+			status.put("state", "idle");
+			return status;
+		}
+		return current.status();
+	}
+
+	@DeleteOperation
+	public synchronized Map<String, Object> cancel() {
+		if (current != null) current.cancelled = true;
+		return status();
+	}
+
+	@PreDestroy
+	public void close() {
+		cancel();
+	}
+
+	synchronized boolean isRunning() {
+		return current != null && current.finishedAt == null;
+	}
+
+	final class Replay {
+
+		private final double rate;
+		private final Integer limit;
+		private final String eventType;
+		private final String key;
+		private final boolean dryRun;
+		private final String startedAt = Instant.now().toString();
+
+		private volatile boolean cancelled = false;
+		private volatile long scanned = 0;
+		private volatile long replayed = 0;
+		private volatile long skipped = 0;
+		private volatile long matched = 0;
+		private volatile long failed = 0;
+		private volatile String finishedAt = null;
+		private volatile String error = null;
+
+		private Replay(double rate, Integer limit, String eventType, String key, boolean dryRun) {
+			this.rate = rate;
+			this.limit = limit;
+			this.eventType = eventType;
+			this.key = key;
+			this.dryRun = dryRun;
+		}
+
+		void run() {
+			LOG.info("Replays the DLQ of {}: {}", destination, describe());
+			long start = clock.getAsLong();
+
+			try (DlqSource source = sourceFactory.get()) {
+				DlqSource.DlqMessage message;
+				while (!cancelled && (message = source.next()) != null) {
+					scanned++;
+					boolean match = matches(message.payload) && (limit == null || replayed + matched < limit);
+					if (dryRun) {
+						// Only browses, the message stays where it is
+						count(match ? "matched" : "skipped");
+						if (match) matched++;
+						else skipped++;
+						continue;
+					}
+					if (!match) {
+						source.keep(message);
+						count("skipped");
+						skipped++;
+						continue;
+					}
+
+					pace(start);
+					try {
+						source.replay(message);
+						count("replayed");
+						replayed++;
+					} catch (Exception e) {
+						LOG.warn("Failed to replay a message of {}: {}", destination, e.toString());
+						source.keep(message);
+						count("failed");
+						failed++;
+					}
+				}
+				if (!dryRun && eventType == null && key == null) source.commit();
+
+			} catch (Exception e) {
+				LOG.error("Stops the replay of {}", destination, e);
+				error = e.toString();
+			} finally {
+				finishedAt = Instant.now().toString();
+				LOG.info("Replayed the DLQ of {}: {}", destination, status());
+			}
+		}
+
+		Map<String, Object> status() {
+			Map<String, Object> status = new LinkedHashMap<>();
+			status.put("destination", destination);
+			status.put("state", finishedAt == null ? "running"
+					: cancelled ? "cancelled" : error != null ? "failed" : "done");
+			status.put("rate", rate);
+			status.put("limit", limit);
+			status.put("eventType", eventType);
+			status.put("key", key);
+			status.put("dryRun", dryRun);
+			status.put("scanned", scanned);
+			status.put("replayed", replayed);
+			status.put("matched", matched);
+			status.put("skipped", skipped);
+			status.put("failed", failed);
+			status.put("startedAt", startedAt);
+			status.put("finishedAt", finishedAt);
+			status.put("error", error);
+			return status;
+		}
+
+		private boolean matches(byte[] payload) {
+			if (eventType == null && key == null) return true;
+			try {
+				byte[] decompressed = PayloadCompression.isCompressed(payload)
+						? PayloadCompression.decompress(payload)
+						: payload;
+				DlqEventReader.Summary summary = reader.get().read(decompressed);
+				return (eventType == null || eventType.equalsIgnoreCase(summary.getEventType()))
+						&& (key == null || key.equals(String.valueOf(summary.getKey())));
+			} catch (Exception e) {
+				LOG.debug("Skips an unreadable message of {}: {}", destination, e.toString());
+				return false;
+			}
+		}
+
+		// Spaces the messages evenly, the n-th one is sent n / rate seconds after the start
+		private void pace(long start) throws InterruptedException {
+			long due = start + (long) (replayed * TimeUnit.SECONDS.toNanos(1) / rate);
+			long wait = due - clock.getAsLong();
+			if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+		}
+
+		private void count(String outcome) {
+			Counter.builder("messaging.dlq.replay")
+					.description("Dead lettered messages looked at by replays, by outcome")
+					.tag("destination", destination)
+					.tag("outcome", outcome)
+					.register(registry)
+					.increment();
+		}
+
+		private String describe() {
+			return String.format("rate=%s, limit=%s, eventType=%s, key=%s, dryRun=%s", rate, limit, eventType, key,
+					dryRun);
+		}
+	}
+
+	private static InvalidEndpointRequestException invalid(String message) {
+		return new InvalidEndpointRequestException(message, message);
+	}
+
+	private static Supplier<DlqSource> sourceFactory(BeanFactory beanFactory, String binder, String destination,
+			String group, String rabbitDlq, String kafkaDlq, String kafkaBrokers, String kafkaPort) {
+		return () -> {
+			if (group.isEmpty()) throw new IllegalStateException("An anonymous consumer has no dead letter queue");
+
+			if ("kafka".equals(binder)) {
+				String servers = KafkaDeadLetterPublisher.bootstrapServers(kafkaBrokers, kafkaPort);
+				// The default name of the binder's dead letter topic
+				String topic = kafkaDlq.isEmpty() ? "error." + destination + "." + group : kafkaDlq;
+				return new KafkaDlqSource(servers, topic, group, beanFactory.getBean("input", MessageChannel.class));
+			}
+
+			String groupQueue = destination + "." + group;
+			String queue = rabbitDlq.isEmpty() ? groupQueue + ".dlq" : rabbitDlq;
+			try {
+				return new RabbitDlqSource(beanFactory.getBean(ConnectionFactory.class), queue, destination,
+						groupQueue);
+			} catch (IOException e) {
+				throw new IllegalStateException("Failed to open the dead letter queue " + queue, e);
+			}
+		};
+	}
+}
@@ -0,0 +1,45 @@
+package com.frank.util.dlq;
+
+/**
+ * The messages of a dead letter queue as they were when the replay started, messages arriving later
+ * are left for the next replay.
+ */
+interface DlqSource extends AutoCloseable {
+
+	final class DlqMessage {
+
+		final byte[] payload;
+		final Object handle;
+
+		DlqMessage(byte[] payload, Object handle) {
+			this.payload = payload;
+			this.handle = handle;
+		}
+	}
+
+	/**
+	 * @return the next message, null once all messages present at the start were returned
+	 */
+	DlqMessage next() throws Exception;
+
+	/**
+	 * Sends the message back to the destination it failed on and removes it from the queue.
+	 */
+	void replay(DlqMessage message) throws Exception;
+
+	/**
+	 * Leaves the message in the queue.
+	 */
+	void keep(DlqMessage message) throws Exception;
+
+	/**
+	 * Marks the messages returned so far as done, they are not returned by the next replay. Sources
+	 * that remove messages as they are replayed do nothing.
+	 */
+	default void commit() throws Exception {
+	}
+
+	@Override
+	default void close() {
+	}
+}
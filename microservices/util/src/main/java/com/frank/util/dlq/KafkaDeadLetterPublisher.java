@@ -0,0 +1,130 @@
+package com.frank.util.dlq;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.kafka.support.DefaultKafkaHeaderMapper;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeType;
+
+/**
+ * Sends failed records to the dead letter topic of a Kafka consumer group, for the failures the
+ * binder does not see, e.g. those of events processed off the consumer thread. The topic is the one
+ * of the binder, {@code error.<destination>.<group>} unless it has another dlqName, and the records
+ * get the headers of the binder's dead letter records, so {@link DlqReplayer} replays them alike.
+ *
+ * {@link #publish} returns once the broker acknowledged the record, the failed record may then be
+ * committed.
+ */
+public class KafkaDeadLetterPublisher implements AutoCloseable {
+
+	static final String TOPIC_HEADER = "kafka_receivedTopic";
+	static final String PARTITION_HEADER = "kafka_receivedPartitionId";
+	static final String OFFSET_HEADER = "kafka_offset";
+	static final String KEY_HEADER = "kafka_receivedMessageKey";
+
+	static final String ORIGINAL_OFFSET = "x-original-offset";
+	static final String EXCEPTION_FQCN = "x-exception-fqcn";
+	static final String EXCEPTION_MESSAGE = "x-exception-message";
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+	private final String topic;
+	private final KafkaProducer<byte[], byte[]> producer;
+	// Encodes the headers like the binder, which decodes them for the listener once replayed
+	private final DefaultKafkaHeaderMapper headerMapper = new DefaultKafkaHeaderMapper();
+
+	/**
+	 * @param dlqName the dlqName of the binding, empty for the default name
+	 */
+	public KafkaDeadLetterPublisher(String bootstrapServers, String destination, String group, String dlqName) {
+		if (group.isEmpty()) throw new IllegalStateException("An anonymous consumer has no dead letter topic");
+		this.topic = dlqName.isEmpty() ? "error." + destination + "." + group : dlqName;
+
+		Map<String, Object> config = new HashMap<>();
+		config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		config.put(ProducerConfig.CLIENT_ID_CONFIG, group + "-dlq");
+		config.put(ProducerConfig.ACKS_CONFIG, "all");
+		this.producer = new KafkaProducer<>(config, new ByteArraySerializer(), new ByteArraySerializer());
+	}
+
+	/**
+	 * @return the bootstrap servers of the brokers setting of the binder, with the default port where
+	 *         a broker names none
+	 */
+	public static String bootstrapServers(String brokers, String defaultPort) {
+		return Arrays.stream(brokers.split(","))
+				.map(String::trim)
+				.map(broker -> broker.contains(":") ? broker : broker + ":" + defaultPort)
+				.collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Sends a record to the dead letter topic and waits for the broker to acknowledge it.
+	 *
+	 * @param payload the payload as received, before conversion
+	 * @param headers the headers of the message as received, the headers of the binder included
+	 * @throws Exception if the record can not be sent
+	 */
+	public void publish(byte[] payload, Map<String, Object> headers, Throwable failure) throws Exception {
+		RecordHeaders recordHeaders = new RecordHeaders();
+		headerMapper.fromHeaders(new MessageHeaders(applicationHeaders(headers)), recordHeaders);
+
+		Object originalTopic = headers.get(TOPIC_HEADER);
+		Object partition = headers.get(PARTITION_HEADER);
+		Object offset = headers.get(OFFSET_HEADER);
+		if (originalTopic != null) {
+			recordHeaders.add(KafkaDlqSource.ORIGINAL_TOPIC, originalTopic.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		if (partition instanceof Number) {
+			recordHeaders.add(KafkaDlqSource.ORIGINAL_PARTITION,
+					ByteBuffer.allocate(4).putInt(((Number) partition).intValue()).array());
+		}
+		if (offset instanceof Number) {
+			recordHeaders.add(ORIGINAL_OFFSET, ByteBuffer.allocate(8).putLong(((Number) offset).longValue()).array());
+		}
+		if (failure != null) {
+			recordHeaders.add(EXCEPTION_FQCN, failure.getClass().getName().getBytes(StandardCharsets.UTF_8));
+			recordHeaders.add(EXCEPTION_MESSAGE, String.valueOf(failure.getMessage()).getBytes(StandardCharsets.UTF_8));
+		}
+
+		Object key = headers.get(KEY_HEADER);
+		producer.send(new ProducerRecord<>(topic, null, key instanceof byte[] ? (byte[]) key : null, payload,
+				recordHeaders)).get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void close() {
+		producer.close(TIMEOUT);
+	}
+
+	// The headers set by the application, not those the broker and binder set on receipt
+	private static Map<String, Object> applicationHeaders(Map<String, Object> headers) {
+		Map<String, Object> application = new LinkedHashMap<>();
+		headers.forEach((name, value) -> {
+			if (name.startsWith("kafka_") || name.startsWith("x-original-") || name.startsWith("x-exception-")
+					|| MessageHeaders.ID.equals(name) || MessageHeaders.TIMESTAMP.equals(name)
+					|| "deliveryAttempt".equals(name)) {
+				return;
+			}
+			if (value instanceof MimeType) value = value.toString();
+			if (value instanceof String || value instanceof Number || value instanceof Boolean
+					|| value instanceof byte[]) {
+				application.put(name, value);
+			}
+		});
+		return application;
+	}
+}
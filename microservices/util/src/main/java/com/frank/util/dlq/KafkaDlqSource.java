@@ -0,0 +1,142 @@
+package com.frank.util.dlq;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.kafka.support.DefaultKafkaHeaderMapper;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * The dead letter topic of a Kafka consumer group. A record can not be removed from a topic, the
+ * replay reads the topic from where the last committed replay stopped to its end at the start, in
+ * the group {@code <group>.dlq-replay}.
+ *
+ * Replayed records are not sent back to the topic they failed on, every group of the destination
+ * would see them again. They are handed to the input channel of this instance instead, as if they
+ * came from the topic and partition they failed on, without the headers the binder and the retries
+ * added, so they start over with all their retries. A record failing again is kept. Kept records stay
+ * where they are, the replay commits up to the first kept record of each partition, the next replay
+ * looks at it and the records after it again.
+ */
+class KafkaDlqSource implements DlqSource {
+
+	static final String ORIGINAL_TOPIC = "x-original-topic";
+	static final String ORIGINAL_PARTITION = "x-original-partition";
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(10);
+	private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+	private final MessageChannel input;
+	private final KafkaConsumer<byte[], byte[]> consumer;
+	private final Map<TopicPartition, Long> end;
+	private final Map<TopicPartition, OffsetAndMetadata> visited = new HashMap<>();
+	private final Map<TopicPartition, OffsetAndMetadata> firstKept = new HashMap<>();
+	// Decodes the headers like the binder
+	private final DefaultKafkaHeaderMapper headerMapper = new DefaultKafkaHeaderMapper();
+	private Iterator<ConsumerRecord<byte[], byte[]>> buffer = Collections.emptyIterator();
+
+	KafkaDlqSource(String bootstrapServers, String dlqTopic, String group, MessageChannel input) {
+		this.input = input;
+
+		Map<String, Object> consumerConfig = new HashMap<>();
+		consumerConfig.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		consumerConfig.put(ConsumerConfig.GROUP_ID_CONFIG, group + ".dlq-replay");
+		consumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+		consumerConfig.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		this.consumer = new KafkaConsumer<>(consumerConfig, new ByteArrayDeserializer(), new ByteArrayDeserializer());
+
+		List<PartitionInfo> infos = consumer.partitionsFor(dlqTopic, TIMEOUT);
+		List<TopicPartition> partitions = (infos == null ? Collections.<PartitionInfo>emptyList() : infos).stream()
+				.map(info -> new TopicPartition(dlqTopic, info.partition()))
+				.collect(Collectors.toList());
+		consumer.assign(partitions);
+		this.end = consumer.endOffsets(partitions, TIMEOUT);
+	}
+
+	@Override
+	public DlqMessage next() {
+		while (true) {
+			while (buffer.hasNext()) {
+				ConsumerRecord<byte[], byte[]> record = buffer.next();
+				TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+				if (record.offset() >= end.get(partition)) continue;
+
+				visited.put(partition, new OffsetAndMetadata(record.offset() + 1));
+				return new DlqMessage(record.value(), record);
+			}
+			if (passedEnd()) return null;
+			buffer = consumer.poll(POLL_TIMEOUT).iterator();
+		}
+	}
+
+	/**
+	 * Processes the record on the calling thread, a failure of the processing is thrown.
+	 */
+	@Override
+	public void replay(DlqMessage message) {
+		ConsumerRecord<byte[], byte[]> record = record(message);
+
+		RecordHeaders fresh = new RecordHeaders();
+		Map<String, Object> headers = new HashMap<>();
+		for (Header header : record.headers()) {
+			if (ORIGINAL_TOPIC.equals(header.key())) {
+				headers.put(KafkaDeadLetterPublisher.TOPIC_HEADER, new String(header.value(), StandardCharsets.UTF_8));
+			} else if (ORIGINAL_PARTITION.equals(header.key()) && header.value().length == 4) {
+				headers.put(KafkaDeadLetterPublisher.PARTITION_HEADER, ByteBuffer.wrap(header.value()).getInt());
+			} else if (!header.key().startsWith("x-original-") && !header.key().startsWith("x-exception-")
+					&& !header.key().startsWith("x-retry-")) {
+				fresh.add(header);
+			}
+		}
+		headerMapper.toHeaders(fresh, headers);
+		if (record.key() != null) headers.put(KafkaDeadLetterPublisher.KEY_HEADER, record.key());
+
+		input.send(MessageBuilder.createMessage(record.value(), new MessageHeaders(headers)));
+	}
+
+	@Override
+	public void keep(DlqMessage message) {
+		ConsumerRecord<byte[], byte[]> record = record(message);
+		firstKept.putIfAbsent(new TopicPartition(record.topic(), record.partition()),
+				new OffsetAndMetadata(record.offset()));
+	}
+
+	@Override
+	public void commit() {
+		Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>(visited);
+		offsets.putAll(firstKept);
+		if (!offsets.isEmpty()) consumer.commitSync(offsets, TIMEOUT);
+	}
+
+	@Override
+	public void close() {
+		consumer.close(TIMEOUT);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ConsumerRecord<byte[], byte[]> record(DlqMessage message) {
+		return (ConsumerRecord<byte[], byte[]>) message.handle;
+	}
+
+	private boolean passedEnd() {
+		return end.entrySet().stream().allMatch(e -> consumer.position(e.getKey(), TIMEOUT) >= e.getValue());
+	}
+}
@@ -0,0 +1,142 @@
+package com.frank.util.dlq;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+
+/**
+ * The dead letter queue of a RabbitMQ consumer group. Messages are fetched one at a time and
+ * acknowledged once they are sent on, a replay that stops half way leaves the rest in the queue.
+ *
+ * Replayed messages go through the default exchange straight to the queue of the group, the other
+ * groups of the destination do not see them again. That is the queue that rejected the message as
+ * recorded in x-death, otherwise the queue of the group, or of the partition when the binder
+ * republished the message with the routing key of a partition. They are published mandatory with
+ * publisher confirms and only acknowledged in the DLQ once the broker confirmed them, a message the
+ * broker can not route stays in the DLQ. They leave the headers of dead lettering and retries behind.
+ *
+ * Kept messages are left unacknowledged, they return to their place in the DLQ when the replay ends.
+ * Each message of the DLQ is looked at once.
+ */
+class RabbitDlqSource implements DlqSource {
+
+	static final String ORIGINAL_ROUTING_KEY = "x-original-routingKey";
+	static final String DEATH = "x-death";
+
+	private static final long CONFIRM_TIMEOUT_MS = 10_000;
+
+	private final String dlq;
+	private final String groupQueue;
+	// The routing key of a partition, as sent by a partitioned producer
+	private final Pattern partitionRoutingKey;
+	private final Connection connection;
+	private final Channel channel;
+	private long remaining;
+	// The reply of the broker to an unroutable message, returns arrive before the confirm
+	private volatile String returned;
+
+	/**
+	 * @param groupQueue the queue of the group, {@code <destination>.<group>}
+	 */
+	RabbitDlqSource(ConnectionFactory connectionFactory, String dlq, String destination, String groupQueue)
+			throws IOException {
+		this.dlq = dlq;
+		this.groupQueue = groupQueue;
+		this.partitionRoutingKey = Pattern.compile(Pattern.quote(destination) + "-(\\d+)");
+		this.connection = connectionFactory.createConnection();
+		this.channel = connection.createChannel(false);
+		channel.confirmSelect();
+		channel.addReturnListener((replyCode, replyText, exchange, routingKey, properties, body) ->
+				returned = replyCode + " " + replyText);
+		this.remaining = channel.queueDeclarePassive(dlq).getMessageCount();
+	}
+
+	@Override
+	public DlqMessage next() throws IOException {
+		if (remaining <= 0) return null;
+
+		GetResponse response = channel.basicGet(dlq, false);
+		if (response == null) return null;
+		remaining--;
+		return new DlqMessage(response.getBody(), response);
+	}
+
+	@Override
+	public void replay(DlqMessage message) throws Exception {
+		GetResponse response = (GetResponse) message.handle;
+		Map<String, Object> headers = response.getProps().getHeaders();
+		String queue = queueOf(headers);
+
+		AMQP.BasicProperties properties = response.getProps().builder().headers(freshHeaders(headers)).build();
+		returned = null;
+		channel.basicPublish("", queue, true, properties, response.getBody());
+		channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+		if (returned != null) throw new IllegalStateException("The broker returned the message for " + queue + ": "
+				+ returned);
+
+		channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+	}
+
+	@Override
+	public void keep(DlqMessage message) {
+		// Requeued in place as the channel closes
+	}
+
+	@Override
+	public void close() {
+		try {
+			channel.close();
+		} catch (Exception e) {
+			// Closed with the connection
+		}
+		connection.close();
+	}
+
+	// Without the headers of dead lettering and retries, the message starts over with all its retries
+	private static Map<String, Object> freshHeaders(Map<String, Object> headers) {
+		Map<String, Object> fresh = new HashMap<>();
+		if (headers == null) return fresh;
+
+		headers.forEach((name, value) -> {
+			if (!name.startsWith("x-death") && !name.startsWith("x-first-death") && !name.startsWith("x-original-")
+					&& !name.startsWith("x-exception-") && !name.startsWith("x-retry-")) {
+				fresh.put(name, value);
+			}
+		});
+		return fresh;
+	}
+
+	// The queue of the group the message failed in
+	private String queueOf(Map<String, Object> headers) {
+		String rejectedBy = rejectedBy(headers);
+		if (rejectedBy != null) return rejectedBy;
+
+		Object routingKey = headers == null ? null : headers.get(ORIGINAL_ROUTING_KEY);
+		Matcher partition = routingKey == null ? null : partitionRoutingKey.matcher(routingKey.toString());
+		return partition != null && partition.matches() ? groupQueue + "-" + partition.group(1) : groupQueue;
+	}
+
+	// The queue that rejected the message, the latest rejection in x-death, not the expiries of delay queues
+	private static String rejectedBy(Map<String, Object> headers) {
+		Object deaths = headers == null ? null : headers.get(DEATH);
+		if (!(deaths instanceof List)) return null;
+
+		for (Object death : (List<?>) deaths) {
+			if (!(death instanceof Map)) continue;
+			Object reason = ((Map<?, ?>) death).get("reason");
+			Object queue = ((Map<?, ?>) death).get("queue");
+			if (queue != null && reason != null && "rejected".equals(reason.toString())) return queue.toString();
+		}
+		return null;
+	}
+}
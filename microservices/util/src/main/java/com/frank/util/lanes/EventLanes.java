@@ -0,0 +1,229 @@
+package com.frank.util.lanes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import com.frank.util.dlq.KafkaDeadLetterPublisher;
+import com.frank.util.metrics.EventLatencyRecorder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Processes the events of the input binding on {@code app.messaging.lanes.count} lanes instead of the
+ * consumer thread, see {@link KeyAffinityExecutor}. Events are assigned to lanes by their key, events
+ * of a product keep their order while other products are processed in parallel. A message is
+ * acknowledged once it and all messages before it from the same partition or channel are processed,
+ * at most {@code app.messaging.lanes.max-in-flight} messages are pending.
+ *
+ * The binder must leave the acknowledgements to the application: {@code acknowledgeMode: MANUAL} and a
+ * {@code prefetch} of at least max-in-flight on RabbitMQ, {@code autoCommitOffset: false} on Kafka.
+ * Failing events are retried on their lane with the maxAttempts and backOffInitialInterval of the
+ * binding. Then they are logged and counted as {@code messaging.lanes.rejected}, RabbitMQ messages
+ * are rejected to the dead letter queue. Kafka records are sent to the dead letter topic of the
+ * binder, {@code error.<destination>.<group>}, before the offset moves past them, the received record
+ * is kept per thread as it enters the input channel for that. A record that can not be dead lettered
+ * holds back the commits of its partition, it is redelivered after a restart or rebalance.
+ *
+ * Disabled with a count of 0, the default, events are processed on the consumer thread.
+ */
+@Component
+@GlobalChannelInterceptor(patterns = "input")
+public class EventLanes implements ChannelInterceptor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EventLanes.class);
+
+	static final String KAFKA_ACKNOWLEDGMENT_HEADER = "kafka_acknowledgment";
+	static final String KAFKA_TOPIC_HEADER = "kafka_receivedTopic";
+	static final String KAFKA_PARTITION_HEADER = "kafka_receivedPartitionId";
+	static final String RABBIT_CHANNEL_HEADER = "amqp_channel";
+	static final String RABBIT_DELIVERY_TAG_HEADER = "amqp_deliveryTag";
+
+	private final EventLatencyRecorder latencyRecorder;
+	private final KeyAffinityExecutor executor;
+	private final Counter rejected;
+	// Only on Kafka, RabbitMQ dead letters rejected messages itself
+	private final KafkaDeadLetterPublisher deadLetters;
+	private final ThreadLocal<Message<?>> received = new ThreadLocal<>();
+	private final AtomicBoolean warnedUnacknowledged = new AtomicBoolean();
+
+	@Autowired
+	public EventLanes(
+			EventLatencyRecorder latencyRecorder,
+			MeterRegistry registry,
+			@Value("${app.messaging.lanes.count:0}") int laneCount,
+			@Value("${app.messaging.lanes.max-in-flight:100}") int maxInFlight,
+			@Value("${spring.cloud.stream.bindings.input.destination:input}") String destination,
+			@Value("${spring.cloud.stream.bindings.input.group:}") String group,
+			@Value("${spring.cloud.stream.bindings.input.binder:${spring.cloud.stream.default-binder:rabbit}}")
+				String binder,
+			@Value("${spring.cloud.stream.bindings.input.consumer.max-attempts:3}") int maxAttempts,
+			@Value("${spring.cloud.stream.bindings.input.consumer.back-off-initial-interval:1000}") long backOffMs,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.acknowledge-mode:AUTO}") String rabbitAckMode,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.prefetch:1}") int rabbitPrefetch,
+			@Value("${spring.cloud.stream.kafka.bindings.input.consumer.auto-commit-offset:true}")
+				boolean kafkaAutoCommit,
+			@Value("${spring.cloud.stream.kafka.bindings.input.consumer.dlq-name:}") String kafkaDlq,
+			@Value("${spring.cloud.stream.kafka.binder.brokers:localhost}") String kafkaBrokers,
+			@Value("${spring.cloud.stream.kafka.binder.default-broker-port:9092}") String kafkaPort) {
+		this.latencyRecorder = latencyRecorder;
+
+		if (laneCount <= 0) {
+			this.executor = null;
+			this.rejected = null;
+			this.deadLetters = null;
+			return;
+		}
+
+		if ("kafka".equals(binder)) {
+			if (kafkaAutoCommit) {
+				throw new IllegalStateException("app.messaging.lanes needs autoCommitOffset: false on the Kafka "
+						+ "consumer of " + destination);
+			}
+			this.deadLetters = new KafkaDeadLetterPublisher(
+					KafkaDeadLetterPublisher.bootstrapServers(kafkaBrokers, kafkaPort), destination, group, kafkaDlq);
+		} else {
+			this.deadLetters = null;
+			if (!"MANUAL".equalsIgnoreCase(rabbitAckMode)) {
+				throw new IllegalStateException("app.messaging.lanes needs acknowledgeMode: MANUAL on the RabbitMQ "
+						+ "consumer of " + destination);
+			}
+			if (rabbitPrefetch < maxInFlight) {
+				LOG.warn("The prefetch of {} limits the messages in flight on the lanes to {} instead of {}",
+						destination, rabbitPrefetch, maxInFlight);
+			}
+		}
+
+		this.executor = new KeyAffinityExecutor(destination, laneCount, maxInFlight, maxAttempts, backOffMs);
+		this.rejected = Counter.builder("messaging.lanes.rejected")
+				.description("Events that failed on their lane after all attempts")
+				.tag("destination", destination)
+				.register(registry);
+		Gauge.builder("messaging.lanes.in.flight", executor, KeyAffinityExecutor::getInFlight)
+				.description("Events queued or being processed on the lanes")
+				.tag("destination", destination)
+				.register(registry);
+		LOG.info("Processes {} on {} lanes, at most {} events in flight", destination, laneCount, maxInFlight);
+	}
+
+	public boolean isEnabled() {
+		return executor != null;
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		if (deadLetters != null) received.set(message);
+		return message;
+	}
+
+	@Override
+	public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+		received.remove();
+	}
+
+	/**
+	 * Queues the processing of a message on the lane of its key and returns, the message is
+	 * acknowledged once it and the messages before it are processed. Blocks while max-in-flight
+	 * messages are pending.
+	 *
+	 * @param headers the headers of the message, they hold the handles to acknowledge it
+	 */
+	public void submit(Object key, MessageHeaders headers, Runnable task) {
+		Runnable propagated = latencyRecorder.propagate(task);
+
+		if (headers.get(KAFKA_ACKNOWLEDGMENT_HEADER) != null) {
+			String source = headers.get(KAFKA_TOPIC_HEADER) + "-" + headers.get(KAFKA_PARTITION_HEADER);
+			// Offsets are committed cumulatively, the next record of the partition commits past a dead lettered one
+			executor.submit(key, source, propagated, KafkaAcks.acknowledge(headers), deadLetter(received.get()));
+			return;
+		}
+
+		if (headers.get(RABBIT_CHANNEL_HEADER) != null && headers.get(RABBIT_DELIVERY_TAG_HEADER) != null) {
+			Object channel = headers.get(RABBIT_CHANNEL_HEADER);
+			long deliveryTag = (Long) headers.get(RABBIT_DELIVERY_TAG_HEADER);
+			executor.submit(key, channel, propagated, RabbitAcks.ack(channel, deliveryTag),
+					RabbitAcks.reject(channel, deliveryTag, rejected));
+			return;
+		}
+
+		// The binder acknowledges the message when this returns, it must be processed by then
+		if (warnedUnacknowledged.compareAndSet(false, true)) {
+			LOG.warn("Messages come without acknowledgement handles, they are processed on the consumer thread");
+		}
+		task.run();
+	}
+
+	@PreDestroy
+	public void close() {
+		if (executor != null) executor.close();
+		if (deadLetters != null) deadLetters.close();
+	}
+
+	private Consumer<RuntimeException> deadLetter(Message<?> message) {
+		return failure -> {
+			if (message == null || !(message.getPayload() instanceof byte[])) {
+				throw new IllegalStateException("The received record is not known, it can not be dead lettered");
+			}
+			try {
+				deadLetters.publish((byte[]) message.getPayload(), message.getHeaders(), failure);
+			} catch (Exception e) {
+				throw new IllegalStateException("Failed to send a record to the dead letter topic", e);
+			}
+			rejected.increment();
+		};
+	}
+
+	// Apart from the other binder's classes, they may be missing on the classpath
+	private static final class KafkaAcks {
+
+		private static Runnable acknowledge(MessageHeaders headers) {
+			org.springframework.kafka.support.Acknowledgment acknowledgment =
+					headers.get(KAFKA_ACKNOWLEDGMENT_HEADER, org.springframework.kafka.support.Acknowledgment.class);
+			// Commits the offset after the record, i.e. the whole partition up to it
+			return acknowledgment::acknowledge;
+		}
+	}
+
+	private static final class RabbitAcks {
+
+		private static Runnable ack(Object channel, long deliveryTag) {
+			// Acks every delivery of the channel up to the tag, those before it are done or rejected
+			return () -> call(() -> ((com.rabbitmq.client.Channel) channel).basicAck(deliveryTag, true));
+		}
+
+		private static Consumer<RuntimeException> reject(Object channel, long deliveryTag, Counter rejected) {
+			return failure -> {
+				call(() -> ((com.rabbitmq.client.Channel) channel).basicNack(deliveryTag, false, false));
+				rejected.increment();
+			};
+		}
+
+		private interface ChannelCall {
+			void run() throws IOException;
+		}
+
+		private static void call(ChannelCall call) {
+			try {
+				call.run();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
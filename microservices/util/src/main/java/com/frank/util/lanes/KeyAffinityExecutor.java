@@ -0,0 +1,196 @@
+package com.frank.util.lanes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks on a fixed number of lanes, one thread each, picked by a hash of the task's key. Tasks
+ * with the same key run one after another in submission order, tasks with other keys run in parallel
+ * on the other lanes.
+ *
+ * Every task takes the next position of its source, e.g. a Kafka partition or a RabbitMQ channel.
+ * The commit action of a task runs once the task and all tasks before it from the same source are
+ * done, so a broker never learns of a message as processed while an earlier one is still pending.
+ * Brokers acknowledge cumulatively, of a run of done tasks only the last commit action is run.
+ *
+ * A failing task is retried up to {@code maxAttempts} times on its lane, holding up its key only.
+ * Then its reject action runs with the last failure, if it has one, and it no longer takes part in
+ * the commits. Without a reject action it is committed like a completed task. A reject action that
+ * still fails after {@code maxAttempts} leaves the task pending, its source is not committed past it.
+ *
+ * At most {@code maxInFlight} tasks are queued or running, {@link #submit} blocks beyond that.
+ */
+public class KeyAffinityExecutor implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(KeyAffinityExecutor.class);
+
+	private static class Position {
+		private Runnable commit;
+		private boolean done = false;
+
+		private Position(Runnable commit) {
+			this.commit = commit;
+		}
+	}
+
+	private final String name;
+	private final ExecutorService[] lanes;
+	private final int maxInFlight;
+	private final Semaphore inFlight;
+	private final int maxAttempts;
+	private final long backOffMs;
+
+	// Positions not yet committed, oldest first, per source
+	private final Map<Object, ArrayDeque<Position>> pending = new HashMap<>();
+
+	public KeyAffinityExecutor(String name, int laneCount, int maxInFlight, int maxAttempts, long backOffMs) {
+		if (laneCount < 1) throw new IllegalArgumentException("laneCount must be at least 1, got: " + laneCount);
+		if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1, got: " + maxInFlight);
+
+		this.name = name;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.backOffMs = backOffMs;
+		this.lanes = new ExecutorService[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			String threadName = "lane-" + name + "-" + i;
+			lanes[i] = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, threadName);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Queues a task on the lane of its key, blocks while {@code maxInFlight} tasks are pending.
+	 *
+	 * @param commit run when this and all earlier tasks of the source are done, may be null
+	 * @param reject run with the failure instead when the task fails for good, null to commit it anyway
+	 */
+	public void submit(Object key, Object source, Runnable task, Runnable commit, Consumer<RuntimeException> reject) {
+		try {
+			inFlight.acquire();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a free slot on " + name, ie);
+		}
+
+		Position position = new Position(commit);
+		synchronized (pending) {
+			pending.computeIfAbsent(source, s -> new ArrayDeque<>()).addLast(position);
+		}
+
+		try {
+			lanes[lane(key)].execute(() -> run(source, position, task, reject));
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the number of tasks queued or running
+	 */
+	public int getInFlight() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
+	@Override
+	public void close() {
+		for (ExecutorService lane : lanes) lane.shutdown();
+		try {
+			for (ExecutorService lane : lanes) {
+				if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+					LOG.warn("Lanes of {} did not finish their pending tasks in time", name);
+					return;
+				}
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private int lane(Object key) {
+		int hash = key == null ? 0 : key.hashCode();
+		return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+	}
+
+	private void run(Object source, Position position, Runnable task, Consumer<RuntimeException> reject) {
+		boolean done = true;
+		try {
+			RuntimeException failure = attempt("task", task);
+			if (failure != null && reject != null) {
+				if (attempt("rejection", () -> reject.accept(failure)) == null) {
+					position.commit = null;
+				} else {
+					// Redelivered from here after a restart or rebalance, the broker must not learn of it as done
+					LOG.error("Holds back the commits of {} of {}, a task could not be rejected", source, name);
+					done = false;
+				}
+			}
+		} finally {
+			if (done) complete(source, position);
+			inFlight.release();
+		}
+	}
+
+	// The last failure, null once the action succeeds
+	private RuntimeException attempt(String action, Runnable runnable) {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				runnable.run();
+				return null;
+			} catch (RuntimeException e) {
+				if (attempt >= maxAttempts) {
+					LOG.error("Gives up a {} of {} after {} attempts", action, name, attempt, e);
+					return e;
+				}
+				LOG.warn("Attempt {} of a {} of {} failed, retries: {}", attempt, action, name, e.toString());
+				try {
+					Thread.sleep(backOffMs);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					return e;
+				}
+			}
+		}
+	}
+
+	private void complete(Object source, Position position) {
+		// Commits run holding the lock, a source is never committed by two lanes at the same time
+		synchronized (pending) {
+			position.done = true;
+			ArrayDeque<Position> positions = pending.get(source);
+
+			Runnable commit = null;
+			List<Position> committed = new ArrayList<>();
+			while (!positions.isEmpty() && positions.peekFirst().done) {
+				Position head = positions.pollFirst();
+				committed.add(head);
+				if (head.commit != null) commit = head.commit;
+			}
+			if (positions.isEmpty()) pending.remove(source);
+
+			if (commit != null) {
+				try {
+					commit.run();
+				} catch (RuntimeException e) {
+					LOG.error("Failed to commit {} tasks of {}", committed.size(), name, e);
+				}
+			}
+		}
+	}
+}
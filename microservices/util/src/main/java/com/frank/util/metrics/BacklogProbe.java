@@ -0,0 +1,17 @@
+package com.frank.util.metrics;
+
+/**
+ * Asks the broker how many messages are waiting for a consumer group.
+ */
+interface BacklogProbe extends AutoCloseable {
+
+	/**
+	 * @return the number of messages not yet consumed by the group
+	 * @throws Exception if the broker can not be asked
+	 */
+	long backlog() throws Exception;
+
+	@Override
+	default void close() {
+	}
+}
@@ -0,0 +1,228 @@
+package com.frank.util.metrics;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Tracks how far the consumers of the input binding are behind: the offset lag of the consumer group
+ * on Kafka, the depth of the group's queue on RabbitMQ.
+ *
+ * The backlog is polled every {@code app.messaging.lag.check-interval-ms} and published with the
+ * processing rate and the estimated time to drain the backlog as the gauges
+ * {@code messaging.consumer.backlog}, {@code messaging.consumer.rate} and
+ * {@code messaging.consumer.drain.time}, tagged with the binding, destination and group. The same
+ * numbers are served by the {@code consumerlag} actuator endpoint.
+ *
+ * The rate is the events applied per second by this instance, averaged over about a minute and
+ * unknown until the second check. On Kafka, and on RabbitMQ with dynamic partitions, the backlog is
+ * that of the whole group, the time to drain assumes the other instances keep the same pace. Unknown
+ * values are NaN.
+ */
+@Component
+@Endpoint(id = "consumerlag")
+@ConditionalOnProperty("spring.cloud.stream.bindings.input.destination")
+public class ConsumerLagMonitor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ConsumerLagMonitor.class);
+
+	private static final String BINDING = "input";
+	private static final double RATE_WINDOW_SECONDS = 60;
+
+	private final String binder;
+	private final String destination;
+	private final String group;
+	private final Supplier<BacklogProbe> probeFactory;
+	private final LongSupplier applied;
+	private final LongSupplier clock;
+	private final ScheduledExecutorService checker;
+
+	private BacklogProbe probe = null;
+	private long lastCheckAt = -1;
+	private long lastApplied = 0;
+
+	private volatile double backlog = Double.NaN;
+	private volatile double rate = Double.NaN;
+	private volatile long checkedAt = -1;
+	private volatile String error = null;
+
+	@Autowired
+	public ConsumerLagMonitor(
+			MeterRegistry registry,
+			EventLatencyRecorder latencyRecorder,
+			BeanFactory beanFactory,
+			@Value("${spring.cloud.stream.bindings.input.destination}") String destination,
+			@Value("${spring.cloud.stream.bindings.input.group:}") String group,
+			@Value("${spring.cloud.stream.bindings.input.binder:${spring.cloud.stream.default-binder:rabbit}}")
+				String binder,
+			@Value("${spring.cloud.stream.bindings.input.consumer.partitioned:false}") boolean partitioned,
+			@Value("${spring.cloud.stream.bindings.input.consumer.instance-index:${spring.cloud.stream.instance-index:0}}")
+				int instanceIndex,
+			@Value("${app.messaging.partitions.dynamic:false}") boolean dynamicPartitions,
+			@Value("${app.messaging.partitions.count:0}") int partitionCount,
+			@Value("${spring.cloud.stream.kafka.binder.brokers:localhost}") String kafkaBrokers,
+			@Value("${spring.cloud.stream.kafka.binder.default-broker-port:9092}") String kafkaPort,
+			@Value("${app.messaging.lag.check-interval-ms:10000}") long checkIntervalMs) {
+		this(registry, binder, destination, group,
+				probeFactory(beanFactory, binder, destination, group, partitioned, instanceIndex,
+						dynamicPartitions ? partitionCount : 0, kafkaBrokers, kafkaPort),
+				latencyRecorder::getApplied, System::currentTimeMillis, true);
+
+		// The first check waits an interval, the broker is not asked during startup
+		checker.scheduleWithFixedDelay(this::check, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	ConsumerLagMonitor(MeterRegistry registry, String binder, String destination, String group,
+			Supplier<BacklogProbe> probeFactory, LongSupplier applied, LongSupplier clock, boolean scheduled) {
+		this.binder = binder;
+		this.destination = destination;
+		this.group = group;
+		this.probeFactory = probeFactory;
+		this.applied = applied;
+		this.clock = clock;
+		this.checker = scheduled
+				? Executors.newSingleThreadScheduledExecutor(r -> {
+					Thread thread = new Thread(r, "consumer-lag-checker");
+					thread.setDaemon(true);
+					return thread;
+				})
+				: null;
+
+		Tags tags = Tags.of("binding", BINDING, "destination", destination, "group", group);
+		Gauge.builder("messaging.consumer.backlog", this, ConsumerLagMonitor::getBacklog)
+				.description("Messages waiting for the consumer group")
+				.baseUnit("messages")
+				.tags(tags)
+				.register(registry);
+		Gauge.builder("messaging.consumer.rate", this, ConsumerLagMonitor::getRate)
+				.description("Events applied per second, averaged over a minute")
+				.baseUnit("events/s")
+				.tags(tags)
+				.register(registry);
+		Gauge.builder("messaging.consumer.drain.time", this, ConsumerLagMonitor::getTimeToDrain)
+				.description("Estimated time to process the backlog at the current rate")
+				.baseUnit("seconds")
+				.tags(tags)
+				.register(registry);
+	}
+
+	public double getBacklog() {
+		return backlog;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * @return the seconds to process the backlog at the current rate, infinite if nothing is processed
+	 */
+	public double getTimeToDrain() {
+		double currentBacklog = backlog;
+		double currentRate = rate;
+		if (currentBacklog == 0) return 0;
+		if (Double.isNaN(currentBacklog) || Double.isNaN(currentRate)) return Double.NaN;
+		return currentRate > 0 ? currentBacklog / currentRate : Double.POSITIVE_INFINITY;
+	}
+
+	@ReadOperation
+	public Map<String, Object> lag() {
+		Map<String, Object> lag = new LinkedHashMap<>();
+		lag.put("binding", BINDING);
+		lag.put("binder", binder);
+		lag.put("destination", destination);
+		lag.put("group", group);
+		lag.put("backlog", orNull(getBacklog()));
+		lag.put("rate", orNull(getRate()));
+		lag.put("timeToDrainSeconds", orNull(getTimeToDrain()));
+		lag.put("checkedAt", checkedAt < 0 ? null : Instant.ofEpochMilli(checkedAt).toString());
+		lag.put("error", error);
+		return lag;
+	}
+
+	void check() {
+		long now = clock.getAsLong();
+		long count = applied.getAsLong();
+		if (lastCheckAt >= 0 && now > lastCheckAt) {
+			double seconds = (now - lastCheckAt) / 1000.0;
+			double current = (count - lastApplied) / seconds;
+			// Exponentially weighted, older intervals fade out within about a window
+			double alpha = 1 - Math.exp(-seconds / RATE_WINDOW_SECONDS);
+			rate = Double.isNaN(rate) ? current : rate + alpha * (current - rate);
+		}
+		lastCheckAt = now;
+		lastApplied = count;
+
+		try {
+			if (probe == null) probe = probeFactory.get();
+			backlog = probe.backlog();
+			error = null;
+		} catch (Exception e) {
+			LOG.debug("Failed to check the backlog of {}: {}", destination, e.toString());
+			backlog = Double.NaN;
+			error = e.toString();
+		}
+		checkedAt = now;
+	}
+
+	@PreDestroy
+	public void close() {
+		if (checker != null) checker.shutdownNow();
+		if (probe != null) probe.close();
+	}
+
+	private static Supplier<BacklogProbe> probeFactory(BeanFactory beanFactory, String binder, String destination,
+			String group, boolean partitioned, int instanceIndex, int dynamicPartitions, String kafkaBrokers,
+			String kafkaPort) {
+		return () -> {
+			if (group.isEmpty()) throw new IllegalStateException("An anonymous consumer has no backlog to check");
+
+			if ("kafka".equals(binder)) {
+				String servers = Arrays.stream(kafkaBrokers.split(","))
+						.map(String::trim)
+						.map(broker -> broker.contains(":") ? broker : broker + ":" + kafkaPort)
+						.collect(Collectors.joining(","));
+				return new KafkaBacklogProbe(servers, destination, group);
+			}
+
+			// The queue names of the RabbitMQ binder, one queue per instance for partitioned consumers and
+			// all partition queues when they are shared dynamically
+			String queue = destination + "." + group;
+			List<String> queues = dynamicPartitions > 0
+					? IntStream.range(0, dynamicPartitions).mapToObj(p -> queue + "-" + p).collect(Collectors.toList())
+					: Collections.singletonList(partitioned ? queue + "-" + instanceIndex : queue);
+			return new RabbitBacklogProbe(beanFactory.getBean(ConnectionFactory.class), queues);
+		};
+	}
+
+	private static Double orNull(double value) {
+		return Double.isNaN(value) ? null : value;
+	}
+}
@@ -0,0 +1,209 @@
+package com.frank.util.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records how long events take from being published to being applied, as the histogram
+ * {@code messaging.event.latency} tagged with the destination and partition of the input binding
+ * and the phase:
+ * <ul>
+ * <li>dwell, from the timestamp of the event to the binder handing it to the input channel, the time
+ * spent in the broker and in the consumer's fetch buffer</li>
+ * <li>processing, from the input channel to the event being applied</li>
+ * <li>total, from the timestamp of the event to it being applied</li>
+ * </ul>
+ * The receive time is taken as the message enters the input channel, the listener runs on the same
+ * thread and calls {@link #record} once the event is applied, work handed to other threads is
+ * wrapped with {@link #propagate} and asynchronous writes record through {@link #recorder}. Dwell and total compare the clocks of
+ * producer and consumer, a producer clock running ahead is recorded as 0.
+ *
+ * The partition is the Kafka partition of the message. On RabbitMQ it is the partition of the queue
+ * the message came from when the partitions are shared dynamically, the instance index for
+ * partitioned consumers and "none" otherwise.
+ */
+@Component
+@GlobalChannelInterceptor(patterns = "input")
+public class EventLatencyRecorder implements ChannelInterceptor {
+
+	static final String KAFKA_PARTITION_HEADER = "kafka_receivedPartitionId";
+	static final String RABBIT_QUEUE_HEADER = "amqp_consumerQueue";
+	private static final Pattern PARTITION_QUEUE = Pattern.compile(".*\\.[^.]*-\\d+");
+
+	private static final class Receipt {
+		private final long receivedAtNanos;
+		// An Integer, or a List of them for a batch
+		private final Object partitions;
+
+		private Receipt(long receivedAtNanos, Object partitions) {
+			this.receivedAtNanos = receivedAtNanos;
+			this.partitions = partitions;
+		}
+	}
+
+	private final MeterRegistry registry;
+	private final String destination;
+	private final String defaultPartition;
+	private final LongSupplier clock;
+
+	private final ThreadLocal<Receipt> receipt = new ThreadLocal<>();
+	// dwell, processing and total timer per partition
+	private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+	private final AtomicLong applied = new AtomicLong();
+
+	@Autowired
+	public EventLatencyRecorder(
+			MeterRegistry registry,
+			@Value("${spring.cloud.stream.bindings.input.destination:input}") String destination,
+			@Value("${spring.cloud.stream.bindings.input.consumer.partitioned:false}") boolean partitioned,
+			@Value("${spring.cloud.stream.bindings.input.consumer.instance-index:${spring.cloud.stream.instance-index:0}}")
+				int instanceIndex) {
+		this(registry, destination, partitioned ? String.valueOf(instanceIndex) : "none",
+				EventLatencyRecorder::nowEpochNanos);
+	}
+
+	EventLatencyRecorder(MeterRegistry registry, String destination, String defaultPartition, LongSupplier clock) {
+		this.registry = registry;
+		this.destination = destination;
+		this.defaultPartition = defaultPartition;
+		this.clock = clock;
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		Object partitions = message.getHeaders().get(KAFKA_PARTITION_HEADER);
+		if (partitions == null) partitions = queuePartition(message.getHeaders().get(RABBIT_QUEUE_HEADER));
+
+		receipt.set(new Receipt(clock.getAsLong(), partitions));
+		return message;
+	}
+
+	@Override
+	public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+		receipt.remove();
+	}
+
+	/**
+	 * Records the latency of an event that was just applied.
+	 *
+	 * @param eventTimestampNanos when the event was published in nanoseconds since the epoch, null if
+	 *        the producer does not send it
+	 */
+	public void record(Long eventTimestampNanos) {
+		record(eventTimestampNanos, 0);
+	}
+
+	/**
+	 * Like {@link #record(Long)}, for the event at the given position of a batch.
+	 */
+	public void record(Long eventTimestampNanos, int indexInBatch) {
+		applied.incrementAndGet();
+		long now = clock.getAsLong();
+		Receipt current = receipt.get();
+		long receivedAt = current == null ? now : current.receivedAtNanos;
+
+		Timer[] phases = timers.computeIfAbsent(partition(current, indexInBatch), this::register);
+		phases[1].record(now - receivedAt, TimeUnit.NANOSECONDS);
+		if (eventTimestampNanos != null) {
+			phases[0].record(Math.max(0, receivedAt - eventTimestampNanos), TimeUnit.NANOSECONDS);
+			phases[2].record(Math.max(0, now - eventTimestampNanos), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Wraps a task to be run on another thread, the events it records keep the receive time and
+	 * partition of the message being processed on this thread.
+	 */
+	public Runnable propagate(Runnable task) {
+		return within(receipt.get(), task);
+	}
+
+	/**
+	 * Like {@link #propagate}, for an event applied asynchronously: the returned callback records
+	 * the event, given its timestamp, with the receive time and partition of the message being
+	 * processed on this thread.
+	 */
+	public Consumer<Long> recorder() {
+		Receipt current = receipt.get();
+		return eventTimestampNanos -> within(current, () -> record(eventTimestampNanos)).run();
+	}
+
+	/**
+	 * @return the number of events applied since the start
+	 */
+	public long getApplied() {
+		return applied.get();
+	}
+
+	private Runnable within(Receipt current, Runnable task) {
+		if (current == null) return task;
+
+		return () -> {
+			Receipt previous = receipt.get();
+			receipt.set(current);
+			try {
+				task.run();
+			} finally {
+				if (previous == null) receipt.remove();
+				else receipt.set(previous);
+			}
+		};
+	}
+
+	private String partition(Receipt current, int indexInBatch) {
+		Object partitions = current == null ? null : current.partitions;
+		if (partitions instanceof List) {
+			List<?> list = (List<?>) partitions;
+			partitions = indexInBatch < list.size() ? list.get(indexInBatch) : null;
+		}
+		return partitions == null ? defaultPartition : partitions.toString();
+	}
+
+	// The partition of a queue of DynamicPartitionOwnership, <destination>.<group>-<partition>
+	private static Integer queuePartition(Object queue) {
+		if (!(queue instanceof String) || !PARTITION_QUEUE.matcher((String) queue).matches()) return null;
+
+		String name = (String) queue;
+		return Integer.valueOf(name.substring(name.lastIndexOf('-') + 1));
+	}
+
+	private Timer[] register(String partition) {
+		return new Timer[] {timer(partition, "dwell"), timer(partition, "processing"), timer(partition, "total")};
+	}
+
+	private Timer timer(String partition, String phase) {
+		return Timer.builder("messaging.event.latency")
+				.description("Time from publishing an event to applying it, by phase")
+				.tag("destination", destination)
+				.tag("partition", partition)
+				.tag("phase", phase)
+				.publishPercentileHistogram()
+				.minimumExpectedValue(Duration.ofNanos(100_000))
+				.maximumExpectedValue(Duration.ofMinutes(10))
+				.register(registry);
+	}
+
+	private static long nowEpochNanos() {
+		Instant now = Instant.now();
+		return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+	}
+}
@@ -0,0 +1,64 @@
+package com.frank.util.metrics;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+
+/**
+ * The offset lag of a consumer group on a topic, summed over all partitions. Partitions the group has
+ * not committed an offset for yet count from the beginning, like the binder's consumers start there.
+ *
+ * The consumer never subscribes, it does not join the group and takes no partitions from it.
+ */
+class KafkaBacklogProbe implements BacklogProbe {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+	private final String topic;
+	private final KafkaConsumer<byte[], byte[]> consumer;
+
+	KafkaBacklogProbe(String bootstrapServers, String topic, String group) {
+		this.topic = topic;
+
+		Map<String, Object> config = new HashMap<>();
+		config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		config.put(ConsumerConfig.GROUP_ID_CONFIG, group);
+		config.put(ConsumerConfig.CLIENT_ID_CONFIG, group + "-backlog-probe");
+		config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+		this.consumer = new KafkaConsumer<>(config, new ByteArrayDeserializer(), new ByteArrayDeserializer());
+	}
+
+	@Override
+	public long backlog() {
+		List<PartitionInfo> infos = consumer.partitionsFor(topic, TIMEOUT);
+		if (infos == null || infos.isEmpty()) return 0;
+
+		List<TopicPartition> partitions = infos.stream()
+				.map(info -> new TopicPartition(topic, info.partition()))
+				.collect(Collectors.toList());
+		Map<TopicPartition, Long> beginning = consumer.beginningOffsets(partitions, TIMEOUT);
+		Map<TopicPartition, Long> end = consumer.endOffsets(partitions, TIMEOUT);
+
+		long lag = 0;
+		for (TopicPartition partition : partitions) {
+			OffsetAndMetadata committed = consumer.committed(partition, TIMEOUT);
+			long position = committed == null ? beginning.get(partition) : committed.offset();
+			lag += Math.max(0, end.get(partition) - position);
+		}
+		return lag;
+	}
+
+	@Override
+	public void close() {
+		consumer.close(TIMEOUT);
+	}
+}
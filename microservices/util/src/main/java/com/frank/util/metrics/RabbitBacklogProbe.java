@@ -0,0 +1,34 @@
+package com.frank.util.metrics;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+
+/**
+ * The messages ready for delivery in the queues of a consumer group, one per partition when the
+ * partitions are shared dynamically. Messages delivered but not yet acknowledged are not counted.
+ */
+class RabbitBacklogProbe implements BacklogProbe {
+
+	private final RabbitAdmin admin;
+	private final List<String> queues;
+
+	RabbitBacklogProbe(ConnectionFactory connectionFactory, List<String> queues) {
+		this.admin = new RabbitAdmin(connectionFactory);
+		this.queues = queues;
+	}
+
+	@Override
+	public long backlog() {
+		long backlog = 0;
+		for (String queue : queues) {
+			Properties properties = admin.getQueueProperties(queue);
+			if (properties == null) throw new IllegalStateException("No queue named " + queue);
+
+			backlog += ((Number) properties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT)).longValue();
+		}
+		return backlog;
+	}
+}
@@ -0,0 +1,249 @@
+package com.frank.util.partitions;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.cloud.stream.config.ListenerContainerCustomizer;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Shares the partitions of the input binding on RabbitMQ among the live instances of the service, as
+ * registered in Eureka, instead of a fixed instanceIndex per instance.
+ *
+ * Every partition has its own queue, {@code <destination>.<group>-<partition>}, declared with single
+ * active consumer. The instances work out the owners with {@link PartitionAssignment} whenever the
+ * Eureka registry is refreshed and run a listener container for each partition they own, passing the
+ * messages to the listener of the binding. A handoff only starts and stops the containers of the
+ * partitions that move, the others keep consuming. The new owner subscribes before the old one lets
+ * go, the broker keeps delivering to the old owner until its in-flight messages are acknowledged and
+ * its container is stopped, prefetched messages go back to the queue and on to the new owner in
+ * order. Instances briefly disagreeing on the members thus never process a partition twice at the
+ * same time. The partitions are consumed in parallel, each in order. Single active consumer needs
+ * RabbitMQ 3.8 or later, older brokers ignore the queue argument and the owners would compete for the
+ * messages, so the binding refuses to start on them.
+ *
+ * The partition containers take the acknowledge mode of the binding's container, its prefetch and
+ * batching settings. The binding itself must not be partitioned and must not bind its queue, the
+ * partition queues replace it. Rejected messages go to the dead letter queue of the binding. On Kafka
+ * the consumer group protocol assigns the partitions and this class does nothing.
+ */
+@Component
+@ConditionalOnProperty(name = "app.messaging.partitions.dynamic", havingValue = "true")
+public class DynamicPartitionOwnership implements ListenerContainerCustomizer<Object> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DynamicPartitionOwnership.class);
+
+	private final String serviceId;
+	private final String destination;
+	private final String group;
+	private final int partitionCount;
+	private final int prefetch;
+	private final boolean batching;
+	private final int batchSize;
+	private final long receiveTimeout;
+	private final DiscoveryClient discoveryClient;
+	private final ObjectProvider<Registration> registration;
+	// Used until the instance is registered
+	private final String localId = UUID.randomUUID().toString();
+
+	// The container of the binding, its listener is set once the binding is initialized
+	private AbstractMessageListenerContainer container = null;
+	private final Map<Integer, SimpleMessageListenerContainer> partitions = new LinkedHashMap<>();
+	private Set<Integer> owned = Collections.emptySet();
+
+	@Autowired
+	public DynamicPartitionOwnership(
+			DiscoveryClient discoveryClient,
+			ObjectProvider<Registration> registration,
+			MeterRegistry meterRegistry,
+			@Value("${spring.application.name}") String serviceId,
+			@Value("${spring.cloud.stream.bindings.input.destination}") String destination,
+			@Value("${spring.cloud.stream.bindings.input.group}") String group,
+			@Value("${app.messaging.partitions.count}") int partitionCount,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.prefetch:1}") int prefetch,
+			@Value("${spring.cloud.stream.bindings.input.consumer.batch-mode:false}") boolean batchMode,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.enableBatching:false}") boolean enableBatching,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.batchSize:100}") int batchSize,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.receiveTimeout:1000}") long receiveTimeout) {
+		this.discoveryClient = discoveryClient;
+		this.registration = registration;
+		this.serviceId = serviceId;
+		this.destination = destination;
+		this.group = group;
+		this.partitionCount = partitionCount;
+		this.prefetch = prefetch;
+		this.batching = batchMode && enableBatching;
+		this.batchSize = batchSize;
+		this.receiveTimeout = receiveTimeout;
+
+		Gauge.builder("messaging.partitions.owned", this, o -> o.getOwned().size())
+				.description("Partitions of the input binding consumed by this instance")
+				.tag("destination", destination)
+				.register(meterRegistry);
+	}
+
+	@Override
+	public synchronized void configure(Object candidate, String destinationName, String group) {
+		if (!(candidate instanceof AbstractMessageListenerContainer)
+				|| !destination.equals(destinationName) || !this.group.equals(group)) {
+			return;
+		}
+
+		RabbitAdmin admin = new RabbitAdmin(((AbstractMessageListenerContainer) candidate).getConnectionFactory());
+		String version = admin.getRabbitTemplate().execute(channel -> {
+			Object serverVersion = channel.getConnection().getServerProperties().get("version");
+			return serverVersion == null ? null : serverVersion.toString();
+		});
+		if (!supportsSingleActiveConsumer(version)) {
+			throw new IllegalStateException("app.messaging.partitions.dynamic needs single active consumer queues, "
+					+ "RabbitMQ 3.8 or later, the broker is " + version);
+		}
+
+		container = (AbstractMessageListenerContainer) candidate;
+		declarePartitionQueues(admin);
+	}
+
+	public synchronized Set<Integer> getOwned() {
+		return owned;
+	}
+
+	/**
+	 * Until the members are known this instance owns every partition, with single active consumer it
+	 * only gets the partitions no other instance consumes yet.
+	 */
+	@EventListener({ApplicationReadyEvent.class, HeartbeatEvent.class})
+	public synchronized void rebalance() {
+		if (container == null || container.getMessageListener() == null) return;
+
+		List<String> members = members();
+		if (members == null) return;
+
+		Set<Integer> next = PartitionAssignment.owned(selfId(), members, partitionCount);
+		if (next.equals(owned)) return;
+
+		Set<Integer> added = new TreeSet<>(next);
+		added.removeAll(owned);
+		Set<Integer> removed = new TreeSet<>(owned);
+		removed.removeAll(next);
+
+		// Subscribe first, the new queues only deliver once their previous owner has let go
+		added.forEach(this::startPartition);
+		removed.forEach(this::stopPartition);
+
+		LOG.info("Owns partitions {} of {}, took {}, handed off {}", next, destination, added, removed);
+		owned = next;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		new TreeSet<>(partitions.keySet()).forEach(this::stopPartition);
+		owned = Collections.emptySet();
+	}
+
+	private void startPartition(int partition) {
+		SimpleMessageListenerContainer partitionContainer =
+				new SimpleMessageListenerContainer(container.getConnectionFactory());
+		partitionContainer.setQueueNames(queueName(partition));
+		partitionContainer.setMessageListener((MessageListener) container.getMessageListener());
+		partitionContainer.setAcknowledgeMode(container.getAcknowledgeMode());
+		partitionContainer.setPrefetchCount(prefetch);
+		// One consumer keeps the partition in order, rejects go to the dead letter exchange of the queue
+		partitionContainer.setConcurrentConsumers(1);
+		partitionContainer.setDefaultRequeueRejected(false);
+		if (batching) {
+			partitionContainer.setConsumerBatchEnabled(true);
+			partitionContainer.setDeBatchingEnabled(true);
+			partitionContainer.setBatchSize(batchSize);
+			partitionContainer.setReceiveTimeout(receiveTimeout);
+		}
+		partitionContainer.afterPropertiesSet();
+		partitionContainer.start();
+		partitions.put(partition, partitionContainer);
+	}
+
+	// Waits for the in-flight messages, the prefetched ones go back to the queue
+	private void stopPartition(int partition) {
+		SimpleMessageListenerContainer partitionContainer = partitions.remove(partition);
+		if (partitionContainer != null) partitionContainer.destroy();
+	}
+
+	private void declarePartitionQueues(RabbitAdmin admin) {
+		Map<String, Object> arguments = new HashMap<>();
+		arguments.put("x-single-active-consumer", true);
+		// The dead letter exchange and routing key of the binder, rejects end up in the binding's DLQ
+		arguments.put("x-dead-letter-exchange", "DLX");
+		arguments.put("x-dead-letter-routing-key", destination + "." + group);
+
+		for (int partition = 0; partition < partitionCount; partition++) {
+			String queue = queueName(partition);
+			admin.declareQueue(new Queue(queue, true, false, false, arguments));
+			// The routing key of the partition, as sent by a partitioned producer
+			admin.declareBinding(new Binding(queue, Binding.DestinationType.QUEUE, destination,
+					destination + "-" + partition, null));
+		}
+	}
+
+	// The x-single-active-consumer queue argument came with RabbitMQ 3.8
+	static boolean supportsSingleActiveConsumer(String version) {
+		if (version == null) return false;
+		String[] parts = version.split("[.-]");
+		try {
+			int major = Integer.parseInt(parts[0]);
+			int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+			return major > 3 || (major == 3 && minor >= 8);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private String selfId() {
+		Registration self = registration.getIfAvailable();
+		return self == null ? localId : self.getInstanceId();
+	}
+
+	// The ids of the live instances, null if they are not known
+	private List<String> members() {
+		try {
+			return discoveryClient.getInstances(serviceId).stream()
+					.map(ServiceInstance::getInstanceId)
+					.collect(Collectors.toList());
+		} catch (RuntimeException e) {
+			LOG.warn("Keeps partitions {}, failed to read the members of {}: {}", owned, serviceId, e.toString());
+			return null;
+		}
+	}
+
+	private String queueName(int partition) {
+		return destination + "." + group + "-" + partition;
+	}
+}
@@ -0,0 +1,80 @@
+package com.frank.util.partitions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Spreads partitions over the live instances of a service with rendezvous hashing, bounded so no
+ * instance gets more than its share.
+ *
+ * Every partition ranks the instances by a hash of instance id and partition and goes to the first
+ * one with room left. All instances compute the same owners from the same members, no coordination
+ * beyond the membership is needed, and a joining or leaving instance mostly moves only the
+ * partitions it takes or gives up.
+ */
+public final class PartitionAssignment {
+
+	private PartitionAssignment() {
+	}
+
+	/**
+	 * @return the owner of every partition, indexed by partition
+	 */
+	public static List<String> owners(Collection<String> members, int partitionCount) {
+		List<String> sorted = new ArrayList<>(new TreeSet<>(members));
+		if (sorted.isEmpty()) throw new IllegalArgumentException("No members to assign partitions to");
+
+		int capacity = (partitionCount + sorted.size() - 1) / sorted.size();
+		Map<String, Integer> load = new HashMap<>();
+		List<String> owners = new ArrayList<>(partitionCount);
+
+		for (int partition = 0; partition < partitionCount; partition++) {
+			int p = partition;
+			sorted.sort(Comparator.comparingLong((String member) -> hash(member, p)).reversed()
+					.thenComparing(Comparator.naturalOrder()));
+			for (String member : sorted) {
+				if (load.getOrDefault(member, 0) < capacity) {
+					load.merge(member, 1, Integer::sum);
+					owners.add(member);
+					break;
+				}
+			}
+		}
+		return owners;
+	}
+
+	/**
+	 * @return the partitions owned by self, which counts as a member even if it is not in members
+	 */
+	public static Set<Integer> owned(String self, Collection<String> members, int partitionCount) {
+		Set<String> all = new TreeSet<>(members);
+		all.add(self);
+
+		List<String> owners = owners(all, partitionCount);
+		Set<Integer> owned = new TreeSet<>();
+		for (int partition = 0; partition < owners.size(); partition++) {
+			if (owners.get(partition).equals(self)) owned.add(partition);
+		}
+		return owned;
+	}
+
+	// FNV-1a of the id, mixed with the partition by the SplitMix64 finalizer
+	private static long hash(String member, int partition) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : member.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= partition * 0x9e3779b97f4a7c15L;
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		return hash ^ (hash >>> 31);
+	}
+}
@@ -0,0 +1,375 @@
+package com.frank.util.reactive;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import com.frank.util.dlq.KafkaDeadLetterPublisher;
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+import com.frank.util.metrics.EventLatencyRecorder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Builds the functional consumer of the input binding when {@code app.messaging.consumer.mode} is
+ * reactive. The events are applied one at a time in the order they arrive, the next one starts when
+ * the write of the previous one completes.
+ *
+ * The binder pushes messages into the function without regard to demand, so the input channel is
+ * also gated here: at most {@code app.messaging.consumer.prefetch} messages are received and not yet
+ * applied, beyond that the consumer thread of the binder waits. The broker then holds the backlog,
+ * RabbitMQ up to the prefetch of the consumer, Kafka stops polling. On Kafka a wait longer than
+ * max.poll.interval.ms makes the group rebalance.
+ *
+ * A message is acknowledged once its event is applied, so the binder must leave the acknowledgements to
+ * the application: {@code acknowledgeMode: MANUAL} and a {@code prefetch} of at least the prefetch
+ * here on RabbitMQ, {@code autoCommitOffset: false} on Kafka. Failing events are retried with the
+ * maxAttempts, backOffInitialInterval, backOffMaxInterval and backOffMultiplier of the binding, events
+ * rejected as invalid are not retried. Then they are logged and counted as
+ * {@code messaging.reactive.failed}: RabbitMQ messages are rejected to the dead letter queue, Kafka
+ * records are sent to the dead letter topic of the binder before they are acknowledged. A record that
+ * can not be dead lettered is retried every backOffMaxInterval and holds back the messages after it.
+ * {@code messaging.reactive.in.flight} is the number of messages received and not yet applied.
+ *
+ * The function is found by its name, {@value #FUNCTION}: the mode refuses to start unless
+ * {@code spring.cloud.function.definition} is that name and its input is bound to the input binding.
+ */
+@Component
+@GlobalChannelInterceptor(patterns = "input")
+@ConditionalOnProperty(name = "app.messaging.consumer.mode", havingValue = "reactive")
+public class ReactiveConsumer implements ChannelInterceptor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReactiveConsumer.class);
+
+	/**
+	 * The name of the function bean of the services, bound to the input binding.
+	 */
+	public static final String FUNCTION = "processEvents";
+
+	static final String KAFKA_ACKNOWLEDGMENT_HEADER = "kafka_acknowledgment";
+	static final String RABBIT_CHANNEL_HEADER = "amqp_channel";
+	static final String RABBIT_DELIVERY_TAG_HEADER = "amqp_deliveryTag";
+
+	/**
+	 * Sends a record that failed to the dead letter topic, see {@link KafkaDeadLetterPublisher#publish}.
+	 */
+	interface DeadLetters {
+		void publish(byte[] payload, Map<String, Object> headers, Throwable failure) throws Exception;
+
+		default void close() {
+		}
+	}
+
+	private final EventLatencyRecorder latencyRecorder;
+	private final String destination;
+	private final int prefetch;
+	private final int maxAttempts;
+	private final long backOffInitialMs;
+	private final long backOffMaxMs;
+	private final double backOffMultiplier;
+	private final Semaphore permits;
+	private final Counter failed;
+	// Only on Kafka, RabbitMQ dead letters rejected messages itself
+	private final DeadLetters deadLetters;
+	private final AtomicBoolean warnedUnacknowledged = new AtomicBoolean();
+
+	@Autowired
+	public ReactiveConsumer(
+			EventLatencyRecorder latencyRecorder,
+			MeterRegistry registry,
+			@Value("${spring.cloud.stream.bindings.input.destination:input}") String destination,
+			@Value("${spring.cloud.stream.bindings.input.group:}") String group,
+			@Value("${spring.cloud.stream.bindings.input.binder:${spring.cloud.stream.default-binder:rabbit}}")
+				String binder,
+			@Value("${spring.cloud.function.definition:}") String functionDefinition,
+			@Value("${spring.cloud.stream.function.bindings." + FUNCTION + "-in-0:}") String functionBinding,
+			@Value("${app.messaging.consumer.prefetch:32}") int prefetch,
+			@Value("${spring.cloud.stream.bindings.input.consumer.max-attempts:3}") int maxAttempts,
+			@Value("${spring.cloud.stream.bindings.input.consumer.back-off-initial-interval:1000}")
+				long backOffInitialMs,
+			@Value("${spring.cloud.stream.bindings.input.consumer.back-off-max-interval:10000}") long backOffMaxMs,
+			@Value("${spring.cloud.stream.bindings.input.consumer.back-off-multiplier:2.0}")
+				double backOffMultiplier,
+			@Value("${spring.cloud.stream.bindings.input.consumer.batch-mode:false}") boolean batchMode,
+			@Value("${app.messaging.lanes.count:0}") int laneCount,
+			@Value("${app.messaging.retry.enabled:false}") boolean retryEnabled,
+			@Value("${app.cache-invalidation.enabled:false}") boolean cacheInvalidation,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.acknowledge-mode:AUTO}") String rabbitAckMode,
+			@Value("${spring.cloud.stream.rabbit.bindings.input.consumer.prefetch:1}") int rabbitPrefetch,
+			@Value("${spring.cloud.stream.kafka.bindings.input.consumer.auto-commit-offset:true}")
+				boolean kafkaAutoCommit,
+			@Value("${spring.cloud.stream.kafka.bindings.input.consumer.dlq-name:}") String kafkaDlq,
+			@Value("${spring.cloud.stream.kafka.binder.brokers:localhost}") String kafkaBrokers,
+			@Value("${spring.cloud.stream.kafka.binder.default-broker-port:9092}") String kafkaPort) {
+		this(latencyRecorder, registry, destination, prefetch, maxAttempts, backOffInitialMs, backOffMaxMs,
+				backOffMultiplier, deadLetters(binder, kafkaAutoCommit, kafkaBrokers, kafkaPort, destination, group,
+					kafkaDlq));
+
+		List<String> unsupported = new ArrayList<>();
+		if (batchMode) unsupported.add("spring.cloud.stream.bindings.input.consumer.batch-mode");
+		if (laneCount > 0) unsupported.add("app.messaging.lanes.count");
+		if (retryEnabled) unsupported.add("app.messaging.retry.enabled");
+		// Its @EnableBinding turns the functional bindings off
+		if (cacheInvalidation) unsupported.add("app.cache-invalidation.enabled");
+		try {
+			// Without them the binder would bind the input to no function, and nothing would consume it
+			if (!FUNCTION.equals(functionDefinition) || !"input".equals(functionBinding)) {
+				throw new IllegalStateException("The reactive consumer mode needs spring.cloud.function.definition: "
+						+ FUNCTION + " and spring.cloud.stream.function.bindings." + FUNCTION + "-in-0: input, "
+						+ "they are '" + functionDefinition + "' and '" + functionBinding + "'");
+			}
+			if (!"kafka".equals(binder) && !"MANUAL".equalsIgnoreCase(rabbitAckMode)) {
+				throw new IllegalStateException("The reactive consumer mode needs acknowledgeMode: MANUAL on the "
+						+ "RabbitMQ consumer of " + destination);
+			}
+			if (!unsupported.isEmpty()) {
+				throw new IllegalStateException("The reactive consumer mode does not support " + unsupported);
+			}
+		} catch (IllegalStateException e) {
+			close();
+			throw e;
+		}
+
+		if (!"kafka".equals(binder) && rabbitPrefetch < prefetch) {
+			LOG.warn("The prefetch of {} limits the messages in flight to the function to {} instead of {}",
+					destination, rabbitPrefetch, prefetch);
+		}
+		LOG.info("Consumes {} reactively, with a prefetch of {}", destination, prefetch);
+	}
+
+	ReactiveConsumer(EventLatencyRecorder latencyRecorder, MeterRegistry registry, String destination,
+			int prefetch, int maxAttempts, long backOffInitialMs, long backOffMaxMs, double backOffMultiplier,
+			DeadLetters deadLetters) {
+		if (prefetch < 1) throw new IllegalStateException("Invalid app.messaging.consumer.prefetch: " + prefetch);
+
+		this.latencyRecorder = latencyRecorder;
+		this.destination = destination;
+		this.prefetch = prefetch;
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.backOffInitialMs = backOffInitialMs;
+		this.backOffMaxMs = backOffMaxMs;
+		this.backOffMultiplier = backOffMultiplier;
+		this.permits = new Semaphore(prefetch);
+		this.deadLetters = deadLetters;
+
+		this.failed = Counter.builder("messaging.reactive.failed")
+				.description("Events given up after their retries by the reactive consumer")
+				.tag("destination", destination)
+				.register(registry);
+		Gauge.builder("messaging.reactive.in.flight", this, ReactiveConsumer::getInFlight)
+				.description("Messages received by the reactive consumer and not yet applied")
+				.tag("destination", destination)
+				.register(registry);
+	}
+
+	@PreDestroy
+	public void close() {
+		if (deadLetters != null) deadLetters.close();
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageDeliveryException(message, "Interrupted waiting for demand on " + destination);
+		}
+		return message;
+	}
+
+	@Override
+	public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+		// The message never reached the function
+		if (!sent) permits.release();
+	}
+
+	/**
+	 * @param decoder reads the raw payload of a message, which is kept to be dead lettered
+	 * @param apply applies an event and completes once it is written, it is given the callback to
+	 *        record the latency of the event with
+	 * @return the function to bind to the input destination
+	 */
+	public <T> Function<Flux<Message<byte[]>>, Mono<Void>> consumer(Function<byte[], T> decoder,
+			BiFunction<T, Consumer<Long>, Mono<Void>> apply) {
+		return messages -> messages
+				// Still on the consumer thread of the binder, while the receive time is known
+				.map(message -> new Received(message, latencyRecorder.recorder()))
+				.concatMap(received -> Mono.defer(() -> apply.apply(decoder.apply(received.message.getPayload()),
+								received.recordLatency))
+						.retryWhen(this::backOff)
+						.then(Mono.fromRunnable(() -> acknowledge(received.message.getHeaders())))
+						.onErrorResume(e -> reject(received.message, e))
+						.doFinally(signal -> permits.release()), prefetch)
+				.then();
+	}
+
+	// The dead letter topic of the input binding on Kafka, which needs its offsets committed by the application
+	private static DeadLetters deadLetters(String binder, boolean kafkaAutoCommit, String kafkaBrokers,
+			String kafkaPort, String destination, String group, String kafkaDlq) {
+		if (!"kafka".equals(binder)) return null;
+		if (kafkaAutoCommit) {
+			throw new IllegalStateException("The reactive consumer mode needs autoCommitOffset: false on the Kafka "
+					+ "consumer of " + destination);
+		}
+
+		KafkaDeadLetterPublisher publisher = new KafkaDeadLetterPublisher(
+				KafkaDeadLetterPublisher.bootstrapServers(kafkaBrokers, kafkaPort), destination, group, kafkaDlq);
+		return new DeadLetters() {
+			@Override
+			public void publish(byte[] payload, Map<String, Object> headers, Throwable failure) throws Exception {
+				publisher.publish(payload, headers, failure);
+			}
+
+			@Override
+			public void close() {
+				publisher.close();
+			}
+		};
+	}
+
+	private void acknowledge(MessageHeaders headers) {
+		if (headers.get(KAFKA_ACKNOWLEDGMENT_HEADER) != null) {
+			try {
+				KafkaAcks.acknowledge(headers);
+			} catch (RuntimeException e) {
+				// The partition was revoked, its new owner starts after the last committed offset
+				LOG.warn("Failed to acknowledge a record of {}: {}", destination, e.toString());
+			}
+		} else if (headers.get(RABBIT_CHANNEL_HEADER) != null && headers.get(RABBIT_DELIVERY_TAG_HEADER) != null) {
+			RabbitAcks.ack(headers);
+		} else if (warnedUnacknowledged.compareAndSet(false, true)) {
+			// The binder acknowledged the message itself, before it was applied
+			LOG.warn("Messages of {} come without acknowledgement handles, they are acked on receipt", destination);
+		}
+	}
+
+	private Mono<Void> reject(Message<byte[]> message, Throwable failure) {
+		LOG.warn("Gives up an event of {}: {}", destination, failure.toString());
+		MessageHeaders headers = message.getHeaders();
+
+		if (headers.get(KAFKA_ACKNOWLEDGMENT_HEADER) != null) {
+			// Offsets are committed cumulatively, the record must be dead lettered before it is acknowledged
+			return Mono.fromRunnable(() -> deadLetter(message, failure))
+					.subscribeOn(Schedulers.boundedElastic())
+					.retryWhen(failures -> failures.concatMap(e -> {
+						LOG.warn("Retries to dead letter an event of {} in {} ms: {}", destination, backOffMaxMs,
+								e.toString());
+						return Mono.delay(Duration.ofMillis(backOffMaxMs));
+					}))
+					.then(Mono.fromRunnable(() -> {
+						failed.increment();
+						acknowledge(headers);
+					}));
+		}
+
+		return Mono.fromRunnable(() -> {
+			if (headers.get(RABBIT_CHANNEL_HEADER) != null && headers.get(RABBIT_DELIVERY_TAG_HEADER) != null) {
+				RabbitAcks.reject(headers);
+			}
+			failed.increment();
+		});
+	}
+
+	private void deadLetter(Message<byte[]> message, Throwable failure) {
+		if (deadLetters == null) {
+			throw new IllegalStateException("No dead letter topic for the records of " + destination);
+		}
+		try {
+			deadLetters.publish(message.getPayload(), message.getHeaders(), failure);
+		} catch (Exception e) {
+			throw new IllegalStateException("Failed to send a record to the dead letter topic", e);
+		}
+	}
+
+	int getInFlight() {
+		return prefetch - permits.availablePermits();
+	}
+
+	private Flux<Long> backOff(Flux<Throwable> failures) {
+		return failures.index().concatMap(failure -> {
+			long attempt = failure.getT1() + 1;
+			Throwable e = failure.getT2();
+			if (e instanceof InvalidInputException || e instanceof EventProcessingException || attempt >= maxAttempts) {
+				return Mono.error(e);
+			}
+			long delayMs = (long) Math.min(backOffMaxMs, backOffInitialMs * Math.pow(backOffMultiplier, attempt - 1));
+			LOG.debug("Retries an event of {} in {} ms, attempt {} failed: {}", destination, delayMs, attempt,
+					e.toString());
+			return Mono.delay(Duration.ofMillis(delayMs));
+		});
+	}
+
+	private static final class Received {
+		private final Message<byte[]> message;
+		private final Consumer<Long> recordLatency;
+
+		private Received(Message<byte[]> message, Consumer<Long> recordLatency) {
+			this.message = message;
+			this.recordLatency = recordLatency;
+		}
+	}
+
+	// Apart from the other binder's classes, they may be missing on the classpath
+	private static final class KafkaAcks {
+
+		private static void acknowledge(MessageHeaders headers) {
+			headers.get(KAFKA_ACKNOWLEDGMENT_HEADER, org.springframework.kafka.support.Acknowledgment.class)
+					.acknowledge();
+		}
+	}
+
+	private static final class RabbitAcks {
+
+		private static void ack(MessageHeaders headers) {
+			call(headers, (channel, deliveryTag) -> channel.basicAck(deliveryTag, false));
+		}
+
+		// Without requeueing, the queue dead letters the message
+		private static void reject(MessageHeaders headers) {
+			call(headers, (channel, deliveryTag) -> channel.basicNack(deliveryTag, false, false));
+		}
+
+		private interface ChannelCall {
+			void run(com.rabbitmq.client.Channel channel, long deliveryTag) throws IOException;
+		}
+
+		private static void call(MessageHeaders headers, ChannelCall call) {
+			try {
+				call.run((com.rabbitmq.client.Channel) headers.get(RABBIT_CHANNEL_HEADER),
+						(Long) headers.get(RABBIT_DELIVERY_TAG_HEADER));
+			} catch (IOException e) {
+				// The channel is gone, the broker redelivers its unacknowledged messages
+				LOG.warn("Failed to settle a message: {}", e.toString());
+			}
+		}
+	}
+}
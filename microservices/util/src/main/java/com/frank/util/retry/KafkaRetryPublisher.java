@@ -0,0 +1,103 @@
+package com.frank.util.retry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.kafka.support.DefaultKafkaHeaderMapper;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+
+import com.frank.util.dlq.KafkaDeadLetterPublisher;
+
+/**
+ * Retries on Kafka through a retry topic per attempt, {@code <topic>.<group>.retry-<attempt>}. The
+ * record keeps its key and headers and gets the topic and partition it came from and the time it is
+ * due, a {@link KafkaRetryRelay} per retry topic hands it to the input channel once it is due. The
+ * retry topics are created by the broker on first use.
+ */
+class KafkaRetryPublisher implements RetryPublisher {
+
+	static final String TOPIC_HEADER = "kafka_receivedTopic";
+	static final String PARTITION_HEADER = "kafka_receivedPartitionId";
+	static final String KEY_HEADER = "kafka_receivedMessageKey";
+
+	static final String ORIGINAL_TOPIC = "x-retry-topic";
+	static final String ORIGINAL_PARTITION = "x-retry-partition";
+	static final String DUE_AT = "x-retry-due";
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+	private final String bootstrapServers;
+	private final String destination;
+	private final String group;
+	private final long[] delaysMs;
+	private final KafkaProducer<byte[], byte[]> producer;
+	private final KafkaDeadLetterPublisher deadLetters;
+	private final List<KafkaRetryRelay> relays = new ArrayList<>();
+	// Encodes the headers like the binder, which decodes them for the listener
+	private final DefaultKafkaHeaderMapper headerMapper = new DefaultKafkaHeaderMapper();
+
+	KafkaRetryPublisher(String bootstrapServers, String destination, String group, long[] delaysMs,
+			KafkaDeadLetterPublisher deadLetters) {
+		this.bootstrapServers = bootstrapServers;
+		this.destination = destination;
+		this.group = group;
+		this.delaysMs = delaysMs;
+		this.deadLetters = deadLetters;
+
+		Map<String, Object> config = new HashMap<>();
+		config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		config.put(ProducerConfig.CLIENT_ID_CONFIG, group + "-retry");
+		config.put(ProducerConfig.ACKS_CONFIG, "all");
+		this.producer = new KafkaProducer<>(config, new ByteArraySerializer(), new ByteArraySerializer());
+	}
+
+	@Override
+	public synchronized void start(MessageChannel input) {
+		for (int attempt = relays.size() + 1; attempt <= delaysMs.length; attempt++) {
+			relays.add(new KafkaRetryRelay(bootstrapServers, retryTopic(destination, attempt), group, input,
+					deadLetters));
+		}
+	}
+
+	@Override
+	public void publish(byte[] payload, Map<String, Object> headers, int attempt, long delayMs) throws Exception {
+		Object topic = headers.get(TOPIC_HEADER);
+		Object partition = headers.get(PARTITION_HEADER);
+		if (topic == null || partition == null) throw new IllegalStateException("The record names no partition");
+
+		RecordHeaders recordHeaders = new RecordHeaders();
+		headerMapper.fromHeaders(new MessageHeaders(RetryRouter.applicationHeaders(headers)), recordHeaders);
+		recordHeaders.add(ORIGINAL_TOPIC, bytes(topic));
+		recordHeaders.add(ORIGINAL_PARTITION, bytes(partition));
+		recordHeaders.add(DUE_AT, bytes(System.currentTimeMillis() + delayMs));
+
+		Object key = headers.get(KEY_HEADER);
+		producer.send(new ProducerRecord<>(retryTopic(topic.toString(), attempt), null,
+				key instanceof byte[] ? (byte[]) key : null, payload, recordHeaders)).get();
+	}
+
+	@Override
+	public synchronized void close() {
+		relays.forEach(KafkaRetryRelay::close);
+		producer.close(TIMEOUT);
+		deadLetters.close();
+	}
+
+	private String retryTopic(String topic, int attempt) {
+		return topic + "." + group + ".retry-" + attempt;
+	}
+
+	private static byte[] bytes(Object value) {
+		return value.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,192 @@
+package com.frank.util.retry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.support.DefaultKafkaHeaderMapper;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.frank.util.dlq.KafkaDeadLetterPublisher;
+
+/**
+ * Hands the records of a retry topic to the input channel of this instance once they are due, as if
+ * they came from the topic and partition they failed on. They do not go back to that topic, the
+ * other consumer groups of the destination never see them again. A partition whose next record is
+ * not due yet is paused until it is, the consumer keeps polling and stays in its group meanwhile. The
+ * relays of all instances of a service share the partitions of the retry topic in the group
+ * {@code <group>.retry}.
+ *
+ * A record failing again goes to the next retry topic through the {@link RetryRouter} of the
+ * channel. After its last retry the failure reaches the relay, which sends the record to the dead
+ * letter topic of the group. Offsets are committed once the records before them are processed or
+ * dead lettered, a relay that fails in between delivers them again and the consumer drops them by
+ * their eventId. A record that can not be dead lettered is tried again after a pause.
+ */
+class KafkaRetryRelay implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(KafkaRetryRelay.class);
+
+	private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+	private static final long DEAD_LETTER_BACK_OFF_MS = 5000;
+
+	private final String retryTopic;
+	private final KafkaConsumer<byte[], byte[]> consumer;
+	private final MessageChannel input;
+	private final KafkaDeadLetterPublisher deadLetters;
+	// Decodes the headers encoded by KafkaRetryPublisher
+	private final DefaultKafkaHeaderMapper headerMapper = new DefaultKafkaHeaderMapper();
+	private final Thread thread;
+
+	private final Map<TopicPartition, Long> pausedUntil = new HashMap<>();
+	private volatile boolean running = true;
+
+	KafkaRetryRelay(String bootstrapServers, String retryTopic, String group, MessageChannel input,
+			KafkaDeadLetterPublisher deadLetters) {
+		this.retryTopic = retryTopic;
+		this.input = input;
+		this.deadLetters = deadLetters;
+
+		Map<String, Object> config = new HashMap<>();
+		config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		config.put(ConsumerConfig.GROUP_ID_CONFIG, group + ".retry");
+		config.put(ConsumerConfig.CLIENT_ID_CONFIG, retryTopic + "-relay");
+		config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+		config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+		this.consumer = new KafkaConsumer<>(config, new ByteArrayDeserializer(), new ByteArrayDeserializer());
+
+		this.thread = new Thread(this::run, "retry-relay-" + retryTopic);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		consumer.wakeup();
+		try {
+			thread.join(10_000);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		try {
+			consumer.subscribe(Collections.singletonList(retryTopic));
+			while (running) {
+				resumeDuePartitions();
+				relay(consumer.poll(POLL_TIMEOUT));
+			}
+		} catch (WakeupException e) {
+			// Closed
+		} catch (RuntimeException e) {
+			LOG.error("Stops relaying {}", retryTopic, e);
+		} finally {
+			consumer.close();
+		}
+	}
+
+	private void relay(ConsumerRecords<byte[], byte[]> records) {
+		Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+		long now = System.currentTimeMillis();
+
+		for (TopicPartition partition : records.partitions()) {
+			Iterator<ConsumerRecord<byte[], byte[]>> iterator = records.records(partition).iterator();
+			while (iterator.hasNext()) {
+				ConsumerRecord<byte[], byte[]> record = iterator.next();
+				long dueAt = longHeader(record, KafkaRetryPublisher.DUE_AT, now);
+				if (dueAt > now) {
+					// The records after it are due later, they are polled again once the partition resumes
+					consumer.seek(partition, record.offset());
+					consumer.pause(Collections.singleton(partition));
+					pausedUntil.put(partition, dueAt);
+					break;
+				}
+
+				if (!deliver(record)) {
+					consumer.seek(partition, record.offset());
+					consumer.pause(Collections.singleton(partition));
+					pausedUntil.put(partition, now + DEAD_LETTER_BACK_OFF_MS);
+					break;
+				}
+				offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+			}
+		}
+
+		if (!offsets.isEmpty()) consumer.commitSync(offsets);
+	}
+
+	// False if the record was neither processed nor dead lettered
+	private boolean deliver(ConsumerRecord<byte[], byte[]> record) {
+		Map<String, Object> headers = new HashMap<>();
+		headerMapper.toHeaders(record.headers(), headers);
+		String topic = stringHeader(record, KafkaRetryPublisher.ORIGINAL_TOPIC);
+		long partition = longHeader(record, KafkaRetryPublisher.ORIGINAL_PARTITION, -1);
+		if (topic != null) headers.put(KafkaRetryPublisher.TOPIC_HEADER, topic);
+		if (partition >= 0) headers.put(KafkaRetryPublisher.PARTITION_HEADER, (int) partition);
+		if (record.key() != null) headers.put(KafkaRetryPublisher.KEY_HEADER, record.key());
+
+		try {
+			input.send(MessageBuilder.createMessage(record.value(), new MessageHeaders(headers)));
+			return true;
+		} catch (RuntimeException e) {
+			Throwable failure = e instanceof MessagingException && e.getCause() != null ? e.getCause() : e;
+			try {
+				deadLetters.publish(record.value(), headers, failure);
+				LOG.warn("Sent an event of {} to the dead letter topic after its last retry: {}", retryTopic,
+						failure.toString());
+				return true;
+			} catch (Exception dlqFailure) {
+				LOG.error("Failed to send an event of {} to the dead letter topic, tries again", retryTopic,
+						dlqFailure);
+				return false;
+			}
+		}
+	}
+
+	private void resumeDuePartitions() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<TopicPartition, Long>> iterator = pausedUntil.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<TopicPartition, Long> entry = iterator.next();
+			if (entry.getValue() <= now || !consumer.assignment().contains(entry.getKey())) {
+				if (consumer.assignment().contains(entry.getKey())) {
+					consumer.resume(Collections.singleton(entry.getKey()));
+				}
+				iterator.remove();
+			}
+		}
+	}
+
+	private static String stringHeader(ConsumerRecord<?, ?> record, String name) {
+		Header header = record.headers().lastHeader(name);
+		return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+	}
+
+	private static long longHeader(ConsumerRecord<?, ?> record, String name, long defaultValue) {
+		String value = stringHeader(record, name);
+		try {
+			return value == null ? defaultValue : Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+}
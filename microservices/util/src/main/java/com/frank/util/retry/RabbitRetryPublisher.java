@@ -0,0 +1,57 @@
+package com.frank.util.retry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+/**
+ * Retries on RabbitMQ through a delay queue per consumer queue and attempt,
+ * {@code <queue>.retry-<attempt>}. The queue has no consumer, its messages expire after the delay of
+ * the attempt and are dead lettered through the default exchange straight back to the consumer
+ * queue, other groups of the destination do not see them again. All messages of a delay queue have
+ * the same time to live, they expire in the order they were sent.
+ */
+class RabbitRetryPublisher implements RetryPublisher {
+
+	static final String CONSUMER_QUEUE_HEADER = "amqp_consumerQueue";
+
+	private final RabbitAdmin admin;
+	private final RabbitTemplate template;
+	private final Set<String> declared = ConcurrentHashMap.newKeySet();
+
+	RabbitRetryPublisher(ConnectionFactory connectionFactory) {
+		this.admin = new RabbitAdmin(connectionFactory);
+		this.template = new RabbitTemplate(connectionFactory);
+	}
+
+	@Override
+	public void publish(byte[] payload, Map<String, Object> headers, int attempt, long delayMs) {
+		Object consumerQueue = headers.get(CONSUMER_QUEUE_HEADER);
+		if (consumerQueue == null) throw new IllegalStateException("The message names no consumer queue");
+
+		String retryQueue = consumerQueue + ".retry-" + attempt;
+		if (!declared.contains(retryQueue)) {
+			Map<String, Object> arguments = new HashMap<>();
+			arguments.put("x-message-ttl", delayMs);
+			arguments.put("x-dead-letter-exchange", "");
+			arguments.put("x-dead-letter-routing-key", consumerQueue);
+			admin.declareQueue(new Queue(retryQueue, true, false, false, arguments));
+			declared.add(retryQueue);
+		}
+
+		MessageProperties properties = new MessageProperties();
+		RetryRouter.applicationHeaders(headers).forEach(properties::setHeader);
+		Object contentType = headers.get(RetryRouter.CONTENT_TYPE_HEADER);
+		if (contentType != null) properties.setContentType(contentType.toString());
+
+		template.send("", retryQueue, new Message(payload, properties));
+	}
+}
@@ -0,0 +1,31 @@
+package com.frank.util.retry;
+
+import java.util.Map;
+
+import org.springframework.messaging.MessageChannel;
+
+/**
+ * Sends a failed message to the retry destination of an attempt, from where it returns to the
+ * consumer once the delay of the attempt has passed.
+ */
+interface RetryPublisher extends AutoCloseable {
+
+	/**
+	 * Starts returning the due messages, called once the input channel is ready.
+	 */
+	default void start(MessageChannel input) {
+	}
+
+	/**
+	 * @param payload the payload as received, before conversion
+	 * @param headers the headers of the message as received, the headers of the binder included
+	 * @param attempt the attempt the message is retried for, from 1
+	 * @param delayMs the delay before the attempt
+	 * @throws Exception if the message can not be sent
+	 */
+	void publish(byte[] payload, Map<String, Object> headers, int attempt, long delayMs) throws Exception;
+
+	@Override
+	default void close() {
+	}
+}
@@ -0,0 +1,212 @@
+package com.frank.util.retry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import com.frank.util.dlq.KafkaDeadLetterPublisher;
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Retries failed events on the side instead of on the consumer thread. An event failing on attempt
+ * n is sent to the retry destination of attempt n + 1, the message is acknowledged and the consumer
+ * moves on. The retry destination returns it to the consumer group after the delay of the attempt,
+ * {@code app.messaging.retry.delays-ms} lists one delay per retry: on RabbitMQ the delay queue dead
+ * letters it to the queue of the group, on Kafka a {@link KafkaRetryRelay} of the group hands it to
+ * the input channel of an instance. The other groups of the destination do not see it again. Once
+ * the retries are used up the message goes to the dead letter queue of the binding, events rejected
+ * as invalid go there at once, they fail the same way on every attempt.
+ *
+ * The received message is kept per thread as it enters the input channel, the listener wraps its
+ * processing with {@link #guard} on the same thread.
+ *
+ * Retries give up the order per key: a retried event returns behind later events of its partition,
+ * the events of its product after it are applied first and the retried one may then overwrite them.
+ * Retries are therefore refused together with {@code app.messaging.lanes}, which keep that order.
+ */
+@Component
+@GlobalChannelInterceptor(patterns = "input")
+public class RetryRouter implements ChannelInterceptor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RetryRouter.class);
+
+	static final String ATTEMPT_HEADER = "x-retry-attempt";
+	static final String CONTENT_TYPE_HEADER = "contentType";
+
+	private final String destination;
+	private final long[] delaysMs;
+	private final RetryPublisher publisher;
+	private final MeterRegistry registry;
+
+	private final ThreadLocal<Message<?>> received = new ThreadLocal<>();
+
+	@Autowired
+	public RetryRouter(
+			MeterRegistry registry,
+			BeanFactory beanFactory,
+			@Value("${app.messaging.retry.enabled:false}") boolean enabled,
+			@Value("${app.messaging.retry.delays-ms:1000,10000,60000}") long[] delaysMs,
+			@Value("${app.messaging.lanes.count:0}") int laneCount,
+			@Value("${spring.cloud.stream.bindings.input.destination:input}") String destination,
+			@Value("${spring.cloud.stream.bindings.input.group:}") String group,
+			@Value("${spring.cloud.stream.bindings.input.binder:${spring.cloud.stream.default-binder:rabbit}}")
+				String binder,
+			@Value("${spring.cloud.stream.kafka.bindings.input.consumer.dlq-name:}") String kafkaDlq,
+			@Value("${spring.cloud.stream.kafka.binder.brokers:localhost}") String kafkaBrokers,
+			@Value("${spring.cloud.stream.kafka.binder.default-broker-port:9092}") String kafkaPort) {
+		this(registry, destination, delaysMs, enabled
+				? publisher(beanFactory, binder, destination, group, delaysMs, laneCount, kafkaDlq, kafkaBrokers,
+						kafkaPort)
+				: null);
+		if (enabled) {
+			LOG.info("Retries failed events of {} after {} ms", destination, Arrays.toString(delaysMs));
+		}
+	}
+
+	RetryRouter(MeterRegistry registry, String destination, long[] delaysMs, RetryPublisher publisher) {
+		this.registry = registry;
+		this.destination = destination;
+		this.delaysMs = delaysMs;
+		this.publisher = publisher;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start(ApplicationReadyEvent event) {
+		if (publisher != null) publisher.start(event.getApplicationContext().getBean("input", MessageChannel.class));
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		if (publisher != null) received.set(message);
+		return message;
+	}
+
+	@Override
+	public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+		received.remove();
+	}
+
+	/**
+	 * Wraps the processing of the message received on this thread, a failure sends the message to its
+	 * next retry destination instead of failing the task. The task may run on another thread.
+	 */
+	public Runnable guard(Runnable task) {
+		Message<?> message = received.get();
+		if (publisher == null || message == null || !(message.getPayload() instanceof byte[])) return task;
+
+		return () -> {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				if (!retry(message, e)) throw e;
+			}
+		};
+	}
+
+	@PreDestroy
+	public void close() {
+		if (publisher != null) publisher.close();
+	}
+
+	// True if the message was sent to a retry destination
+	boolean retry(Message<?> message, RuntimeException failure) {
+		if (failure instanceof InvalidInputException || failure instanceof EventProcessingException) return false;
+
+		int attempt = attempt(message.getHeaders().get(ATTEMPT_HEADER)) + 1;
+		if (attempt > delaysMs.length) {
+			LOG.warn("Gives up an event of {} after {} retries: {}", destination, delaysMs.length, failure.toString());
+			return false;
+		}
+
+		Map<String, Object> headers = new LinkedHashMap<>(message.getHeaders());
+		headers.put(ATTEMPT_HEADER, attempt);
+		try {
+			publisher.publish((byte[]) message.getPayload(), headers, attempt, delaysMs[attempt - 1]);
+		} catch (Exception e) {
+			LOG.error("Failed to send an event of {} to retry {}", destination, attempt, e);
+			return false;
+		}
+
+		LOG.warn("Retries an event of {} in {} ms, retry {} of {}: {}", destination, delaysMs[attempt - 1],
+				attempt, delaysMs.length, failure.toString());
+		Counter.builder("messaging.retry.routed")
+				.description("Failed events sent to a retry destination")
+				.tag("destination", destination)
+				.tag("attempt", String.valueOf(attempt))
+				.register(registry)
+				.increment();
+		return true;
+	}
+
+	/**
+	 * @return the headers to pass on with a retried message, those set by the broker and binder on
+	 *         receipt are left out
+	 */
+	static Map<String, Object> applicationHeaders(Map<String, Object> headers) {
+		Map<String, Object> application = new LinkedHashMap<>();
+		headers.forEach((name, value) -> {
+			if (name.startsWith("amqp_") || name.startsWith("kafka_") || name.startsWith("x-death")
+					|| name.startsWith("x-first-death") || name.startsWith("x-retry-")
+					|| MessageHeaders.ID.equals(name) || MessageHeaders.TIMESTAMP.equals(name)
+					|| "deliveryAttempt".equals(name)) {
+				return;
+			}
+			if (value instanceof MimeType) value = value.toString();
+			if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+				application.put(name, value);
+			}
+		});
+		if (headers.containsKey(ATTEMPT_HEADER)) application.put(ATTEMPT_HEADER, headers.get(ATTEMPT_HEADER));
+		return application;
+	}
+
+	// The attempt that failed, 0 for the first delivery
+	private static int attempt(Object header) {
+		if (header instanceof Number) return ((Number) header).intValue();
+		if (header instanceof byte[]) header = new String((byte[]) header, StandardCharsets.UTF_8);
+		try {
+			return header == null ? 0 : Integer.parseInt(header.toString().trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static RetryPublisher publisher(BeanFactory beanFactory, String binder, String destination,
+			String group, long[] delaysMs, int laneCount, String kafkaDlq, String kafkaBrokers, String kafkaPort) {
+		if (group.isEmpty()) throw new IllegalStateException("app.messaging.retry needs a consumer group");
+		if (laneCount > 0) {
+			throw new IllegalStateException("app.messaging.retry can not be used with app.messaging.lanes, "
+					+ "retried events lose the order per key the lanes keep");
+		}
+
+		if ("kafka".equals(binder)) {
+			String servers = KafkaDeadLetterPublisher.bootstrapServers(kafkaBrokers, kafkaPort);
+			return new KafkaRetryPublisher(servers, destination, group, delaysMs,
+					new KafkaDeadLetterPublisher(servers, destination, group, kafkaDlq));
+		}
+		return new RabbitRetryPublisher(beanFactory.getBean(ConnectionFactory.class));
+	}
+}
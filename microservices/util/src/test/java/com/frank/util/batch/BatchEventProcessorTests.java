@@ -0,0 +1,68 @@
+package com.frank.util.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.frank.util.dedupe.DedupeStore;
+import com.frank.util.exceptions.EventProcessingException;
+import com.frank.util.exceptions.InvalidInputException;
+import com.frank.util.metrics.EventLatencyRecorder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BatchEventProcessorTests {
+
+	// The payloads are the event ids, "invalid:.." and "failed:.." events fail to be written
+	private final List<List<String>> written = new ArrayList<>();
+
+	private final DedupeStore dedupeStore = new DedupeStore(100, 60000, 1000, 0.01, false);
+	private final EventLatencyRecorder latencyRecorder = new EventLatencyRecorder(new SimpleMeterRegistry(),
+			"products", false, 0);
+
+	private final BatchEventProcessor<String> processor = new BatchEventProcessor<>(
+		batch -> {
+			written.add(new ArrayList<>(batch));
+			List<RuntimeException> errors = new ArrayList<>(Collections.nCopies(batch.size(), null));
+			for (int i = 0; i < batch.size(); i++) {
+				if (batch.get(i).startsWith("invalid")) errors.set(i, new InvalidInputException(batch.get(i)));
+				if (batch.get(i).startsWith("failed")) errors.set(i, new IllegalStateException(batch.get(i)));
+			}
+			return errors;
+		},
+		payloads -> payloads.stream().map(String::valueOf).collect(Collectors.toList()),
+		eventId -> eventId, eventId -> null, dedupeStore, latencyRecorder);
+
+	@Test
+	public void writesTheBatchOnceAndSkipsDuplicates() {
+		processor.process(Arrays.asList("1", "2"));
+		processor.process(Arrays.asList("2", "3"));
+
+		assertThat(written).containsExactly(Arrays.asList("1", "2"), Arrays.asList("3"));
+		assertEquals(3, latencyRecorder.getApplied());
+	}
+
+	@Test
+	public void skipsInvalidEvents() {
+		processor.process(Arrays.asList("1", "invalid:2", "3"));
+
+		assertEquals(2, latencyRecorder.getApplied());
+		assertThat(dedupeStore.isDuplicate("invalid:2")).isFalse();
+	}
+
+	@Test
+	public void failsTheDeliveryAndRedeliversOnlyTheUnwrittenEvents() {
+		assertThrows(EventProcessingException.class, () -> processor.process(Arrays.asList("1", "failed:2")));
+
+		processor.process(Arrays.asList("1", "3"));
+		assertThat(written.get(1)).containsExactly("3");
+	}
+}
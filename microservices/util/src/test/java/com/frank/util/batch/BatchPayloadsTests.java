@@ -0,0 +1,51 @@
+package com.frank.util.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frank.util.exceptions.EventProcessingException;
+
+public class BatchPayloadsTests {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final JavaType type = mapper.getTypeFactory().constructMapType(Map.class, String.class, Integer.class);
+
+	@Test
+	public void decodesEveryPayloadType() {
+		List<Map<String, Integer>> decoded = BatchPayloads.decode(Arrays.asList(
+				"{\"id\":1}",
+				"{\"id\":2}".getBytes(StandardCharsets.UTF_8),
+				Collections.singletonMap("id", 3)), mapper, type);
+
+		assertEquals(Arrays.asList(1, 2, 3), Arrays.asList(
+				decoded.get(0).get("id"), decoded.get(1).get("id"), decoded.get(2).get("id")));
+	}
+
+	@Test
+	public void decodesBinaryPayloadsWithTheBinaryReader() {
+		byte[] binary = new byte[] {(byte) 0xE7, 4};
+		List<Map<String, Integer>> decoded = BatchPayloads.decode(Arrays.asList(
+				binary,
+				"{\"id\":2}".getBytes(StandardCharsets.UTF_8)), mapper, type,
+				bytes -> bytes[0] == (byte) 0xE7, bytes -> Collections.singletonMap("id", (int) bytes[1]));
+
+		assertEquals(4, decoded.get(0).get("id"));
+		assertEquals(2, decoded.get(1).get("id"));
+	}
+
+	@Test
+	public void failsOnInvalidJson() {
+		assertThrows(EventProcessingException.class,
+				() -> BatchPayloads.decode(Collections.singletonList("{id"), mapper, type));
+	}
+}
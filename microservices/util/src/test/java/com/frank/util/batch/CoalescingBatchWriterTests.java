@@ -0,0 +1,69 @@
+package com.frank.util.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CoalescingBatchWriterTests {
+
+	// "c:<group>:<item>:<version>" upserts an item, "d:<group>" removes the group, "u:<group>" is not coalesced
+	private final List<List<String>> written = new ArrayList<>();
+
+	private final CoalescingBatchWriter<String> writer = new CoalescingBatchWriter<>(
+		batch -> {
+			written.add(new ArrayList<>(batch));
+			List<RuntimeException> errors = new ArrayList<>(Collections.nCopies(batch.size(), null));
+			for (int i = 0; i < batch.size(); i++) {
+				if (batch.get(i).endsWith(":bad")) errors.set(i, new IllegalStateException(batch.get(i)));
+			}
+			return errors;
+		},
+		s -> s.split(":")[1],
+		s -> s.startsWith("d") ? null : s.startsWith("u") ? CoalescingBatchWriter.NOT_COALESCED : s.split(":")[2]);
+
+	@Test
+	public void deleteDropsEarlierEventsOfItsGroup() {
+		writer.write(Arrays.asList("c:1:1:a", "c:2:1:a", "c:1:2:a", "d:1", "c:1:3:a"));
+
+		assertEquals(Arrays.asList("c:2:1:a", "d:1", "c:1:3:a"), written.get(0));
+		assertEquals(5, writer.getReceived());
+		assertEquals(2, writer.getSaved());
+	}
+
+	@Test
+	public void repeatedCreateKeepsTheLatest() {
+		writer.write(Arrays.asList("c:1:1:a", "c:1:2:a", "c:1:1:b", "d:2", "d:2"));
+
+		assertEquals(Arrays.asList("c:1:2:a", "c:1:1:b", "d:2"), written.get(0));
+		assertEquals(2, writer.getSaved());
+	}
+
+	@Test
+	public void droppedItemsGetTheResultOfTheirReplacement() {
+		List<RuntimeException> errors = writer.write(Arrays.asList("c:1:1:a", "c:1:1:bad", "c:2:1:a"));
+
+		assertEquals(Arrays.asList("c:1:1:bad", "c:2:1:a"), written.get(0));
+		assertEquals("c:1:1:bad", errors.get(0).getMessage());
+		assertEquals("c:1:1:bad", errors.get(1).getMessage());
+		assertNull(errors.get(2));
+	}
+
+	@Test
+	public void nothingIsCoalescedAcrossAnUpdate() {
+		List<RuntimeException> errors = writer.write(Arrays.asList("c:1:1:a", "u:1:bad", "c:1:1:b", "c:2:1:a",
+				"u:2", "d:2"));
+
+		// Written as received, the CREATEs keep their own results around the UPDATE
+		assertEquals(Arrays.asList("c:1:1:a", "u:1:bad", "c:1:1:b", "c:2:1:a", "u:2", "d:2"), written.get(0));
+		assertEquals(0, writer.getSaved());
+		assertNull(errors.get(0));
+		assertEquals("u:1:bad", errors.get(1).getMessage());
+		assertNull(errors.get(2));
+	}
+}
@@ -0,0 +1,63 @@
+package com.frank.util.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class EventBatchWriterTests {
+
+	// "c:<group>:<item>" upserts an item, "d:<group>" removes the group, a trailing ":bad" fails
+	private static class RecordingWriter extends EventBatchWriter<String> {
+
+		private final List<String> applied = new ArrayList<>();
+
+		private RecordingWriter(MeterRegistry registry, boolean coalesce) {
+			super("test", registry, coalesce, s -> s.split(":")[1], s -> s.startsWith("d") ? null : s.split(":")[2]);
+		}
+
+		@Override
+		protected List<RuntimeException> writeAll(List<String> events) {
+			List<RuntimeException> errors = new ArrayList<>(Collections.nCopies(events.size(), null));
+			for (int i = 0; i < events.size(); i++) {
+				if (events.get(i).endsWith(":bad")) errors.set(i, new IllegalStateException(events.get(i)));
+			}
+			return errors;
+		}
+
+		@Override
+		protected void onApplied(String event) {
+			applied.add(event);
+		}
+	}
+
+	@Test
+	public void passesTheAppliedEventsInBatchOrder() {
+		RecordingWriter writer = new RecordingWriter(new SimpleMeterRegistry(), false);
+
+		writer.write(Arrays.asList("c:1:1", "c:2:1:bad", "d:1", "c:1:2"));
+
+		assertEquals(Arrays.asList("c:1:1", "d:1", "c:1:2"), writer.applied);
+	}
+
+	@Test
+	public void passesCoalescedEventsWithTheResultOfTheirReplacement() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		RecordingWriter writer = new RecordingWriter(registry, true);
+
+		writer.write(Arrays.asList("c:1:1", "c:2:1", "d:1", "c:2:2:bad", "d:2"));
+
+		assertEquals(Arrays.asList("c:1:1", "c:2:1", "d:1", "c:2:2:bad", "d:2"), writer.applied);
+		assertEquals(5, registry.get("messaging.coalesce.received").tag("destination", "test")
+				.functionCounter().count());
+		assertEquals(3, registry.get("messaging.coalesce.saved").tag("destination", "test")
+				.functionCounter().count());
+	}
+}
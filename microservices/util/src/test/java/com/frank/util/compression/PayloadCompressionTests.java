@@ -0,0 +1,62 @@
+package com.frank.util.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class PayloadCompressionTests {
+
+	@Test
+	public void roundTrip() {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 50; i++) {
+			json.append("{\"productId\":1,\"reviewId\":").append(i)
+				.append(",\"author\":\"Author\",\"content\":\"Content\"},");
+		}
+		byte[] payload = json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+
+		byte[] compressed = PayloadCompression.compress(payload);
+		assertTrue(PayloadCompression.isCompressed(compressed));
+		assertTrue(compressed.length * 4 < payload.length, compressed.length + " of " + payload.length + " bytes");
+		assertArrayEquals(payload, PayloadCompression.decompress(compressed));
+
+		assertArrayEquals(new byte[0], PayloadCompression.decompress(PayloadCompression.compress(new byte[0])));
+	}
+
+	@Test
+	public void leavesOtherPayloadsAlone() {
+		byte[] json = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+		assertFalse(PayloadCompression.isCompressed(json));
+		assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(json));
+	}
+
+	@Test
+	public void rejectsMalformedPayloads() {
+		byte[] compressed = PayloadCompression.compress(
+				"some text, some text, some text".getBytes(StandardCharsets.UTF_8));
+
+		byte[] truncated = new byte[compressed.length - 2];
+		System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+		assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(truncated));
+
+		compressed[1] = (byte) (PayloadCompression.VERSION + 1);
+		assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(compressed));
+	}
+
+	@Test
+	public void rejectsPayloadsAboveTheMaximumLength() {
+		byte[] payload = new byte[1000];
+		byte[] compressed = PayloadCompression.compress(payload);
+		assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(compressed, 999));
+		assertArrayEquals(payload, PayloadCompression.decompress(compressed, 1000));
+
+		// A length of almost 2 GB in the header, rejected before it is allocated
+		compressed[2] = 0x7f;
+		assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(compressed));
+	}
+}
@@ -0,0 +1,75 @@
+package com.frank.util.dedupe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class DedupeStoreTests {
+
+	private final AtomicLong now = new AtomicLong(0);
+
+	@Test
+	public void recordedEventsAreDuplicates() {
+		DedupeStore store = new DedupeStore(10, 1000, 1000, 0.01, false, now::get);
+
+		assertEquals(DedupeStore.Result.NEW, store.check("a"));
+		store.record("a");
+
+		assertEquals(DedupeStore.Result.DUPLICATE, store.check("a"));
+		assertTrue(store.isDuplicate("a"));
+		assertFalse(store.isDuplicate("b"));
+		assertFalse(store.isDuplicate(null));
+	}
+
+	@Test
+	public void evictedEventsAreProbableDuplicates() {
+		DedupeStore store = new DedupeStore(2, 1000, 1000, 0.01, true, now::get);
+		store.record("a");
+		store.record("b");
+		store.record("c");
+
+		// Out of the exact set but still in the Bloom filter
+		assertEquals(DedupeStore.Result.PROBABLE_DUPLICATE, store.check("a"));
+		assertTrue(store.isDuplicate("a"));
+	}
+
+	@Test
+	public void withoutTrustBloomOnlyTheExactSetIsKept() {
+		DedupeStore store = new DedupeStore(2, 1000, 1000, 0.01, false, now::get);
+		store.record("a");
+		store.record("b");
+		store.record("c");
+
+		assertEquals(DedupeStore.Result.NEW, store.check("a"));
+		assertFalse(store.isDuplicate("a"));
+		assertTrue(store.isDuplicate("c"));
+	}
+
+	@Test
+	public void eventsExpireAfterTwoWindows() {
+		DedupeStore store = new DedupeStore(10, 1000, 1000, 0.01, true, now::get);
+		store.record("a");
+
+		now.set(1500);
+		assertEquals(DedupeStore.Result.PROBABLE_DUPLICATE, store.check("a"));
+
+		now.set(2500);
+		assertEquals(DedupeStore.Result.NEW, store.check("a"));
+	}
+
+	@Test
+	public void freshEventsStayNewBeyondTheExpectedEvents() {
+		DedupeStore store = new DedupeStore(10, 1000, 1000, 0.000001, true, now::get);
+		for (int i = 0; i < 5000; i++) store.record("recorded-" + i);
+
+		// The filters rotate by count within the window, they never fill up
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(DedupeStore.Result.NEW, store.check("fresh-" + i));
+		}
+		assertEquals(DedupeStore.Result.PROBABLE_DUPLICATE, store.check("recorded-4900"));
+	}
+}
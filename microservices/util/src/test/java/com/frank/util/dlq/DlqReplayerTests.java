@@ -0,0 +1,162 @@
+package com.frank.util.dlq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class DlqReplayerTests {
+
+	private static class FakeSource implements DlqSource {
+		private final Deque<String> queue = new ArrayDeque<>();
+		private final List<String> replayed = new ArrayList<>();
+		private final List<String> kept = new ArrayList<>();
+		private boolean committed = false;
+
+		private FakeSource(String... messages) {
+			queue.addAll(Arrays.asList(messages));
+		}
+
+		@Override
+		public DlqMessage next() {
+			String message = queue.poll();
+			return message == null ? null : new DlqMessage(message.getBytes(StandardCharsets.UTF_8), message);
+		}
+
+		@Override
+		public void replay(DlqMessage message) {
+			if (message.handle.toString().contains("broken")) throw new IllegalStateException("Broker down");
+			replayed.add((String) message.handle);
+		}
+
+		@Override
+		public void keep(DlqMessage message) {
+			kept.add((String) message.handle);
+		}
+
+		@Override
+		public void commit() {
+			committed = true;
+		}
+	}
+
+	// Messages are "<eventType>:<key>"
+	private static final DlqEventReader READER = payload -> {
+		String[] parts = new String(payload, StandardCharsets.UTF_8).split(":");
+		return new DlqEventReader.Summary(parts[0], Integer.valueOf(parts[1]));
+	};
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	public void replaysAllMessages() throws Exception {
+		FakeSource source = new FakeSource("CREATE:1", "DELETE:2", "CREATE:3");
+		Map<String, Object> status = replay(source, null, null, null, null);
+
+		assertEquals("done", status.get("state"));
+		assertEquals(3L, status.get("replayed"));
+		assertThat(source.replayed).containsExactly("CREATE:1", "DELETE:2", "CREATE:3");
+		assertThat(source.committed).isTrue();
+		assertEquals(3, registry.get("messaging.dlq.replay").tag("outcome", "replayed").counter().count());
+	}
+
+	@Test
+	public void filtersByEventTypeAndKey() throws Exception {
+		FakeSource source = new FakeSource("CREATE:1", "DELETE:1", "CREATE:2", "DELETE:1");
+		Map<String, Object> status = replay(source, null, "delete", "1", null);
+
+		assertThat(source.replayed).containsExactly("DELETE:1", "DELETE:1");
+		assertThat(source.kept).containsExactly("CREATE:1", "CREATE:2");
+		assertEquals(2L, status.get("skipped"));
+		// A filtered replay leaves the skipped messages for the next one
+		assertThat(source.committed).isFalse();
+	}
+
+	@Test
+	public void stopsAtTheLimit() throws Exception {
+		FakeSource source = new FakeSource("CREATE:1", "CREATE:2", "CREATE:3");
+		replay(source, 2, null, null, null);
+
+		assertThat(source.replayed).containsExactly("CREATE:1", "CREATE:2");
+		assertThat(source.kept).containsExactly("CREATE:3");
+	}
+
+	@Test
+	public void replaysNothingInADryRun() throws Exception {
+		FakeSource source = new FakeSource("CREATE:1", "DELETE:2");
+		Map<String, Object> status = replay(source, null, "CREATE", null, true);
+
+		// Only browsed, not even kept
+		assertThat(source.replayed).isEmpty();
+		assertThat(source.kept).isEmpty();
+		assertEquals(1L, status.get("matched"));
+		assertEquals(1L, status.get("skipped"));
+		assertThat(source.committed).isFalse();
+	}
+
+	@Test
+	public void keepsMessagesThatFailToReplay() throws Exception {
+		FakeSource source = new FakeSource("CREATE:1", "broken:2", "CREATE:3");
+		Map<String, Object> status = replay(source, null, null, null, null);
+
+		assertThat(source.replayed).containsExactly("CREATE:1", "CREATE:3");
+		assertThat(source.kept).containsExactly("broken:2");
+		assertEquals(1L, status.get("failed"));
+	}
+
+	@Test
+	public void throttlesToTheRate() throws Exception {
+		FakeSource source = new FakeSource("CREATE:1", "CREATE:2", "CREATE:3", "CREATE:4", "CREATE:5");
+		DlqReplayer replayer = replayer(source);
+
+		long start = System.nanoTime();
+		replayer.replay(50.0, null, null, null, null);
+		awaitDone(replayer);
+
+		// The fifth message is due 4 / 50 seconds after the first
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(80_000_000L);
+		assertEquals(5, source.replayed.size());
+	}
+
+	@Test
+	public void rejectsInvalidRequests() {
+		DlqReplayer replayer = replayer(new FakeSource());
+
+		assertThrows(InvalidEndpointRequestException.class, () -> replayer.replay(0.0, null, null, null, null));
+		assertThrows(InvalidEndpointRequestException.class, () -> replayer.replay(1000.0, null, null, null, null));
+		assertThrows(InvalidEndpointRequestException.class, () -> replayer.replay(null, -1, null, null, null));
+
+		DlqReplayer withoutReader = new DlqReplayer(registry, "products", FakeSource::new, () -> null, 10, 100,
+				System::nanoTime);
+		assertThrows(InvalidEndpointRequestException.class,
+				() -> withoutReader.replay(null, null, "CREATE", null, null));
+	}
+
+	private Map<String, Object> replay(FakeSource source, Integer limit, String eventType, String key,
+			Boolean dryRun) throws InterruptedException {
+		DlqReplayer replayer = replayer(source);
+		replayer.replay(100.0, limit, eventType, key, dryRun);
+		return awaitDone(replayer);
+	}
+
+	private DlqReplayer replayer(FakeSource source) {
+		return new DlqReplayer(registry, "products", () -> source, () -> READER, 10, 100, System::nanoTime);
+	}
+
+	private static Map<String, Object> awaitDone(DlqReplayer replayer) throws InterruptedException {
+		for (int i = 0; i < 500 && replayer.isRunning(); i++) Thread.sleep(10);
+		return replayer.status();
+	}
+}
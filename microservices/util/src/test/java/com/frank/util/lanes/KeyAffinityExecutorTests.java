@@ -0,0 +1,159 @@
+package com.frank.util.lanes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class KeyAffinityExecutorTests {
+
+	@Test
+	public void keepsOrderPerKey() {
+		Map<Integer, List<Integer>> applied = new ConcurrentHashMap<>();
+
+		try (KeyAffinityExecutor executor = new KeyAffinityExecutor("test", 4, 10, 1, 0)) {
+			for (int i = 0; i < 100; i++) {
+				int key = i % 7;
+				int value = i;
+				executor.submit(key, "p0", () -> {
+					applied.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(value);
+				}, null, null);
+			}
+		}
+
+		assertEquals(7, applied.size());
+		applied.forEach((key, values) -> assertThat(values).isSorted().hasSizeGreaterThan(13));
+	}
+
+	@Test
+	public void processesOtherKeysWhileOneIsSlow() throws Exception {
+		CountDownLatch slowStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch fastDone = new CountDownLatch(1);
+
+		try (KeyAffinityExecutor executor = new KeyAffinityExecutor("test", 2, 10, 1, 0)) {
+			executor.submit(0, "p0", () -> {
+				slowStarted.countDown();
+				await(release);
+			}, null, null);
+			assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+			executor.submit(1, "p0", fastDone::countDown, null, null);
+			assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void commitsUpToTheOldestPendingPosition() throws Exception {
+		List<Integer> commits = new CopyOnWriteArrayList<>();
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch laterDone = new CountDownLatch(2);
+
+		try (KeyAffinityExecutor executor = new KeyAffinityExecutor("test", 2, 10, 1, 0)) {
+			executor.submit(0, "p0", () -> await(release), () -> commits.add(0), null);
+			executor.submit(1, "p0", laterDone::countDown, () -> commits.add(1), null);
+			executor.submit(1, "p0", laterDone::countDown, () -> commits.add(2), null);
+			// Another source is committed on its own
+			executor.submit(1, "p1", () -> { }, () -> commits.add(10), null);
+
+			assertTrue(laterDone.await(5, TimeUnit.SECONDS));
+			Thread.sleep(50);
+			assertThat(commits).containsExactly(10);
+
+			// The first position completes the run, only its last commit is needed
+			release.countDown();
+		}
+
+		assertThat(commits).containsExactly(10, 2);
+	}
+
+	@Test
+	public void retriesThenRejects() {
+		AtomicInteger attempts = new AtomicInteger();
+		List<String> actions = new CopyOnWriteArrayList<>();
+
+		try (KeyAffinityExecutor executor = new KeyAffinityExecutor("test", 1, 10, 3, 1)) {
+			executor.submit(0, "p0", () -> {
+				attempts.incrementAndGet();
+				throw new IllegalStateException("Fails");
+			}, () -> actions.add("commit failed"), failure -> actions.add("reject " + failure.getMessage()));
+			executor.submit(0, "p0", () -> { }, () -> actions.add("commit next"), null);
+		}
+
+		assertEquals(3, attempts.get());
+		assertThat(actions).containsExactly("reject Fails", "commit next");
+	}
+
+	@Test
+	public void holdsBackCommitsWhenTheRejectFails() {
+		AtomicInteger rejects = new AtomicInteger();
+		List<String> actions = new CopyOnWriteArrayList<>();
+
+		try (KeyAffinityExecutor executor = new KeyAffinityExecutor("test", 1, 10, 2, 1)) {
+			executor.submit(0, "p0", () -> {
+				throw new IllegalStateException("Fails");
+			}, () -> actions.add("commit failed"), failure -> {
+				rejects.incrementAndGet();
+				throw new IllegalStateException("Dead letter queue down");
+			});
+			executor.submit(0, "p0", () -> { }, () -> actions.add("commit next"), null);
+			executor.submit(0, "p1", () -> { }, () -> actions.add("commit other"), null);
+		}
+
+		assertEquals(2, rejects.get());
+		assertThat(actions).containsExactly("commit other");
+	}
+
+	@Test
+	public void commitsFailedTasksWithoutReject() {
+		AtomicInteger attempts = new AtomicInteger();
+		List<String> actions = new CopyOnWriteArrayList<>();
+
+		try (KeyAffinityExecutor executor = new KeyAffinityExecutor("test", 1, 10, 2, 1)) {
+			executor.submit(0, "p0", () -> {
+				if (attempts.incrementAndGet() < 2) throw new IllegalStateException("Fails once");
+			}, () -> actions.add("commit"), null);
+		}
+
+		assertEquals(2, attempts.get());
+		assertThat(actions).containsExactly("commit");
+	}
+
+	@Test
+	public void blocksBeyondMaxInFlight() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (KeyAffinityExecutor executor = new KeyAffinityExecutor("test", 2, 2, 1, 0)) {
+			executor.submit(0, "p0", () -> await(release), null, null);
+			executor.submit(1, "p0", () -> await(release), null, null);
+			assertEquals(2, executor.getInFlight());
+
+			Thread submitter = new Thread(() -> executor.submit(2, "p0", () -> { }, null, null));
+			submitter.start();
+			submitter.join(100);
+			assertTrue(submitter.isAlive());
+
+			release.countDown();
+			submitter.join(5000);
+			assertThat(submitter.isAlive()).isFalse();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
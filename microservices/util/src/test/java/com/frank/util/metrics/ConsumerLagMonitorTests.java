@@ -0,0 +1,71 @@
+package com.frank.util.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ConsumerLagMonitorTests {
+
+	private final AtomicLong now = new AtomicLong(0);
+	private final AtomicLong applied = new AtomicLong(0);
+	private final AtomicLong backlog = new AtomicLong(0);
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final ConsumerLagMonitor monitor = new ConsumerLagMonitor(registry, "kafka", "reviews", "reviewsGroup",
+			() -> backlog::get, applied::get, now::get, false);
+
+	@Test
+	public void estimatesTimeToDrain() {
+		backlog.set(1000);
+		monitor.check();
+		assertEquals(1000, gauge("messaging.consumer.backlog"), 0);
+		// The rate is known from the second check
+		assertTrue(Double.isNaN(monitor.getTimeToDrain()));
+
+		now.set(10_000);
+		applied.set(500);
+		backlog.set(600);
+		monitor.check();
+
+		assertEquals(50, gauge("messaging.consumer.rate"), 0.001);
+		assertEquals(12, gauge("messaging.consumer.drain.time"), 0.001);
+	}
+
+	@Test
+	public void stalledConsumerNeverDrains() {
+		backlog.set(10);
+		monitor.check();
+		now.set(10_000);
+		monitor.check();
+
+		assertEquals(Double.POSITIVE_INFINITY, monitor.getTimeToDrain());
+
+		backlog.set(0);
+		monitor.check();
+		assertEquals(0, monitor.getTimeToDrain(), 0);
+	}
+
+	@Test
+	public void failedChecksAreReported() {
+		ConsumerLagMonitor failing = new ConsumerLagMonitor(new SimpleMeterRegistry(), "rabbit", "reviews",
+				"reviewsGroup", () -> { throw new IllegalStateException("No broker"); }, applied::get, now::get, false);
+		failing.check();
+
+		Map<String, Object> lag = failing.lag();
+		assertNull(lag.get("backlog"));
+		assertEquals("java.lang.IllegalStateException: No broker", lag.get("error"));
+		assertNotNull(lag.get("checkedAt"));
+	}
+
+	private double gauge(String name) {
+		return registry.get(name).tag("destination", "reviews").tag("group", "reviewsGroup").gauge().value();
+	}
+}
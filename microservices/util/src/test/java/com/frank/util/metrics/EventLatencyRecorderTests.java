@@ -0,0 +1,89 @@
+package com.frank.util.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class EventLatencyRecorderTests {
+
+	private final AtomicLong now = new AtomicLong(0);
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final EventLatencyRecorder recorder = new EventLatencyRecorder(registry, "products", "none", now::get);
+
+	@Test
+	public void recordsPhases() {
+		Message<String> message = MessageBuilder.withPayload("event")
+				.setHeader(EventLatencyRecorder.KAFKA_PARTITION_HEADER, 3).build();
+
+		now.set(5_000_000);
+		recorder.preSend(message, null);
+		now.set(7_000_000);
+		recorder.record(1_000_000L);
+		recorder.afterSendCompletion(message, null, true, null);
+
+		assertEquals(4, timer("3", "dwell").totalTime(TimeUnit.MILLISECONDS), 0.001);
+		assertEquals(2, timer("3", "processing").totalTime(TimeUnit.MILLISECONDS), 0.001);
+		assertEquals(6, timer("3", "total").totalTime(TimeUnit.MILLISECONDS), 0.001);
+	}
+
+	@Test
+	public void batchEventsKeepTheirPartition() {
+		Message<String> batch = MessageBuilder.withPayload("events")
+				.setHeader(EventLatencyRecorder.KAFKA_PARTITION_HEADER, Arrays.asList(0, 1, 1)).build();
+
+		recorder.preSend(batch, null);
+		recorder.record(0L, 0);
+		recorder.record(0L, 1);
+		recorder.record(0L, 2);
+
+		assertEquals(1, timer("0", "total").count());
+		assertEquals(2, timer("1", "total").count());
+	}
+
+	@Test
+	public void partitionOfRabbitQueue() {
+		recorder.preSend(MessageBuilder.withPayload("event")
+				.setHeader(EventLatencyRecorder.RABBIT_QUEUE_HEADER, "products.productsGroup-1").build(), null);
+		recorder.record(0L);
+		recorder.preSend(MessageBuilder.withPayload("event")
+				.setHeader(EventLatencyRecorder.RABBIT_QUEUE_HEADER, "products.productsGroup").build(), null);
+		recorder.record(0L);
+
+		assertEquals(1, timer("1", "total").count());
+		assertEquals(1, timer("none", "total").count());
+	}
+
+	@Test
+	public void eventsWithoutTimestampOnlyRecordProcessing() {
+		now.set(1_000);
+		recorder.preSend(MessageBuilder.withPayload("event").build(), null);
+		recorder.record(null);
+
+		assertEquals(1, timer("none", "processing").count());
+		assertEquals(0, timer("none", "dwell").count());
+	}
+
+	@Test
+	public void producerClockAheadIsRecordedAsZero() {
+		now.set(1_000);
+		recorder.preSend(MessageBuilder.withPayload("event").build(), null);
+		recorder.record(5_000L);
+
+		assertEquals(0, timer("none", "dwell").totalTime(TimeUnit.NANOSECONDS), 0.001);
+		assertEquals(1, timer("none", "dwell").count());
+	}
+
+	private Timer timer(String partition, String phase) {
+		return registry.get("messaging.event.latency")
+				.tag("destination", "products").tag("partition", partition).tag("phase", phase).timer();
+	}
+}
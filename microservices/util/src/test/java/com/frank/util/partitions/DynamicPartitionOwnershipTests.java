@@ -0,0 +1,20 @@
+package com.frank.util.partitions;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class DynamicPartitionOwnershipTests {
+
+	@Test
+	public void needsABrokerWithSingleActiveConsumer() {
+		assertTrue(DynamicPartitionOwnership.supportsSingleActiveConsumer("3.8.3"));
+		assertTrue(DynamicPartitionOwnership.supportsSingleActiveConsumer("3.10.0-rc.1"));
+		assertTrue(DynamicPartitionOwnership.supportsSingleActiveConsumer("4.0.2"));
+
+		assertFalse(DynamicPartitionOwnership.supportsSingleActiveConsumer("3.7.8"));
+		assertFalse(DynamicPartitionOwnership.supportsSingleActiveConsumer("unknown"));
+		assertFalse(DynamicPartitionOwnership.supportsSingleActiveConsumer(null));
+	}
+}
@@ -0,0 +1,61 @@
+package com.frank.util.partitions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class PartitionAssignmentTests {
+
+	@Test
+	public void everyMemberGetsItsShare() {
+		List<String> members = Arrays.asList("review-1", "review-2", "review-3");
+		List<String> owners = PartitionAssignment.owners(members, 8);
+
+		assertEquals(8, owners.size());
+		for (String member : members) {
+			long owned = owners.stream().filter(member::equals).count();
+			assertTrue(owned == 2 || owned == 3, member + " owns " + owned);
+		}
+
+		// Two partitions over two instances, one each
+		assertEquals(2, new HashSet<>(PartitionAssignment.owners(Arrays.asList("a", "b"), 2)).size());
+	}
+
+	@Test
+	public void sameMembersSameOwners() {
+		assertEquals(PartitionAssignment.owners(Arrays.asList("a", "b", "c"), 16),
+				PartitionAssignment.owners(Arrays.asList("c", "a", "b"), 16));
+	}
+
+	@Test
+	public void selfAlwaysCounts() {
+		assertEquals(new HashSet<>(Arrays.asList(0, 1, 2, 3)),
+				PartitionAssignment.owned("a", Collections.emptyList(), 4));
+
+		Set<Integer> a = PartitionAssignment.owned("a", Arrays.asList("b"), 4);
+		Set<Integer> b = PartitionAssignment.owned("b", Arrays.asList("a"), 4);
+		assertEquals(2, a.size());
+		assertEquals(2, b.size());
+		assertTrue(Collections.disjoint(a, b));
+	}
+
+	@Test
+	public void scaleOutMovesFewPartitions() {
+		List<String> before = PartitionAssignment.owners(Arrays.asList("a", "b", "c"), 12);
+		List<String> after = PartitionAssignment.owners(Arrays.asList("a", "b", "c", "d"), 12);
+
+		int moved = 0;
+		for (int partition = 0; partition < 12; partition++) {
+			if (!before.get(partition).equals(after.get(partition))) moved++;
+		}
+		// d takes its 3 partitions, the bounded load may push a few more around
+		assertTrue(moved >= 3 && moved <= 6, moved + " partitions moved");
+	}
+}
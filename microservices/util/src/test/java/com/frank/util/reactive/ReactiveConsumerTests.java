@@ -0,0 +1,150 @@
+package com.frank.util.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.frank.util.exceptions.InvalidInputException;
+import com.frank.util.metrics.EventLatencyRecorder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+public class ReactiveConsumerTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final EventLatencyRecorder latencyRecorder = new EventLatencyRecorder(registry, "products", false, 0);
+	// The payloads of the dead lettered records, "fail" makes the next dead letter fail
+	private final List<String> deadLettered = new ArrayList<>();
+	private final ReactiveConsumer consumer = new ReactiveConsumer(latencyRecorder, registry, "products", 2, 3, 1, 1,
+			1.0, (payload, headers, failure) -> {
+				if (deadLettered.remove("fail")) throw new IllegalStateException("Broker down");
+				deadLettered.add(new String(payload, StandardCharsets.UTF_8));
+			});
+	private final List<Integer> acked = new ArrayList<>();
+
+	@Test
+	public void appliesEventsInOrderAndAcknowledgesThem() {
+		List<Integer> applied = new ArrayList<>();
+
+		consumer.consumer(ReactiveConsumerTests::decode, (payload, recordLatency) -> Mono.fromRunnable(() -> {
+			applied.add(payload);
+			recordLatency.accept(null);
+		})).apply(receive(1, 2)).block();
+
+		assertThat(applied).containsExactly(1, 2);
+		assertThat(acked).containsExactly(1, 2);
+		assertEquals(2, latencyRecorder.getApplied());
+		assertEquals(0, consumer.getInFlight());
+	}
+
+	@Test
+	public void acknowledgesOnceTheEventIsWritten() {
+		MonoProcessor<Void> write = MonoProcessor.create();
+
+		consumer.<Integer>consumer(ReactiveConsumerTests::decode, (payload, recordLatency) -> write)
+				.apply(receive(1)).subscribe();
+		assertThat(acked).isEmpty();
+
+		write.onComplete();
+		assertThat(acked).containsExactly(1);
+	}
+
+	@Test
+	public void retriesFailedEvents() {
+		AtomicInteger attempts = new AtomicInteger();
+
+		consumer.<Integer>consumer(ReactiveConsumerTests::decode, (payload, recordLatency) -> Mono.fromRunnable(() -> {
+			if (attempts.incrementAndGet() < 3) throw new IllegalStateException("Database down");
+		})).apply(receive(1)).block();
+
+		assertEquals(3, attempts.get());
+		assertThat(deadLettered).isEmpty();
+		assertThat(acked).containsExactly(1);
+		assertEquals(0, registry.get("messaging.reactive.failed").counter().count());
+	}
+
+	@Test
+	public void deadLettersInvalidEventsWithoutRetries() {
+		List<Integer> attempted = new ArrayList<>();
+
+		consumer.<Integer>consumer(ReactiveConsumerTests::decode, (payload, recordLatency) -> Mono.fromRunnable(() -> {
+			attempted.add(payload);
+			if (payload == 1) throw new InvalidInputException("Invalid productId: " + payload);
+		})).apply(receive(1, 2)).block();
+
+		// The failed event is dead lettered before it is acknowledged, and the next one applied
+		assertThat(attempted).containsExactly(1, 2);
+		assertThat(deadLettered).containsExactly("1");
+		assertThat(acked).containsExactly(1, 2);
+		assertEquals(1, registry.get("messaging.reactive.failed").counter().count());
+		assertEquals(0, consumer.getInFlight());
+	}
+
+	@Test
+	public void acknowledgesAFailedEventOnlyOnceDeadLettered() {
+		deadLettered.add("fail");
+
+		consumer.<Integer>consumer(ReactiveConsumerTests::decode, (payload, recordLatency) -> Mono.error(
+				new InvalidInputException("Invalid productId: " + payload))).apply(receive(1)).block();
+
+		assertThat(deadLettered).containsExactly("1");
+		assertThat(acked).containsExactly(1);
+	}
+
+	@Test
+	public void holdsTheConsumerThreadBeyondThePrefetch() throws InterruptedException {
+		Flux<Message<byte[]>> received = receive(1, 2);
+		Thread third = new Thread(() -> consumer.preSend(new GenericMessage<>(new byte[0]), null));
+		third.start();
+
+		third.join(200);
+		assertThat(third.isAlive()).isTrue();
+		assertEquals(2, consumer.getInFlight());
+
+		consumer.<Integer>consumer(ReactiveConsumerTests::decode, (payload, recordLatency) -> Mono.empty())
+				.apply(received).block();
+		third.join(1000);
+		assertThat(third.isAlive()).isFalse();
+		assertEquals(1, consumer.getInFlight());
+	}
+
+	@Test
+	public void refusesToStartWithoutTheFunctionBinding() {
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> new ReactiveConsumer(
+				latencyRecorder, registry, "products", "productsGroup", "rabbit", "", "", 32, 3, 1, 1, 1.0,
+				false, 0, false, false, "MANUAL", 32, false, "", "localhost", "9092"));
+
+		assertThat(e.getMessage()).contains("spring.cloud.function.definition");
+	}
+
+	// Passes the messages through the input channel gate, as the binder does
+	private Flux<Message<byte[]>> receive(Integer... payloads) {
+		List<Message<byte[]>> messages = new ArrayList<>();
+		for (Integer payload : payloads) {
+			Message<byte[]> message = MessageBuilder.withPayload(payload.toString().getBytes(StandardCharsets.UTF_8))
+					.setHeader(ReactiveConsumer.KAFKA_ACKNOWLEDGMENT_HEADER, (Acknowledgment) () -> acked.add(payload))
+					.build();
+			consumer.preSend(message, null);
+			messages.add(message);
+		}
+		return Flux.fromIterable(messages);
+	}
+
+	private static Integer decode(byte[] payload) {
+		return Integer.valueOf(new String(payload, StandardCharsets.UTF_8));
+	}
+}
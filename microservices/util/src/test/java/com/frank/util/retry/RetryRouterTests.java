@@ -0,0 +1,131 @@
+package com.frank.util.retry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import com.frank.util.exceptions.InvalidInputException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RetryRouterTests {
+
+	private static class Published {
+		private final Map<String, Object> headers;
+		private final int attempt;
+		private final long delayMs;
+
+		private Published(Map<String, Object> headers, int attempt, long delayMs) {
+			this.headers = headers;
+			this.attempt = attempt;
+			this.delayMs = delayMs;
+		}
+	}
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final List<Published> published = new ArrayList<>();
+	private final RetryRouter router = new RetryRouter(registry, "products", new long[] {100, 1000},
+			(payload, headers, attempt, delayMs) -> published.add(new Published(headers, attempt, delayMs)));
+
+	@Test
+	public void sendsFailuresToTheNextRetry() {
+		Runnable task = receive(message(null), () -> {
+			throw new IllegalStateException("Database down");
+		});
+		task.run();
+
+		assertEquals(1, published.size());
+		assertEquals(1, published.get(0).attempt);
+		assertEquals(100, published.get(0).delayMs);
+		assertEquals(1, published.get(0).headers.get(RetryRouter.ATTEMPT_HEADER));
+		assertEquals(1, registry.get("messaging.retry.routed").tag("attempt", "1").counter().count());
+
+		receive(message(1), () -> {
+			throw new IllegalStateException("Database down");
+		}).run();
+		assertEquals(2, published.get(1).attempt);
+		assertEquals(1000, published.get(1).delayMs);
+	}
+
+	@Test
+	public void leavesTheLastFailureToTheBinder() {
+		Runnable task = receive(message(2), () -> {
+			throw new IllegalStateException("Database down");
+		});
+
+		assertThrows(IllegalStateException.class, task::run);
+		assertThat(published).isEmpty();
+	}
+
+	@Test
+	public void neverRetriesInvalidEvents() {
+		Runnable task = receive(message(null), () -> {
+			throw new InvalidInputException("Invalid productId: -1");
+		});
+
+		assertThrows(InvalidInputException.class, task::run);
+		assertThat(published).isEmpty();
+	}
+
+	@Test
+	public void passesOnApplicationHeadersOnly() {
+		Map<String, Object> headers = new HashMap<>();
+		headers.put("contentType", MimeTypeUtils.APPLICATION_JSON);
+		headers.put("partitionKey", 3);
+		headers.put("amqp_deliveryTag", 7L);
+		headers.put("kafka_receivedPartitionId", 1);
+		headers.put("x-death", new ArrayList<>());
+		headers.put("x-retry-due", "123");
+		headers.put(RetryRouter.ATTEMPT_HEADER, 2);
+
+		Map<String, Object> application = RetryRouter.applicationHeaders(headers);
+
+		assertEquals(3, application.size());
+		assertEquals("application/json", application.get("contentType"));
+		assertEquals(3, application.get("partitionKey"));
+		assertEquals(2, application.get(RetryRouter.ATTEMPT_HEADER));
+	}
+
+	@Test
+	public void runsTasksUnguardedWhenDisabled() {
+		RetryRouter disabled = new RetryRouter(registry, "products", new long[] {100}, null);
+		Message<byte[]> message = message(null);
+		disabled.preSend(message, null);
+
+		assertThrows(IllegalStateException.class, () -> disabled.guard(() -> {
+			throw new IllegalStateException("Database down");
+		}).run());
+	}
+
+	@Test
+	public void refusesToRunWithLanes() {
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> new RetryRouter(registry, null, true,
+				new long[] {100}, 4, "products", "productsGroup", "rabbit", "", "localhost", "9092"));
+		assertThat(e.getMessage()).contains("app.messaging.lanes");
+	}
+
+	private Runnable receive(Message<byte[]> message, Runnable task) {
+		router.preSend(message, null);
+		try {
+			return router.guard(task);
+		} finally {
+			router.afterSendCompletion(message, null, true, null);
+		}
+	}
+
+	private static Message<byte[]> message(Integer attempt) {
+		MessageBuilder<byte[]> builder = MessageBuilder.withPayload("{}".getBytes());
+		if (attempt != null) builder.setHeader(RetryRouter.ATTEMPT_HEADER, attempt);
+		return builder.build();
+	}
+}